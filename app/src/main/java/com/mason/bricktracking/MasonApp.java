@@ -4,6 +4,7 @@ import android.app.Application;
 import android.content.SharedPreferences;
 
 import com.mason.bricktracking.data.remote.ApiClient;
+import com.mason.bricktracking.scan.CaptureMode;
 
 public class MasonApp extends Application {
     private static MasonApp instance;
@@ -188,6 +189,49 @@ public class MasonApp extends Application {
             .apply();
     }
     
+    // Capture mode (fixed window by default, sliding window for continuous high-rate placement)
+    public CaptureMode getCaptureMode() {
+        return CaptureMode.fromName(sharedPreferences.getString("capture_mode", CaptureMode.FIXED.name()));
+    }
+    
+    public void setCaptureMode(CaptureMode mode) {
+        sharedPreferences.edit()
+            .putString("capture_mode", mode.name())
+            .apply();
+    }
+    
+    // Capture window length: sized from the observed read rate unless switched to the manual value
+    public boolean isAdaptiveCaptureWindowEnabled() {
+        return sharedPreferences.getBoolean("adaptive_capture_window", true);
+    }
+    
+    public void setAdaptiveCaptureWindowEnabled(boolean enabled) {
+        sharedPreferences.edit()
+            .putBoolean("adaptive_capture_window", enabled)
+            .apply();
+    }
+    
+    // Sync pipelining: batch requests allowed in flight at once, and placements per batch
+    public int getSyncMaxInFlight() {
+        return sharedPreferences.getInt("sync_max_in_flight", 3);
+    }
+
+    public void setSyncMaxInFlight(int maxInFlight) {
+        sharedPreferences.edit()
+            .putInt("sync_max_in_flight", maxInFlight)
+            .apply();
+    }
+
+    public int getSyncBatchSize() {
+        return sharedPreferences.getInt("sync_batch_size", 200);
+    }
+
+    public void setSyncBatchSize(int batchSize) {
+        sharedPreferences.edit()
+            .putInt("sync_batch_size", batchSize)
+            .apply();
+    }
+
     public void clearLastDevice() {
         sharedPreferences.edit()
                 .remove("last_device_address")
@@ -5,15 +5,112 @@ import android.content.Context;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.mason.bricktracking.data.model.BrickPlacement;
+import com.mason.bricktracking.data.model.DeadLetterPlacement;
+import com.mason.bricktracking.data.model.SessionAck;
+import com.mason.bricktracking.data.model.SyncState;
 
-@Database(entities = {BrickPlacement.class}, version = 6, exportSchema = false)
+@Database(entities = {BrickPlacement.class, SyncState.class, SessionAck.class, DeadLetterPlacement.class},
+          version = 12, exportSchema = false)
+@TypeConverters(Converters.class)
 public abstract class AppDatabase extends RoomDatabase {
     private static AppDatabase instance;
     
     public abstract BrickPlacementDao brickPlacementDao();
     
+    public abstract SyncStateDao syncStateDao();
+    
+    public abstract SessionAckDao sessionAckDao();
+    
+    public abstract DeadLetterDao deadLetterDao();
+    
+    // v7: capture window length per placement - additive, so unsynced placements survive the upgrade
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE brick_placements ADD COLUMN captureWindowMs INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+    
+    // v8: persisted sync watermark (synced rows are deleted, so it can't be derived from them)
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_state` (`id` INTEGER NOT NULL, "
+                + "`lastSyncedId` INTEGER NOT NULL, `lastSyncedAt` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+        }
+    };
+    
+    // v9: integer-coded decisionStatus / scanType and sync-queue indices. SQLite can't change a
+    // column's type in place, so the table is rebuilt and the strings mapped to their codes.
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `brick_placements_new` ("
+                + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `masonId` TEXT, `brickNumber` TEXT, "
+                + "`timestamp` INTEGER NOT NULL, `synced` INTEGER NOT NULL, `latitude` REAL NOT NULL, "
+                + "`longitude` REAL NOT NULL, `altitude` REAL NOT NULL, `accuracy` REAL NOT NULL, "
+                + "`buildSessionId` TEXT, `eventSeq` INTEGER NOT NULL, `rssiAvg` INTEGER NOT NULL, "
+                + "`rssiPeak` INTEGER NOT NULL, `readsInWindow` INTEGER NOT NULL, `powerLevel` INTEGER NOT NULL, "
+                + "`decisionStatus` INTEGER NOT NULL DEFAULT 0, `scanType` INTEGER NOT NULL DEFAULT 0, "
+                + "`captureWindowMs` INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("INSERT INTO `brick_placements_new` (id, masonId, brickNumber, timestamp, synced, "
+                + "latitude, longitude, altitude, accuracy, buildSessionId, eventSeq, rssiAvg, rssiPeak, "
+                + "readsInWindow, powerLevel, decisionStatus, scanType, captureWindowMs) "
+                + "SELECT id, masonId, brickNumber, timestamp, synced, latitude, longitude, altitude, accuracy, "
+                + "buildSessionId, eventSeq, rssiAvg, rssiPeak, readsInWindow, powerLevel, "
+                + "CASE decisionStatus WHEN 'ACCEPTED_NO_GPS' THEN 1 WHEN 'AMBIGUOUS' THEN 2 "
+                + "WHEN 'REJECTED_NO_GPS' THEN 3 ELSE 0 END, "
+                + "CASE scanType WHEN 'pallet' THEN 1 ELSE 0 END, "
+                + "captureWindowMs FROM `brick_placements`");
+            db.execSQL("DROP TABLE `brick_placements`");
+            db.execSQL("ALTER TABLE `brick_placements_new` RENAME TO `brick_placements`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_brick_placements_synced_timestamp` "
+                + "ON `brick_placements` (`synced`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_brick_placements_masonId_synced_timestamp` "
+                + "ON `brick_placements` (`masonId`, `synced`, `timestamp`)");
+        }
+    };
+    
+    // v10: server ack watermark per build session, and the (session, sequence) index its range queries use
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `session_acks` (`buildSessionId` TEXT NOT NULL, "
+                + "`ackedSeq` INTEGER NOT NULL, `ackedAt` INTEGER NOT NULL, PRIMARY KEY(`buildSessionId`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_brick_placements_buildSessionId_eventSeq` "
+                + "ON `brick_placements` (`buildSessionId`, `eventSeq`)");
+        }
+    };
+    
+    // v11: placements the server rejected, moved out of the sync queue (brick_placements columns + reason)
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `dead_letter_placements` ("
+                + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `masonId` TEXT, `brickNumber` TEXT, "
+                + "`timestamp` INTEGER NOT NULL, `synced` INTEGER NOT NULL, `latitude` REAL NOT NULL, "
+                + "`longitude` REAL NOT NULL, `altitude` REAL NOT NULL, `accuracy` REAL NOT NULL, "
+                + "`buildSessionId` TEXT, `eventSeq` INTEGER NOT NULL, `rssiAvg` INTEGER NOT NULL, "
+                + "`rssiPeak` INTEGER NOT NULL, `readsInWindow` INTEGER NOT NULL, `powerLevel` INTEGER NOT NULL, "
+                + "`decisionStatus` INTEGER NOT NULL DEFAULT 0, `scanType` INTEGER NOT NULL DEFAULT 0, "
+                + "`captureWindowMs` INTEGER NOT NULL DEFAULT 0, `rejectReason` TEXT, `rejectedAt` INTEGER NOT NULL)");
+        }
+    };
+    
+    // v12: dead-letter index for the admin list, newest first
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_dead_letter_placements_rejectedAt` "
+                + "ON `dead_letter_placements` (`rejectedAt`)");
+        }
+    };
+    
     public static synchronized AppDatabase getInstance(Context context) {
         if (instance == null) {
             instance = Room.databaseBuilder(
@@ -21,6 +118,8 @@ public abstract class AppDatabase extends RoomDatabase {
                 AppDatabase.class,
                 "mason_brick_tracking.db"
             )
+            .addMigrations(MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11,
+                MIGRATION_11_12)
             .fallbackToDestructiveMigration()  // For development: clears old data on schema change
             .build();
         }
@@ -1,25 +1,67 @@
 package com.mason.bricktracking.data.local;
 
+import android.database.Cursor;
+
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
-import androidx.room.Update;
+import androidx.room.Transaction;
 
 import com.mason.bricktracking.data.model.BrickPlacement;
+import com.mason.bricktracking.data.model.PlacementKey;
 
 import java.util.List;
 
 @Dao
 public interface BrickPlacementDao {
     
+    // Stays under SQLite's 999 bound-parameter limit on older Android versions
+    int MAX_IDS_PER_STATEMENT = 900;
+    
     @Insert
     long insert(BrickPlacement placement);
     
-    @Update
-    void update(BrickPlacement placement);
+    // Single transaction for the whole list - used by the group-commit write-behind
+    @Insert
+    void insertAll(List<BrickPlacement> placements);
+    
+    // Sync partitions: masons with placements waiting (the page query matches with IS, so a null masonId works too)
+    @Query("SELECT DISTINCT masonId FROM brick_placements WHERE synced = 0")
+    List<String> getUnsyncedMasonIds();
+    
+    // Keyset page of one mason's sync queue: keys strictly after the (timestamp, id) cursor, served by the (masonId, synced, timestamp) index
+    @Query("SELECT id, timestamp, buildSessionId, eventSeq FROM brick_placements WHERE masonId IS :masonId AND synced = 0 "
+         + "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)) "
+         + "ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    List<PlacementKey> getUnsyncedKeys(String masonId, long afterTimestamp, int afterId, int limit);
+    
+    // Rows of a page picked by getUnsyncedKeys: cursor exclusive, page's last key inclusive
+    @Query("SELECT * FROM brick_placements WHERE masonId IS :masonId AND synced = 0 "
+         + "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)) "
+         + "AND (timestamp < :lastTimestamp OR (timestamp = :lastTimestamp AND id <= :lastId)) "
+         + "ORDER BY timestamp ASC, id ASC")
+    Cursor getUnsyncedRangeCursor(String masonId, long afterTimestamp, int afterId, long lastTimestamp, int lastId);
+    
+    @Query("SELECT * FROM brick_placements WHERE masonId IS :masonId AND synced = 0 "
+         + "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND id > :afterId)) "
+         + "AND (timestamp < :lastTimestamp OR (timestamp = :lastTimestamp AND id <= :lastId)) "
+         + "ORDER BY timestamp ASC, id ASC")
+    List<BrickPlacement> getUnsyncedRange(String masonId, long afterTimestamp, int afterId, long lastTimestamp, int lastId);
     
-    @Query("SELECT * FROM brick_placements WHERE synced = 0 ORDER BY timestamp ASC")
-    List<BrickPlacement> getUnsyncedPlacements();
+    // A session's queued rows in sequence order, any mason - for a page's session ranges (buildSessionId, eventSeq index)
+    @Query("SELECT id, timestamp, buildSessionId, eventSeq FROM brick_placements WHERE buildSessionId = :buildSessionId "
+         + "AND synced = 0 AND eventSeq BETWEEN :fromSeq AND :toSeq ORDER BY eventSeq ASC, id ASC")
+    List<PlacementKey> getUnsyncedSessionKeys(String buildSessionId, int fromSeq, int toSeq);
+    
+    // Highest queued sequence of the session below beforeSeq, 0 if none
+    @Query("SELECT COALESCE(MAX(eventSeq), 0) FROM brick_placements WHERE buildSessionId = :buildSessionId "
+         + "AND synced = 0 AND eventSeq < :beforeSeq")
+    int getPrevUnsyncedSeq(String buildSessionId, int beforeSeq);
+    
+    // Rows the server already holds per its session ack watermark (e.g. a batch whose response was lost)
+    @Query("DELETE FROM brick_placements WHERE buildSessionId = :buildSessionId "
+         + "AND eventSeq BETWEEN 1 AND :ackedSeq")
+    int deleteSessionThrough(String buildSessionId, int ackedSeq);
     
     @Query("SELECT * FROM brick_placements WHERE masonId = :masonId ORDER BY timestamp DESC")
     List<BrickPlacement> getPlacementsByMason(String masonId);
@@ -27,12 +69,42 @@ public interface BrickPlacementDao {
     @Query("SELECT COUNT(*) FROM brick_placements WHERE synced = 0")
     int getUnsyncedCount();
     
-    @Query("DELETE FROM brick_placements WHERE synced = 1")
-    void deleteSyncedPlacements();
+    // SyncWatermarks recovery and post-ack refresh (never on the insert path) - 0 when nothing is unsynced
+    @Query("SELECT COALESCE(MIN(timestamp), 0) FROM brick_placements WHERE synced = 0")
+    long getOldestUnsyncedTimestamp();
+    
+    @Query("DELETE FROM brick_placements WHERE id BETWEEN :fromId AND :toId")
+    int deleteIdRange(int fromId, int toId);
+    
+    @Query("DELETE FROM brick_placements WHERE id IN (:ids)")
+    int deleteIds(List<Integer> ids);
+    
+    /**
+     * Drop placements the server has acknowledged, in one transaction. Synced rows are
+     * never kept, so acking is a delete rather than an update-then-delete. A batch with
+     * contiguous ids (the usual case - ids are assigned in insert order) is one range
+     * delete; otherwise the ids go out in IN lists of at most MAX_IDS_PER_STATEMENT.
+     *
+     * @param ids acknowledged ids, ascending
+     * @return rows actually deleted
+     */
+    @Transaction
+    default int ackPlacements(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int first = ids.get(0);
+        int last = ids.get(ids.size() - 1);
+        if (last - first + 1 == ids.size()) {
+            return deleteIdRange(first, last);
+        }
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_STATEMENT) {
+            deleted += deleteIds(ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_STATEMENT)));
+        }
+        return deleted;
+    }
     
     @Query("DELETE FROM brick_placements")
     void deleteAll();
-    
-    @Query("SELECT * FROM brick_placements WHERE masonId = :masonId AND synced = 0 ORDER BY timestamp ASC")
-    List<BrickPlacement> getUnsyncedPlacementsByMason(String masonId);
 }
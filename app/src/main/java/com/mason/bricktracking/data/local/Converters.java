@@ -0,0 +1,32 @@
+package com.mason.bricktracking.data.local;
+
+import androidx.room.TypeConverter;
+
+import com.mason.bricktracking.data.model.DecisionStatus;
+import com.mason.bricktracking.data.model.ScanType;
+
+/**
+ * Integer coding of the placement enums - a one-byte INTEGER instead of a repeated string per row.
+ */
+public class Converters {
+    
+    @TypeConverter
+    public static int fromDecisionStatus(DecisionStatus status) {
+        return status != null ? status.code : DecisionStatus.ACCEPTED.code;
+    }
+    
+    @TypeConverter
+    public static DecisionStatus toDecisionStatus(int code) {
+        return DecisionStatus.fromCode(code);
+    }
+    
+    @TypeConverter
+    public static int fromScanType(ScanType type) {
+        return type != null ? type.code : ScanType.PLACEMENT.code;
+    }
+    
+    @TypeConverter
+    public static ScanType toScanType(int code) {
+        return ScanType.fromCode(code);
+    }
+}
@@ -0,0 +1,30 @@
+package com.mason.bricktracking.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.mason.bricktracking.data.model.DeadLetterPlacement;
+
+import java.util.List;
+
+@Dao
+public interface DeadLetterDao {
+    
+    // Copies the queued row as-is; the caller deletes it from the queue in the same transaction
+    @Query("INSERT OR REPLACE INTO dead_letter_placements (id, masonId, brickNumber, timestamp, synced, "
+        + "latitude, longitude, altitude, accuracy, buildSessionId, eventSeq, rssiAvg, rssiPeak, "
+        + "readsInWindow, powerLevel, decisionStatus, scanType, captureWindowMs, rejectReason, rejectedAt) "
+        + "SELECT id, masonId, brickNumber, timestamp, synced, latitude, longitude, altitude, accuracy, "
+        + "buildSessionId, eventSeq, rssiAvg, rssiPeak, readsInWindow, powerLevel, decisionStatus, scanType, "
+        + "captureWindowMs, :reason, :rejectedAt FROM brick_placements WHERE id = :id")
+    void copyFromQueue(int id, String reason, long rejectedAt);
+    
+    @Query("SELECT * FROM dead_letter_placements ORDER BY rejectedAt DESC, id DESC LIMIT :limit")
+    List<DeadLetterPlacement> getRecent(int limit);
+    
+    @Query("SELECT COUNT(*) FROM dead_letter_placements")
+    int getCount();
+    
+    @Query("DELETE FROM dead_letter_placements")
+    void deleteAll();
+}
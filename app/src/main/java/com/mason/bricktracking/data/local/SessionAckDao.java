@@ -0,0 +1,22 @@
+package com.mason.bricktracking.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.mason.bricktracking.data.model.SessionAck;
+
+@Dao
+public interface SessionAckDao {
+    
+    @Query("SELECT * FROM session_acks WHERE buildSessionId = :buildSessionId")
+    SessionAck get(String buildSessionId);
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void put(SessionAck ack);
+    
+    // Sessions end with a shift; their watermarks only matter while rows may still be queued
+    @Query("DELETE FROM session_acks WHERE ackedAt < :cutoff")
+    int deleteAckedBefore(long cutoff);
+}
@@ -0,0 +1,18 @@
+package com.mason.bricktracking.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.mason.bricktracking.data.model.SyncState;
+
+@Dao
+public interface SyncStateDao {
+    
+    @Query("SELECT * FROM sync_state WHERE id = 1")
+    SyncState get();
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void put(SyncState state);
+}
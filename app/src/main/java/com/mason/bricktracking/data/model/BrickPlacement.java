@@ -1,9 +1,18 @@
 package com.mason.bricktracking.data.model;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "brick_placements")
+// Indices match the sync queue reads: unsynced rows oldest first, optionally per mason,
+// and a session's rows by sequence (session ranges and ack watermarks)
+@Entity(tableName = "brick_placements",
+        indices = {
+            @Index(value = {"synced", "timestamp"}),
+            @Index(value = {"masonId", "synced", "timestamp"}),
+            @Index(value = {"buildSessionId", "eventSeq"})
+        })
 public class BrickPlacement {
     @PrimaryKey(autoGenerate = true)
     private int id;
@@ -29,11 +38,17 @@ public class BrickPlacement {
     // Reader power level used for this scan
     private int powerLevel;
     
-    // Decision status
-    private String decisionStatus;  // ACCEPTED, AMBIGUOUS, REJECTED_NO_GPS, ACCEPTED_NO_GPS, etc.
+    // Decision status (stored as DecisionStatus.code)
+    @ColumnInfo(defaultValue = "0")
+    private DecisionStatus decisionStatus;
     
-    // Scan type: "pallet" for inventory scans, "placement" for placement scans
-    private String scanType;
+    // Scan type: pallet inventory scan or brick placement (stored as ScanType.code)
+    @ColumnInfo(defaultValue = "0")
+    private ScanType scanType;
+    
+    // How long (ms) the capture window ran before the decision that produced this placement
+    @ColumnInfo(defaultValue = "0")
+    private int captureWindowMs;
     
     public BrickPlacement() {
     }
@@ -47,7 +62,7 @@ public class BrickPlacement {
         this.longitude = 0.0;
         this.altitude = 0.0;
         this.accuracy = 0.0;
-        this.scanType = "placement";
+        this.scanType = ScanType.PLACEMENT;
     }
     
     public BrickPlacement(String masonId, String brickNumber, long timestamp, double latitude, double longitude) {
@@ -58,7 +73,7 @@ public class BrickPlacement {
         this.latitude = latitude;
         this.longitude = longitude;
         this.accuracy = 0.0;
-        this.scanType = "placement";
+        this.scanType = ScanType.PLACEMENT;
     }
     
     public BrickPlacement(String masonId, String brickNumber, long timestamp, double latitude, double longitude, double altitude, double accuracy) {
@@ -75,13 +90,13 @@ public class BrickPlacement {
         this.rssiAvg = 0;
         this.rssiPeak = 0;
         this.readsInWindow = 0;
-        this.decisionStatus = "ACCEPTED";
-        this.scanType = "placement";
+        this.decisionStatus = DecisionStatus.ACCEPTED;
+        this.scanType = ScanType.PLACEMENT;
     }
     
     // Full constructor with all fields
     public BrickPlacement(String masonId, String brickNumber, long timestamp, double latitude, double longitude, double altitude, double accuracy,
-                          String buildSessionId, int eventSeq, int rssiAvg, int rssiPeak, int readsInWindow, String decisionStatus) {
+                          String buildSessionId, int eventSeq, int rssiAvg, int rssiPeak, int readsInWindow, DecisionStatus decisionStatus) {
         this.masonId = masonId;
         this.brickNumber = brickNumber;
         this.timestamp = timestamp;
@@ -97,7 +112,7 @@ public class BrickPlacement {
         this.readsInWindow = readsInWindow;
         this.powerLevel = 0; // Will be set separately
         this.decisionStatus = decisionStatus;
-        this.scanType = "placement"; // Will be set separately
+        this.scanType = ScanType.PLACEMENT; // Will be set separately
     }
     
     // Getters and Setters
@@ -221,19 +236,27 @@ public class BrickPlacement {
         this.powerLevel = powerLevel;
     }
     
-    public String getDecisionStatus() {
+    public DecisionStatus getDecisionStatus() {
         return decisionStatus;
     }
     
-    public void setDecisionStatus(String decisionStatus) {
+    public void setDecisionStatus(DecisionStatus decisionStatus) {
         this.decisionStatus = decisionStatus;
     }
     
-    public String getScanType() {
+    public ScanType getScanType() {
         return scanType;
     }
     
-    public void setScanType(String scanType) {
+    public void setScanType(ScanType scanType) {
         this.scanType = scanType;
     }
+    
+    public int getCaptureWindowMs() {
+        return captureWindowMs;
+    }
+    
+    public void setCaptureWindowMs(int captureWindowMs) {
+        this.captureWindowMs = captureWindowMs;
+    }
 }
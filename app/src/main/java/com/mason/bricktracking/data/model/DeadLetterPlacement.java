@@ -0,0 +1,214 @@
+package com.mason.bricktracking.data.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A queued placement the server rejected (per-item "rejected" sync result), moved out of
+ * brick_placements so it stops being resent. Keeps every column of the original row, the
+ * id included, plus the server's reason, for an admin to inspect or export.
+ *
+ * Declared on its own rather than extending BrickPlacement, so a new queue column only
+ * reaches this table when it is added here and to DeadLetterDao.copyFromQueue.
+ */
+// rejectedAt serves the admin list (newest first; the id tie-break rides on the rowid)
+@Entity(tableName = "dead_letter_placements",
+        indices = {@Index(value = {"rejectedAt"})})
+public class DeadLetterPlacement {
+    // Always the original BrickPlacement.id; autoGenerate only keeps the v11 table definition
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+    
+    private String masonId;
+    private String brickNumber;
+    private long timestamp;
+    private boolean synced;
+    private double latitude;
+    private double longitude;
+    private double altitude;
+    private double accuracy;
+    private String buildSessionId;
+    private int eventSeq;
+    private int rssiAvg;
+    private int rssiPeak;
+    private int readsInWindow;
+    private int powerLevel;
+    
+    @ColumnInfo(defaultValue = "0")
+    private DecisionStatus decisionStatus;
+    
+    @ColumnInfo(defaultValue = "0")
+    private ScanType scanType;
+    
+    @ColumnInfo(defaultValue = "0")
+    private int captureWindowMs;
+    
+    private String rejectReason;
+    private long rejectedAt;       // Client time the row was moved here
+    
+    public DeadLetterPlacement() {
+    }
+    
+    // Getters and Setters
+    public int getId() {
+        return id;
+    }
+    
+    public void setId(int id) {
+        this.id = id;
+    }
+    
+    public String getMasonId() {
+        return masonId;
+    }
+    
+    public void setMasonId(String masonId) {
+        this.masonId = masonId;
+    }
+    
+    public String getBrickNumber() {
+        return brickNumber;
+    }
+    
+    public void setBrickNumber(String brickNumber) {
+        this.brickNumber = brickNumber;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+    
+    public boolean isSynced() {
+        return synced;
+    }
+    
+    public void setSynced(boolean synced) {
+        this.synced = synced;
+    }
+    
+    public double getLatitude() {
+        return latitude;
+    }
+    
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+    
+    public double getLongitude() {
+        return longitude;
+    }
+    
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+    
+    public double getAltitude() {
+        return altitude;
+    }
+    
+    public void setAltitude(double altitude) {
+        this.altitude = altitude;
+    }
+    
+    public double getAccuracy() {
+        return accuracy;
+    }
+    
+    public void setAccuracy(double accuracy) {
+        this.accuracy = accuracy;
+    }
+    
+    public String getBuildSessionId() {
+        return buildSessionId;
+    }
+    
+    public void setBuildSessionId(String buildSessionId) {
+        this.buildSessionId = buildSessionId;
+    }
+    
+    public int getEventSeq() {
+        return eventSeq;
+    }
+    
+    public void setEventSeq(int eventSeq) {
+        this.eventSeq = eventSeq;
+    }
+    
+    public int getRssiAvg() {
+        return rssiAvg;
+    }
+    
+    public void setRssiAvg(int rssiAvg) {
+        this.rssiAvg = rssiAvg;
+    }
+    
+    public int getRssiPeak() {
+        return rssiPeak;
+    }
+    
+    public void setRssiPeak(int rssiPeak) {
+        this.rssiPeak = rssiPeak;
+    }
+    
+    public int getReadsInWindow() {
+        return readsInWindow;
+    }
+    
+    public void setReadsInWindow(int readsInWindow) {
+        this.readsInWindow = readsInWindow;
+    }
+    
+    public int getPowerLevel() {
+        return powerLevel;
+    }
+    
+    public void setPowerLevel(int powerLevel) {
+        this.powerLevel = powerLevel;
+    }
+    
+    public DecisionStatus getDecisionStatus() {
+        return decisionStatus;
+    }
+    
+    public void setDecisionStatus(DecisionStatus decisionStatus) {
+        this.decisionStatus = decisionStatus;
+    }
+    
+    public ScanType getScanType() {
+        return scanType;
+    }
+    
+    public void setScanType(ScanType scanType) {
+        this.scanType = scanType;
+    }
+    
+    public int getCaptureWindowMs() {
+        return captureWindowMs;
+    }
+    
+    public void setCaptureWindowMs(int captureWindowMs) {
+        this.captureWindowMs = captureWindowMs;
+    }
+    
+    public String getRejectReason() {
+        return rejectReason;
+    }
+    
+    public void setRejectReason(String rejectReason) {
+        this.rejectReason = rejectReason;
+    }
+    
+    public long getRejectedAt() {
+        return rejectedAt;
+    }
+    
+    public void setRejectedAt(long rejectedAt) {
+        this.rejectedAt = rejectedAt;
+    }
+}
@@ -0,0 +1,28 @@
+package com.mason.bricktracking.data.model;
+
+/**
+ * Outcome recorded with a placement. Stored as {@link #code} (see Converters) - codes are
+ * persisted, so never renumber them; the wire format sends {@link #name()}.
+ */
+public enum DecisionStatus {
+    ACCEPTED(0),
+    ACCEPTED_NO_GPS(1),
+    AMBIGUOUS(2),
+    REJECTED_NO_GPS(3);
+    
+    public final int code;
+    
+    DecisionStatus(int code) {
+        this.code = code;
+    }
+    
+    /** Unknown codes (e.g. written by a newer build) read back as ACCEPTED */
+    public static DecisionStatus fromCode(int code) {
+        for (DecisionStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        return ACCEPTED;
+    }
+}
@@ -0,0 +1,36 @@
+package com.mason.bricktracking.data.model;
+
+/**
+ * Sync-queue position of a placement (Room projection of brick_placements). A sync page
+ * is picked as keys only; the rows themselves are read while the request body is written.
+ * The event id (session, sequence) is carried along for the page's session ranges.
+ */
+public class PlacementKey {
+    private int id;
+    private long timestamp;
+    private String buildSessionId;
+    private int eventSeq;
+    
+    public PlacementKey(int id, long timestamp, String buildSessionId, int eventSeq) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.buildSessionId = buildSessionId;
+        this.eventSeq = eventSeq;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public String getBuildSessionId() {
+        return buildSessionId;
+    }
+    
+    public int getEventSeq() {
+        return eventSeq;
+    }
+}
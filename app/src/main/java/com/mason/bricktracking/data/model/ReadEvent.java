@@ -15,6 +15,7 @@ public class ReadEvent {
     private int readCount;          // Number of reads in window
     private boolean accepted;
     private String reasonCode;      // ACCEPTED, COOLDOWN, DUPLICATE_GPS, AMBIGUOUS, NO_GPS, etc.
+    private int captureWindowMs;    // Window length chosen for this decision
     private boolean synced;
     
     public ReadEvent() {
@@ -96,6 +97,14 @@ public class ReadEvent {
         this.reasonCode = reasonCode;
     }
     
+    public int getCaptureWindowMs() {
+        return captureWindowMs;
+    }
+    
+    public void setCaptureWindowMs(int captureWindowMs) {
+        this.captureWindowMs = captureWindowMs;
+    }
+    
     public boolean isSynced() {
         return synced;
     }
@@ -0,0 +1,28 @@
+package com.mason.bricktracking.data.model;
+
+/**
+ * What a scan recorded: a brick laid in the wall or a pallet inventory scan. Stored as
+ * {@link #code} (see Converters) - codes are persisted, so never renumber them.
+ */
+public enum ScanType {
+    PLACEMENT(0, "placement"),
+    PALLET(1, "pallet");
+    
+    public final int code;
+    public final String wireName; // Value of scanType in the sync request
+    
+    ScanType(int code, String wireName) {
+        this.code = code;
+        this.wireName = wireName;
+    }
+    
+    /** Unknown codes read back as PLACEMENT */
+    public static ScanType fromCode(int code) {
+        for (ScanType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return PLACEMENT;
+    }
+}
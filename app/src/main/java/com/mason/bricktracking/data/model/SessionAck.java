@@ -0,0 +1,55 @@
+package com.mason.bricktracking.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Server's ack watermark for one build session, as returned in the sync response and kept
+ * here: every placement of the session with eventSeq at or below ackedSeq has been stored
+ * or decided by the server. Queued rows under it are dropped instead of being resent.
+ */
+@Entity(tableName = "session_acks")
+public class SessionAck {
+    @PrimaryKey
+    @NonNull
+    private String buildSessionId = "";
+    
+    private int ackedSeq;
+    private long ackedAt;          // Client time the watermark last moved (not sent by the server)
+    
+    public SessionAck() {
+    }
+    
+    public SessionAck(@NonNull String buildSessionId, int ackedSeq, long ackedAt) {
+        this.buildSessionId = buildSessionId;
+        this.ackedSeq = ackedSeq;
+        this.ackedAt = ackedAt;
+    }
+    
+    // Getters and Setters
+    @NonNull
+    public String getBuildSessionId() {
+        return buildSessionId;
+    }
+    
+    public void setBuildSessionId(@NonNull String buildSessionId) {
+        this.buildSessionId = buildSessionId;
+    }
+    
+    public int getAckedSeq() {
+        return ackedSeq;
+    }
+    
+    public void setAckedSeq(int ackedSeq) {
+        this.ackedSeq = ackedSeq;
+    }
+    
+    public long getAckedAt() {
+        return ackedAt;
+    }
+    
+    public void setAckedAt(long ackedAt) {
+        this.ackedAt = ackedAt;
+    }
+}
@@ -0,0 +1,30 @@
+package com.mason.bricktracking.data.model;
+
+/**
+ * Claim sent with a sync batch: every placement of the build session with an eventSeq in
+ * (afterSeq, lastSeq] is in this batch or has already been acknowledged. The server folds
+ * the ranges of stored batches into its per-session ack watermark (see {@link SessionAck}).
+ */
+public class SessionRange {
+    private final String buildSessionId;
+    private final int afterSeq;
+    private final int lastSeq;
+    
+    public SessionRange(String buildSessionId, int afterSeq, int lastSeq) {
+        this.buildSessionId = buildSessionId;
+        this.afterSeq = afterSeq;
+        this.lastSeq = lastSeq;
+    }
+    
+    public String getBuildSessionId() {
+        return buildSessionId;
+    }
+    
+    public int getAfterSeq() {
+        return afterSeq;
+    }
+    
+    public int getLastSeq() {
+        return lastSeq;
+    }
+}
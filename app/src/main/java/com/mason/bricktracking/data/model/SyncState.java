@@ -0,0 +1,52 @@
+package com.mason.bricktracking.data.model;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Single-row table holding the client's sync watermark. Synced placements are deleted
+ * after each ack, so the last synced id can't be recovered from brick_placements itself.
+ */
+@Entity(tableName = "sync_state")
+public class SyncState {
+    public static final int SINGLETON_ID = 1;
+    
+    @PrimaryKey
+    private int id = SINGLETON_ID;
+    
+    private int lastSyncedId;      // Highest brick_placements.id acknowledged by the server
+    private long lastSyncedAt;     // Client time of that ack
+    
+    public SyncState() {
+    }
+    
+    public SyncState(int lastSyncedId, long lastSyncedAt) {
+        this.lastSyncedId = lastSyncedId;
+        this.lastSyncedAt = lastSyncedAt;
+    }
+    
+    // Getters and Setters
+    public int getId() {
+        return id;
+    }
+    
+    public void setId(int id) {
+        this.id = id;
+    }
+    
+    public int getLastSyncedId() {
+        return lastSyncedId;
+    }
+    
+    public void setLastSyncedId(int lastSyncedId) {
+        this.lastSyncedId = lastSyncedId;
+    }
+    
+    public long getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+    
+    public void setLastSyncedAt(long lastSyncedAt) {
+        this.lastSyncedAt = lastSyncedAt;
+    }
+}
@@ -2,8 +2,10 @@ package com.mason.bricktracking.data.remote;
 
 import android.util.Log;
 
+import com.mason.bricktracking.BuildConfig;
 import com.mason.bricktracking.MasonApp;
 
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.logging.HttpLoggingInterceptor;
@@ -22,6 +24,8 @@ public class ApiClient {
     // 
     // Current setup: localhost via emulator mapping
     private static final String BASE_URL = "http://10.0.2.2:8080/api/";
+    // Upper bound for SyncManager's in-flight sync batches (OkHttp's own default is 5 per host)
+    public static final int MAX_REQUESTS_PER_HOST = 8;
     private static Retrofit retrofit;
     private static ApiService apiService;
     
@@ -51,10 +55,21 @@ public class ApiClient {
     }
     
     private static Retrofit createRetrofit() {
+        // Bodies (sync payloads, tokens) are only logged in debug builds; release builds
+        // get per-endpoint phase timings from NetworkTimingListener instead
         HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
-        loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
+        loggingInterceptor.setLevel(BuildConfig.DEBUG
+            ? HttpLoggingInterceptor.Level.BODY
+            : HttpLoggingInterceptor.Level.NONE);
+        loggingInterceptor.redactHeader("Authorization");
+        
+        // Pipelined sync batches share this client's keep-alive pool (multiplexed if the server speaks HTTP/2)
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
         
         OkHttpClient client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .eventListenerFactory(NetworkTimingListener.FACTORY)
             // Auth interceptor — attaches Bearer token from MasonApp
             .addInterceptor(chain -> {
                 Request original = chain.request();
@@ -79,6 +94,8 @@ public class ApiClient {
                 return chain.proceed(original);
             })
             .addInterceptor(loggingInterceptor)
+            // After logging, so the log shows the JSON rather than the gzipped bytes
+            .addInterceptor(new GzipRequestInterceptor())
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(30, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
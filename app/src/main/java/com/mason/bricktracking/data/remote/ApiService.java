@@ -1,5 +1,6 @@
 package com.mason.bricktracking.data.remote;
 
+import okhttp3.RequestBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.DELETE;
@@ -12,8 +13,9 @@ import java.util.List;
 
 public interface ApiService {
     
+    // PlacementJsonBody, or PlacementWireEncoder bytes once the server advertises them in Accept-Post
     @POST("placements/sync")
-    Call<SyncResponse> syncPlacements(@Body SyncRequest request);
+    Call<SyncResponse> syncPlacements(@Body RequestBody body);
     
     @GET("placements/last")
     Call<SyncResponse> getLastPlacementNumber(@Query("masonId") String masonId);
@@ -0,0 +1,115 @@
+package com.mason.bricktracking.data.remote;
+
+import android.util.Log;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Sends request bodies of at least {@link #MIN_GZIP_BYTES} with Content-Encoding: gzip.
+ * Sync payloads repeat the same field names and session id on every placement, so they
+ * shrink several-fold - which matters on metered cellular links at remote sites. A streamed
+ * body of unknown length is measured by its {@link LengthEstimate} if it has one, and is
+ * compressed on the fly otherwise.
+ *
+ * Compression is assumed to be accepted until the server answers 415 to a gzipped body;
+ * the request is then resent as-is, and if that goes through, compression stays off for
+ * this client (a fresh one after ApiClient.reset() tries again).
+ */
+final class GzipRequestInterceptor implements Interceptor {
+    private static final String TAG = "GzipRequestInterceptor";
+    // Below this the gzip header and trailer eat most of the saving
+    static final long MIN_GZIP_BYTES = 1024;
+    private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+
+    private volatile boolean serverAcceptsGzip = true;
+
+    /** Implemented by streamed bodies (contentLength() -1) that can tell their size without being written */
+    interface LengthEstimate {
+        /** Lower bound on the body's length in bytes */
+        long estimatedLength();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request original = chain.request();
+        RequestBody body = original.body();
+        if (!serverAcceptsGzip || body == null || body.isOneShot()
+                || original.header("Content-Encoding") != null) {
+            return chain.proceed(original);
+        }
+
+        RequestBody gzipped;
+        long length = body.contentLength();
+        if (length < 0 && body instanceof LengthEstimate) {
+            length = ((LengthEstimate) body).estimatedLength();
+            if (length < MIN_GZIP_BYTES) {
+                return chain.proceed(original);
+            }
+            gzipped = streamingGzip(body);
+        } else if (length < 0) {
+            gzipped = streamingGzip(body); // Unknown length - compress on the fly
+        } else if (length < MIN_GZIP_BYTES) {
+            return chain.proceed(original);
+        } else {
+            byte[] compressed = gzip(body);
+            Log.d(TAG, "Gzipped " + original.url().encodedPath() + ": " + length + " -> " + compressed.length + " bytes");
+            gzipped = RequestBody.create(compressed, body.contentType());
+        }
+
+        Response response = chain.proceed(original.newBuilder()
+            .header("Content-Encoding", "gzip")
+            .method(original.method(), gzipped)
+            .build());
+        if (response.code() != UNSUPPORTED_MEDIA_TYPE) {
+            return response;
+        }
+
+        // Maybe the encoding, maybe the request itself - only the plain retry can tell
+        response.close();
+        Response plain = chain.proceed(original);
+        if (plain.code() != UNSUPPORTED_MEDIA_TYPE) {
+            serverAcceptsGzip = false;
+            Log.w(TAG, "Server rejects gzip request bodies - sending them uncompressed from now on");
+        }
+        return plain;
+    }
+
+    private static byte[] gzip(RequestBody body) throws IOException {
+        Buffer compressed = new Buffer();
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed));
+        body.writeTo(gzipSink);
+        gzipSink.close();
+        return compressed.readByteArray();
+    }
+
+    private static RequestBody streamingGzip(final RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1; // Not known until the body has been compressed
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+                body.writeTo(gzipSink);
+                gzipSink.close();
+            }
+        };
+    }
+}
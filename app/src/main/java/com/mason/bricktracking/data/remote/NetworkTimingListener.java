@@ -0,0 +1,125 @@
+package com.mason.bricktracking.data.remote;
+
+import com.mason.bricktracking.metrics.NetworkTimingMetrics;
+import com.mason.bricktracking.metrics.NetworkTimingMetrics.Phase;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import retrofit2.Invocation;
+
+/**
+ * Stamps System.nanoTime() at OkHttp's call events and records the phases into
+ * {@link NetworkTimingMetrics} under the ApiService method that made the call.
+ *
+ * One instance per call; OkHttp delivers a call's events one at a time. A call that
+ * sends its request twice (the gzip fallback) records its write and first-byte phases
+ * once per attempt.
+ */
+final class NetworkTimingListener extends EventListener {
+
+    static final EventListener.Factory FACTORY = NetworkTimingListener::new;
+
+    private final NetworkTimingMetrics metrics = NetworkTimingMetrics.getInstance();
+    private final String endpoint;
+
+    private long callStartNanos;
+    private long dnsStartNanos;
+    private long connectStartNanos;
+    private long secureConnectStartNanos;
+    private long requestStartNanos;
+    private long requestEndNanos;
+    private boolean newConnection;
+
+    private NetworkTimingListener(Call call) {
+        endpoint = endpointOf(call.request());
+    }
+
+    private static String endpointOf(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation != null) {
+            return invocation.method().getName();
+        }
+        return request.method() + " " + request.url().encodedPath();
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+        metrics.record(endpoint, Phase.DNS, dnsStartNanos, System.nanoTime());
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+        connectStartNanos = System.nanoTime();
+        newConnection = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        metrics.record(endpoint, Phase.TLS, secureConnectStartNanos, System.nanoTime());
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+        metrics.record(endpoint, Phase.CONNECT, connectStartNanos, System.nanoTime());
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStartNanos = System.nanoTime();
+        requestEndNanos = 0;
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestEndNanos = System.nanoTime(); // Final unless a body follows
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEndNanos = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        long now = System.nanoTime();
+        if (requestEndNanos != 0) {
+            metrics.record(endpoint, Phase.REQUEST_WRITE, requestStartNanos, requestEndNanos);
+            metrics.record(endpoint, Phase.TTFB, requestEndNanos, now);
+        }
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        metrics.record(endpoint, Phase.TOTAL, callStartNanos, System.nanoTime());
+        metrics.recordCall(endpoint, false, newConnection);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        metrics.recordCall(endpoint, true, newConnection);
+    }
+}
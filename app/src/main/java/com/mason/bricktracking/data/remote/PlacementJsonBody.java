@@ -0,0 +1,152 @@
+package com.mason.bricktracking.data.remote;
+
+import android.database.Cursor;
+
+import com.google.gson.stream.JsonWriter;
+import com.mason.bricktracking.data.model.DecisionStatus;
+import com.mason.bricktracking.data.model.ScanType;
+import com.mason.bricktracking.data.model.SessionRange;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * JSON body of POST placements/sync - {"masonId": ..., "placements": [...], "sessionRanges":
+ * [...]} - streamed from a Room cursor straight into the HTTP sink. Each row is read, written through a JsonWriter
+ * and dropped before the next, so memory use does not grow with the batch size, and OkHttp
+ * puts the first segment on the wire while later rows are still being read.
+ *
+ * Placement fields, order and null handling match what Gson produced for the old SyncRequest,
+ * plus an explicit eventId (buildSessionId-eventSeq, the server's idempotency key) for rows
+ * that have a session. The body can be written more than once (OkHttp retry, gzip fallback); each write runs
+ * the query again, and {@link #getWrittenIds()} reports the rows of the last complete write in
+ * body order, which is the order of the server's per-item results.
+ */
+public final class PlacementJsonBody extends RequestBody implements GzipRequestInterceptor.LengthEstimate {
+    private static final MediaType JSON = MediaType.get("application/json; charset=UTF-8");
+    // Lower bounds for the gzip threshold: field names and punctuation alone, values at their shortest
+    private static final int MIN_ENVELOPE_BYTES = 40;
+    private static final int MIN_ROW_BYTES = 200;
+    private static final int MIN_RANGE_BYTES = 40;
+
+    /** Opens a fresh cursor over the batch's rows, in queue order; called on an OkHttp thread */
+    public interface RowSource {
+        Cursor open();
+    }
+
+    private final String masonId;
+    private final RowSource rows;
+    private final List<Integer> ids;
+    private final List<SessionRange> sessionRanges;
+    private volatile List<Integer> writtenIds;
+
+    /**
+     * @param ids sorted ids of the batch; rows the cursor returns outside this set (committed
+     *            into the range after the batch was picked) are left for the next batch
+     */
+    public PlacementJsonBody(String masonId, RowSource rows, List<Integer> ids, List<SessionRange> sessionRanges) {
+        this.masonId = masonId;
+        this.rows = rows;
+        this.ids = ids;
+        this.sessionRanges = sessionRanges;
+    }
+
+    /** Ids in the order the last complete write put them in the body; null until one finished */
+    public List<Integer> getWrittenIds() {
+        return writtenIds;
+    }
+
+    @Override
+    public long estimatedLength() {
+        return MIN_ENVELOPE_BYTES + (long) ids.size() * MIN_ROW_BYTES + (long) sessionRanges.size() * MIN_RANGE_BYTES;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1; // Not known until every row has been written
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        // Not closed: the sink belongs to OkHttp
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8));
+        writer.setSerializeNulls(false);
+        writer.beginObject();
+        writer.name("masonId").value(masonId);
+        writer.name("placements").beginArray();
+
+        List<Integer> written = new ArrayList<>(ids.size());
+        try (Cursor cursor = rows.open()) {
+            int id = cursor.getColumnIndexOrThrow("id");
+            int brickNumber = cursor.getColumnIndexOrThrow("brickNumber");
+            int timestamp = cursor.getColumnIndexOrThrow("timestamp");
+            int latitude = cursor.getColumnIndexOrThrow("latitude");
+            int longitude = cursor.getColumnIndexOrThrow("longitude");
+            int altitude = cursor.getColumnIndexOrThrow("altitude");
+            int accuracy = cursor.getColumnIndexOrThrow("accuracy");
+            int buildSessionId = cursor.getColumnIndexOrThrow("buildSessionId");
+            int eventSeq = cursor.getColumnIndexOrThrow("eventSeq");
+            int rssiAvg = cursor.getColumnIndexOrThrow("rssiAvg");
+            int rssiPeak = cursor.getColumnIndexOrThrow("rssiPeak");
+            int readsInWindow = cursor.getColumnIndexOrThrow("readsInWindow");
+            int powerLevel = cursor.getColumnIndexOrThrow("powerLevel");
+            int decisionStatus = cursor.getColumnIndexOrThrow("decisionStatus");
+            int scanType = cursor.getColumnIndexOrThrow("scanType");
+            int captureWindowMs = cursor.getColumnIndexOrThrow("captureWindowMs");
+
+            while (cursor.moveToNext()) {
+                int rowId = cursor.getInt(id);
+                if (Collections.binarySearch(ids, rowId) < 0) {
+                    continue;
+                }
+                written.add(rowId);
+                writer.beginObject();
+                writer.name("brickNumber").value(cursor.isNull(brickNumber) ? null : cursor.getString(brickNumber));
+                writer.name("timestamp").value(cursor.getLong(timestamp));
+                writer.name("latitude").value(cursor.getDouble(latitude));
+                writer.name("longitude").value(cursor.getDouble(longitude));
+                writer.name("altitude").value(cursor.getDouble(altitude));
+                writer.name("accuracy").value(cursor.getDouble(accuracy));
+                String sessionId = cursor.isNull(buildSessionId) ? null : cursor.getString(buildSessionId);
+                writer.name("buildSessionId").value(sessionId);
+                writer.name("eventSeq").value(cursor.getInt(eventSeq));
+                writer.name("eventId").value(sessionId != null ? sessionId + "-" + cursor.getInt(eventSeq) : null);
+                writer.name("rssiAvg").value(cursor.getInt(rssiAvg));
+                writer.name("rssiPeak").value(cursor.getInt(rssiPeak));
+                writer.name("readsInWindow").value(cursor.getInt(readsInWindow));
+                writer.name("powerLevel").value(cursor.getInt(powerLevel));
+                writer.name("decisionStatus").value(DecisionStatus.fromCode(cursor.getInt(decisionStatus)).name());
+                writer.name("scanType").value(ScanType.fromCode(cursor.getInt(scanType)).wireName);
+                writer.name("captureWindowMs").value(cursor.getInt(captureWindowMs));
+                writer.endObject();
+            }
+        }
+
+        writer.endArray();
+        writer.name("sessionRanges").beginArray();
+        for (SessionRange range : sessionRanges) {
+            writer.beginObject();
+            writer.name("buildSessionId").value(range.getBuildSessionId());
+            writer.name("afterSeq").value(range.getAfterSeq());
+            writer.name("lastSeq").value(range.getLastSeq());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+        writtenIds = written;
+    }
+}
@@ -0,0 +1,239 @@
+package com.mason.bricktracking.data.remote;
+
+import com.mason.bricktracking.data.model.BrickPlacement;
+import com.mason.bricktracking.data.model.SessionRange;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact columnar encoding of a sync batch, the binary alternative to the JSON
+ * {@link PlacementJsonBody} on POST placements/sync ({@link #CONTENT_TYPE}). Decoded by
+ * backend/placementWire.js into the same object the JSON body parses to.
+ *
+ * Layout (varint = unsigned LEB128, zigzag = signed varint, string = varint of UTF-8
+ * length + 1 then the bytes, 0 = null):
+ * <pre>
+ *   "MBP" + version byte (3)
+ *   string masonId, varint rowCount
+ *   varint sessionCount, sessionCount x string      -- buildSessionId dictionary
+ *   then one column at a time, rowCount entries each:
+ *   brickNumber      varint (length &lt;&lt; 1 | packed); packed = upper-case hex, two digits per byte
+ *   timestamp        zigzag delta from the previous row (first from 0)
+ *   latitude         zigzag delta, fixed point 1e-7 degrees
+ *   longitude        zigzag delta, fixed point 1e-7 degrees
+ *   altitude         zigzag delta, centimetres
+ *   accuracy         zigzag, centimetres
+ *   buildSessionId   varint dictionary index + 1 (0 = null)
+ *   eventSeq         zigzag delta
+ *   rssiAvg/rssiPeak zigzag each (dBm)                   -- v3; one signed byte before
+ *   readsInWindow, powerLevel  zigzag
+ *   decisionStatus, scanType   one byte each (persisted enum codes)
+ *   captureWindowMs  zigzag
+ *   then varint rangeCount, per session range: varint dictionary index + 1,
+ *   varint afterSeq, varint (lastSeq - afterSeq)         -- v2
+ * </pre>
+ * Rows go in queue order (timestamp ascending), so the deltas are a byte or two. The
+ * event id is implied by (buildSessionId, eventSeq). Version 1 had no session ranges;
+ * versions 1 and 2 clamped RSSI to a signed byte, which turned averages over
+ * RssiParser.INVALID reads (e.g. -259) into -128 where the JSON body kept them.
+ * Coordinates lose precision below ~1 cm, far inside GPS accuracy. Not thread-safe;
+ * one encoder per sync thread.
+ */
+public final class PlacementWireEncoder {
+
+    public static final String CONTENT_TYPE = "application/x-mason-placements";
+    private static final byte VERSION = 3;
+
+    private static final double DEGREES_SCALE = 1e7;
+    private static final double METRES_SCALE = 100;
+
+    private byte[] buf = new byte[4096];
+    private int len;
+    private final Map<String, Integer> sessionIndex = new HashMap<>();
+
+    public byte[] encode(String masonId, List<BrickPlacement> batch, List<SessionRange> sessionRanges) {
+        len = 0;
+        sessionIndex.clear();
+        int n = batch.size();
+
+        writeByte('M');
+        writeByte('B');
+        writeByte('P');
+        writeByte(VERSION);
+        writeString(masonId);
+        writeVarint(n);
+
+        // Session dictionary, in order of first use
+        int[] sessions = new int[n];
+        String[] dictionary = new String[n + sessionRanges.size()];
+        for (int i = 0; i < n; i++) {
+            sessions[i] = sessionRef(batch.get(i).getBuildSessionId(), dictionary);
+        }
+        // A range's rows may all have been acked since the page was picked
+        int[] rangeSessions = new int[sessionRanges.size()];
+        for (int i = 0; i < rangeSessions.length; i++) {
+            rangeSessions[i] = sessionRef(sessionRanges.get(i).getBuildSessionId(), dictionary);
+        }
+        writeVarint(sessionIndex.size());
+        for (int i = 0; i < sessionIndex.size(); i++) {
+            writeString(dictionary[i]);
+        }
+
+        for (int i = 0; i < n; i++) {
+            writeBrickNumber(batch.get(i).getBrickNumber());
+        }
+        long previous = 0;
+        for (int i = 0; i < n; i++) {
+            long timestamp = batch.get(i).getTimestamp();
+            writeZigzag(timestamp - previous);
+            previous = timestamp;
+        }
+        previous = 0;
+        for (int i = 0; i < n; i++) {
+            long latitude = Math.round(batch.get(i).getLatitude() * DEGREES_SCALE);
+            writeZigzag(latitude - previous);
+            previous = latitude;
+        }
+        previous = 0;
+        for (int i = 0; i < n; i++) {
+            long longitude = Math.round(batch.get(i).getLongitude() * DEGREES_SCALE);
+            writeZigzag(longitude - previous);
+            previous = longitude;
+        }
+        previous = 0;
+        for (int i = 0; i < n; i++) {
+            long altitude = Math.round(batch.get(i).getAltitude() * METRES_SCALE);
+            writeZigzag(altitude - previous);
+            previous = altitude;
+        }
+        for (int i = 0; i < n; i++) {
+            writeZigzag(Math.round(batch.get(i).getAccuracy() * METRES_SCALE));
+        }
+        for (int i = 0; i < n; i++) {
+            writeVarint(sessions[i]);
+        }
+        previous = 0;
+        for (int i = 0; i < n; i++) {
+            int eventSeq = batch.get(i).getEventSeq();
+            writeZigzag(eventSeq - previous);
+            previous = eventSeq;
+        }
+        for (int i = 0; i < n; i++) {
+            writeZigzag(batch.get(i).getRssiAvg());
+        }
+        for (int i = 0; i < n; i++) {
+            writeZigzag(batch.get(i).getRssiPeak());
+        }
+        for (int i = 0; i < n; i++) {
+            writeZigzag(batch.get(i).getReadsInWindow());
+        }
+        for (int i = 0; i < n; i++) {
+            writeZigzag(batch.get(i).getPowerLevel());
+        }
+        for (int i = 0; i < n; i++) {
+            writeByte(batch.get(i).getDecisionStatus().code);
+        }
+        for (int i = 0; i < n; i++) {
+            writeByte(batch.get(i).getScanType().code);
+        }
+        for (int i = 0; i < n; i++) {
+            writeZigzag(batch.get(i).getCaptureWindowMs());
+        }
+        writeVarint(rangeSessions.length);
+        for (int i = 0; i < rangeSessions.length; i++) {
+            SessionRange range = sessionRanges.get(i);
+            writeVarint(rangeSessions[i]);
+            writeVarint(range.getAfterSeq());
+            writeVarint((long) range.getLastSeq() - range.getAfterSeq());
+        }
+        return Arrays.copyOf(buf, len);
+    }
+    
+    // Dictionary index + 1 of the session, added on first use; 0 for null
+    private int sessionRef(String sessionId, String[] dictionary) {
+        if (sessionId == null) {
+            return 0;
+        }
+        Integer index = sessionIndex.get(sessionId);
+        if (index == null) {
+            index = sessionIndex.size();
+            sessionIndex.put(sessionId, index);
+            dictionary[index] = sessionId;
+        }
+        return index + 1;
+    }
+
+    // --- Primitives ---
+
+    private void writeBrickNumber(String brickNumber) {
+        if (brickNumber == null || !isUpperHex(brickNumber)) {
+            // Null goes out as empty - the length is part of the packed header
+            byte[] bytes = brickNumber != null ? brickNumber.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            writeVarint((long) bytes.length << 1);
+            writeBytes(bytes);
+            return;
+        }
+        int digits = brickNumber.length();
+        writeVarint(((long) digits << 1) | 1);
+        ensure((digits + 1) / 2);
+        for (int i = 0; i < digits; i += 2) {
+            int high = Character.digit(brickNumber.charAt(i), 16);
+            int low = i + 1 < digits ? Character.digit(brickNumber.charAt(i + 1), 16) : 0;
+            buf[len++] = (byte) (high << 4 | low);
+        }
+    }
+
+    private static boolean isUpperHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'A' && c <= 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeString(String s) {
+        if (s == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length + 1L);
+        writeBytes(bytes);
+    }
+
+    private void writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void writeZigzag(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[len++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[len++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        buf[len++] = (byte) value;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
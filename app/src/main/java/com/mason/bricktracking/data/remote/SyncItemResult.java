@@ -0,0 +1,34 @@
+package com.mason.bricktracking.data.remote;
+
+import com.google.gson.annotations.SerializedName;
+
+/** Server's outcome for one placement of a sync batch; results are in request body order */
+public class SyncItemResult {
+    
+    public enum Status {
+        @SerializedName("inserted") INSERTED,
+        @SerializedName("updated") UPDATED,
+        // Already stored, superseded by a better scan, or under the session ack watermark
+        @SerializedName("duplicate") DUPLICATE,
+        @SerializedName("rejected") REJECTED
+    }
+    
+    private Status status;         // Null for a status this client doesn't know - the row stays queued
+    private String reason;
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public String getReason() {
+        return reason;
+    }
+    
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
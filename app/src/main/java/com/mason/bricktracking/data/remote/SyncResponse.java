@@ -1,11 +1,17 @@
 package com.mason.bricktracking.data.remote;
 
+import com.mason.bricktracking.data.model.SessionAck;
+
+import java.util.List;
+
 public class SyncResponse {
     private boolean success;
     private String message;
     private int lastPlacementNumber;
     private int palletCount;
     private int placementCount;
+    private List<SessionAck> acks; // Ack watermark per build session in the batch; null from older servers
+    private List<SyncItemResult> results; // Per placement, in request order; null from older servers
     
     public boolean isSuccess() {
         return success;
@@ -46,4 +52,20 @@ public class SyncResponse {
     public void setPlacementCount(int placementCount) {
         this.placementCount = placementCount;
     }
+    
+    public List<SessionAck> getAcks() {
+        return acks;
+    }
+    
+    public void setAcks(List<SessionAck> acks) {
+        this.acks = acks;
+    }
+    
+    public List<SyncItemResult> getResults() {
+        return results;
+    }
+    
+    public void setResults(List<SyncItemResult> results) {
+        this.results = results;
+    }
 }
@@ -0,0 +1,183 @@
+package com.mason.bricktracking.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide latency histograms for each phase of an HTTP call, per API endpoint,
+ * fed by OkHttp's EventListener (data.remote.NetworkTimingListener).
+ *
+ * DNS / connect / TLS only appear on calls that open a new connection; a slow site link
+ * shows up there and in request write, a slow server in time to first byte. Recording
+ * is lock-free ({@link LatencyHistogram}) so this stays on in production builds.
+ */
+public final class NetworkTimingMetrics {
+
+    public enum Phase {
+        /** DNS lookup (new connections only) */
+        DNS("dns", "DNS"),
+        /** TCP connect including TLS (new connections only) */
+        CONNECT("connect", "Connect"),
+        /** TLS handshake (new https connections only) */
+        TLS("tls", "TLS"),
+        /** Request headers start -> request body fully written */
+        REQUEST_WRITE("request_write", "Request write"),
+        /** Request written -> response headers start */
+        TTFB("ttfb", "Time to first byte"),
+        /** Call start -> call end (successful calls) */
+        TOTAL("total", "Total");
+
+        public final String key;
+        public final String label;
+
+        Phase(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    /** Histograms and counters for one endpoint */
+    public static final class Endpoint {
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong newConnections = new AtomicLong();
+
+        Endpoint() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        public LatencyHistogram histogram(Phase phase) {
+            return histograms[phase.ordinal()];
+        }
+
+        public long calls() {
+            return calls.get();
+        }
+
+        public long failures() {
+            return failures.get();
+        }
+
+        public long newConnections() {
+            return newConnections.get();
+        }
+
+        void reset() {
+            for (LatencyHistogram histogram : histograms) {
+                histogram.reset();
+            }
+            calls.set(0);
+            failures.set(0);
+            newConnections.set(0);
+        }
+    }
+
+    private static final NetworkTimingMetrics INSTANCE = new NetworkTimingMetrics();
+
+    // Keyed by ApiService method name, so the set stays as small as the API
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private NetworkTimingMetrics() {
+    }
+
+    public static NetworkTimingMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint();
+            endpoint = endpoints.putIfAbsent(name, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    /** Record a phase from its start / end nanoTime stamps (0 start = phase did not happen) */
+    public void record(String endpoint, Phase phase, long startNanos, long endNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        endpoint(endpoint).histogram(phase).recordNanos(endNanos - startNanos);
+    }
+
+    /** Count one finished call; failed calls are not in the TOTAL histogram */
+    public void recordCall(String endpoint, boolean failed, boolean newConnection) {
+        Endpoint e = endpoint(endpoint);
+        e.calls.incrementAndGet();
+        if (failed) {
+            e.failures.incrementAndGet();
+        }
+        if (newConnection) {
+            e.newConnections.incrementAndGet();
+        }
+    }
+
+    public void reset() {
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.reset();
+        }
+    }
+
+    /** Fixed-width table (milliseconds) per endpoint for the admin dialog */
+    public String toDisplayString() {
+        Map<String, Endpoint> sorted = new TreeMap<>(endpoints);
+        if (sorted.isEmpty()) {
+            return "No API calls recorded\n";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Endpoint> entry : sorted.entrySet()) {
+            Endpoint e = entry.getValue();
+            sb.append(String.format(Locale.US, "%s: %d calls, %d failed, %d new connections%n",
+                entry.getKey(), e.calls(), e.failures(), e.newConnections()));
+            sb.append(String.format(Locale.US, "  %-20s %6s %7s %7s %7s %7s%n", "Phase (ms)", "n", "p50", "p90", "p99", "max"));
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram h = e.histogram(phase);
+                sb.append(String.format(Locale.US, "  %-20s %6d %7.1f %7.1f %7.1f %7.1f%n", phase.label, h.count(),
+                    h.percentileMicros(50) / 1000.0, h.percentileMicros(90) / 1000.0,
+                    h.percentileMicros(99) / 1000.0, h.maxMicros() / 1000.0));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** JSON export; all latencies in microseconds */
+    public String toJson(long capturedAtMs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"captured_at\": ").append(capturedAtMs).append(",\n  \"unit\": \"us\",\n  \"endpoints\": {");
+        boolean firstEndpoint = true;
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            Endpoint e = entry.getValue();
+            sb.append(firstEndpoint ? "\n" : ",\n");
+            firstEndpoint = false;
+            sb.append("    \"").append(entry.getKey()).append("\": {")
+                .append("\"calls\": ").append(e.calls())
+                .append(", \"failures\": ").append(e.failures())
+                .append(", \"new_connections\": ").append(e.newConnections());
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram h = e.histogram(phase);
+                sb.append(",\n      \"").append(phase.key).append("\": {")
+                    .append("\"count\": ").append(h.count())
+                    .append(", \"mean\": ").append(h.meanMicros())
+                    .append(", \"p50\": ").append(h.percentileMicros(50))
+                    .append(", \"p90\": ").append(h.percentileMicros(90))
+                    .append(", \"p99\": ").append(h.percentileMicros(99))
+                    .append(", \"max\": ").append(h.maxMicros())
+                    .append('}');
+            }
+            sb.append('}');
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package com.mason.bricktracking.metrics;
+
+import java.util.Locale;
+
+/**
+ * Process-wide latency histograms for each stage between the reader seeing a tag and
+ * the placement being acknowledged by the backend.
+ *
+ * Every stage is the difference of two SystemClock.elapsedRealtimeNanos() stamps taken
+ * on whichever thread owns that step; recording is lock-free and allocation-free
+ * ({@link LatencyHistogram}), so this stays on in production builds.
+ */
+public final class ScanLatencyMetrics {
+
+    public enum Stage {
+        /** SDK callback -> read picked up by the scan pipeline thread (per read) */
+        CALLBACK_TO_PIPELINE("callback_to_pipeline", "SDK callback -> pipeline"),
+        /** Window open (first read) -> window close */
+        WINDOW("window", "Window open -> close"),
+        /** Window close -> winner accepted and handed to SyncManager */
+        DECISION("decision", "Window close -> decision"),
+        /** Decision -> feedback applied on the UI thread (includes the placement commit) */
+        FEEDBACK("feedback", "Decision -> UI feedback"),
+        /** SDK callback of the window's first read -> UI feedback */
+        READ_TO_FEEDBACK("read_to_feedback", "First read -> UI feedback"),
+        /** SyncManager.addPlacement() -> Room insert committed */
+        ROOM_INSERT("room_insert", "addPlacement -> Room insert"),
+        /** Room insert committed -> HTTP sync request started */
+        SYNC_QUEUE("sync_queue", "Room insert -> HTTP start"),
+        /** HTTP sync request started -> response received */
+        SYNC_ACK("sync_ack", "HTTP start -> sync ack");
+
+        public final String key;
+        public final String label;
+
+        Stage(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    private static final ScanLatencyMetrics INSTANCE = new ScanLatencyMetrics();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    private ScanLatencyMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static ScanLatencyMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /** Record a stage from its start / end elapsedRealtimeNanos stamps (0 start = not measured) */
+    public void record(Stage stage, long startNanos, long endNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        histograms[stage.ordinal()].recordNanos(endNanos - startNanos);
+    }
+
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /** Fixed-width table (milliseconds) for the admin dialog */
+    public String toDisplayString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-28s %6s %7s %7s %7s %7s%n", "Stage (ms)", "n", "p50", "p90", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = histogram(stage);
+            sb.append(String.format(Locale.US, "%-28s %6d %7.1f %7.1f %7.1f %7.1f%n", stage.label, h.count(),
+                h.percentileMicros(50) / 1000.0, h.percentileMicros(90) / 1000.0,
+                h.percentileMicros(99) / 1000.0, h.maxMicros() / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    /** JSON export; all latencies in microseconds */
+    public String toJson(long capturedAtMs) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"captured_at\": ").append(capturedAtMs).append(",\n  \"unit\": \"us\",\n  \"stages\": {");
+        Stage[] stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            LatencyHistogram h = histogram(stages[i]);
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    \"").append(stages[i].key).append("\": {")
+                .append("\"count\": ").append(h.count())
+                .append(", \"mean\": ").append(h.meanMicros())
+                .append(", \"p50\": ").append(h.percentileMicros(50))
+                .append(", \"p90\": ").append(h.percentileMicros(90))
+                .append(", \"p99\": ").append(h.percentileMicros(99))
+                .append(", \"max\": ").append(h.maxMicros())
+                .append('}');
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package com.mason.bricktracking.scan;
+
+/**
+ * Sizes the capture window from the read rate the reader is actually achieving.
+ *
+ * Every decided window reports how many reads its winner got and how long the window
+ * ran; the per-tag rate (reads/s) is smoothed with an EWMA, and the next window is the
+ * time that rate needs to deliver targetReads, clamped to [minMs, maxMs]. Until the
+ * first observation the sizer returns the initial (manual) window length.
+ *
+ * Jobsites differ mainly in tag placement, power level and RF clutter, all of which
+ * show up directly in the per-tag read rate, so this replaces tuning captureWindowMs
+ * by hand. Not thread-safe - confine to the scan pipeline thread.
+ */
+public final class AdaptiveWindowSizer {
+
+    // Weight of the newest observation; ~10 windows to follow a change in conditions
+    private static final double EWMA_ALPHA = 0.2;
+
+    // Windows shorter than this give a too-noisy rate estimate
+    private static final long MIN_OBSERVATION_MS = 20;
+
+    private final long minMs;
+    private final long maxMs;
+    private final long initialMs;
+    private final int targetReads;
+
+    private double readsPerSecond = 0; // 0 = no observation yet
+    private int observations = 0;
+
+    /**
+     * @param initialMs   window to use before any rate has been observed
+     * @param targetReads reads per tag the window should allow for a confident decision
+     */
+    public AdaptiveWindowSizer(long minMs, long maxMs, long initialMs, int targetReads) {
+        this.minMs = minMs;
+        this.maxMs = maxMs;
+        this.initialMs = clamp(initialMs);
+        this.targetReads = targetReads;
+    }
+
+    /**
+     * Feed back one decided window.
+     *
+     * @param winnerReads reads the winning tag got in the window
+     * @param windowMs    how long the window actually ran
+     */
+    public void onWindowDecided(int winnerReads, long windowMs) {
+        if (winnerReads <= 0 || windowMs < MIN_OBSERVATION_MS) {
+            return;
+        }
+        double rate = winnerReads * 1000.0 / windowMs;
+        readsPerSecond = observations == 0 ? rate : readsPerSecond + EWMA_ALPHA * (rate - readsPerSecond);
+        observations++;
+    }
+
+    /** Window length for the next decision */
+    public long windowMs() {
+        if (observations == 0) {
+            return initialMs;
+        }
+        return clamp((long) Math.ceil(targetReads * 1000.0 / readsPerSecond));
+    }
+
+    /** Smoothed per-tag read rate, 0 before the first observation */
+    public double readsPerSecond() {
+        return readsPerSecond;
+    }
+
+    public int observations() {
+        return observations;
+    }
+
+    /** Forget the learned rate (e.g. after a power-level change invalidates it) */
+    public void reset() {
+        readsPerSecond = 0;
+        observations = 0;
+    }
+
+    private long clamp(long ms) {
+        return Math.max(minMs, Math.min(maxMs, ms));
+    }
+}
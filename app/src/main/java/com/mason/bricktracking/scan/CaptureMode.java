@@ -0,0 +1,23 @@
+package com.mason.bricktracking.scan;
+
+/**
+ * How the scan pipeline groups reads into decisions.
+ */
+public enum CaptureMode {
+    /** Window opens on the first read after idle and closes after captureWindowMs ({@link CaptureWindow}) */
+    FIXED,
+    /** Continuous re-evaluation over the last captureWindowMs of reads ({@link SlidingCaptureWindow}) */
+    SLIDING;
+
+    /** Lenient lookup for stored preference values; unknown names fall back to FIXED */
+    public static CaptureMode fromName(String name) {
+        if (name != null) {
+            for (CaptureMode mode : values()) {
+                if (mode.name().equals(name)) {
+                    return mode;
+                }
+            }
+        }
+        return FIXED;
+    }
+}
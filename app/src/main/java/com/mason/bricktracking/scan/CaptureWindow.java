@@ -0,0 +1,350 @@
+package com.mason.bricktracking.scan;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the RFID reads of one capture window and selects the best candidate.
+ *
+ * Per-EPC statistics (read count, RSSI sum, RSSI peak) live in preallocated primitive
+ * slots that are recycled by {@link #reset()}, so a window costs no allocations once the
+ * slot arrays have grown to the number of tags in range. Winner / runner-up selection and
+ * the ambiguity test are the same rules the scan screen has always used: highest read
+ * count wins, average RSSI breaks ties. {@link #canDecideEarly} lets the caller close the
+ * window before its deadline once the outcome is statistically settled.
+ *
+ * Not thread-safe - callers must confine a window to one thread or guard it externally.
+ */
+public final class CaptureWindow {
+
+    public enum Outcome {
+        EMPTY,      // No reads in the window
+        AMBIGUOUS,  // Winner and runner-up too close to call
+        WINNER      // Clear winner available via winner*() accessors
+    }
+
+    private static final int DEFAULT_CAPACITY = 32;
+    private static final int NO_SLOT = -1;
+
+    // Early decision: one-sided z for the confidence bounds (~97.7%) and minimum leader reads
+    private static final double CONFIDENCE_Z = 2.0;
+    private static final int MIN_EARLY_READS = 3;
+
+    // Slot columns - one entry per distinct EPC seen in the current window.
+    // EPCs are stored packed, EpcKey.MAX_WORDS longs per slot.
+    private long[] keyWords;
+    private int[] keyNibbles;
+    private int[] keyHashes;
+    private int[] counts;
+    private long[] rssiSums;
+    private long[] rssiSquares;
+    private int[] rssiPeaks;
+    private int size = 0;
+
+    // Open-addressed EPC -> slot index (stores slot + 1, 0 = empty)
+    private int[] index;
+    private int mask;
+
+    private int totalReads = 0;
+    private int winner = NO_SLOT;
+    private int runnerUp = NO_SLOT;
+
+    public CaptureWindow() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CaptureWindow(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(4, initialCapacity - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Record one read of a packed EPC (see {@link EpcKey#parseHex}). Only allocates when
+     * the window sees more distinct EPCs than it has ever seen before.
+     */
+    public void addRead(long[] epcWords, int nibbles, int rssi) {
+        addRead(epcWords, 0, nibbles, rssi);
+    }
+
+    /** Same as {@link #addRead(long[], int, int)} for an EPC stored at an offset (e.g. a ring slot) */
+    public void addRead(long[] epcWords, int offset, int nibbles, int rssi) {
+        int slot = findOrInsert(epcWords, offset, nibbles);
+        counts[slot]++;
+        rssiSums[slot] += rssi;
+        rssiSquares[slot] += (long) rssi * rssi;
+        if (rssi > rssiPeaks[slot]) {
+            rssiPeaks[slot] = rssi;
+        }
+        totalReads++;
+    }
+
+    /**
+     * Rank all candidates and decide the window.
+     * After a WINNER or AMBIGUOUS outcome the winner / runner-up accessors are valid
+     * until the next {@link #reset()} or {@link #addRead}.
+     */
+    public Outcome evaluate(int rssiThresholdDb, int countThreshold) {
+        if (size == 0) {
+            winner = NO_SLOT;
+            runnerUp = NO_SLOT;
+            return Outcome.EMPTY;
+        }
+        rank();
+
+        if (runnerUp != NO_SLOT && isAmbiguous(counts[winner], avgRssiAt(winner),
+                counts[runnerUp], avgRssiAt(runnerUp), rssiThresholdDb, countThreshold)) {
+            return Outcome.AMBIGUOUS;
+        }
+        return Outcome.WINNER;
+    }
+
+    /**
+     * Sequential test: true once waiting for the rest of the window can no longer change
+     * the outcome evaluate() would give (within the confidence bound).
+     *
+     * The leader must be ahead on read count by more than the counting noise
+     * (z * sqrt(n1 + n2), reads treated as Poisson). It must also clear the same ambiguity
+     * rule evaluate() applies, with margin: either the count lead exceeds countThreshold
+     * plus that noise, or the lower confidence bound of the average-RSSI gap (Welch
+     * standard error) exceeds rssiThresholdDb. A lone candidate counts as leading a
+     * runner-up with zero reads.
+     */
+    public boolean canDecideEarly(int rssiThresholdDb, int countThreshold) {
+        if (size == 0) {
+            return false;
+        }
+        rank();
+        int leaderCount = counts[winner];
+        if (leaderCount < MIN_EARLY_READS) {
+            return false;
+        }
+        int otherCount = runnerUp != NO_SLOT ? counts[runnerUp] : 0;
+
+        int lead = leaderCount - otherCount;
+        double countNoise = CONFIDENCE_Z * Math.sqrt(leaderCount + otherCount);
+        if (lead <= countNoise) {
+            return false; // Leadership itself could still flip
+        }
+        if (lead > countThreshold + countNoise) {
+            return true;
+        }
+        if (runnerUp == NO_SLOT || leaderCount < 2 || otherCount < 2) {
+            return false; // No variance estimate for the RSSI test
+        }
+
+        double gap = Math.abs(meanRssi(winner) - meanRssi(runnerUp));
+        double standardError = Math.sqrt(rssiVariance(winner) / leaderCount + rssiVariance(runnerUp) / otherCount);
+        return gap - CONFIDENCE_Z * standardError > rssiThresholdDb;
+    }
+
+    /** Clear all slots for the next window, keeping the backing arrays. */
+    public void reset() {
+        Arrays.fill(index, 0);
+        size = 0;
+        totalReads = 0;
+        winner = NO_SLOT;
+        runnerUp = NO_SLOT;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Number of distinct EPCs in the window */
+    public int size() {
+        return size;
+    }
+
+    /** Number of reads across all EPCs in the window */
+    public int totalReads() {
+        return totalReads;
+    }
+
+    // --- Per-slot accessors (slot in 0..size()-1) ---
+
+    /** Allocates a key - intended for logging and for the decided winner only */
+    public EpcKey epcAt(int slot) {
+        return keyAt(slot);
+    }
+
+    public int countAt(int slot) {
+        return counts[slot];
+    }
+
+    public int avgRssiAt(int slot) {
+        return (int) (rssiSums[slot] / counts[slot]);
+    }
+
+    public int peakRssiAt(int slot) {
+        return rssiPeaks[slot];
+    }
+
+    // --- Winner / runner-up (valid after evaluate) ---
+
+    public boolean hasRunnerUp() {
+        return runnerUp != NO_SLOT;
+    }
+
+    /** The only allocation of a decided window: the winner's immutable key */
+    public EpcKey winnerEpc() {
+        return keyAt(winner);
+    }
+
+    public int winnerCount() {
+        return counts[winner];
+    }
+
+    public int winnerAvgRssi() {
+        return avgRssiAt(winner);
+    }
+
+    public int winnerPeakRssi() {
+        return rssiPeaks[winner];
+    }
+
+    public EpcKey runnerUpEpc() {
+        return keyAt(runnerUp);
+    }
+
+    public int runnerUpCount() {
+        return counts[runnerUp];
+    }
+
+    public int runnerUpAvgRssi() {
+        return avgRssiAt(runnerUp);
+    }
+
+    // --- Ranking rules ---
+
+    /** Primary: higher read count. Tie-break: higher average RSSI. */
+    public static boolean isBetter(int count, int avgRssi, int otherCount, int otherAvgRssi) {
+        if (count != otherCount) {
+            return count > otherCount;
+        }
+        return avgRssi > otherAvgRssi;
+    }
+
+    /** Ambiguous when counts are within countThreshold AND average RSSI is within rssiThresholdDb. */
+    public static boolean isAmbiguous(int count, int avgRssi, int otherCount, int otherAvgRssi,
+                                      int rssiThresholdDb, int countThreshold) {
+        int countDiff = Math.abs(count - otherCount);
+        if (countDiff <= countThreshold) {
+            int rssiDiff = Math.abs(avgRssi - otherAvgRssi);
+            return rssiDiff <= rssiThresholdDb;
+        }
+        return false;
+    }
+
+    private void rank() {
+        winner = NO_SLOT;
+        runnerUp = NO_SLOT;
+        for (int slot = 0; slot < size; slot++) {
+            if (winner == NO_SLOT || isBetter(slot, winner)) {
+                runnerUp = winner;
+                winner = slot;
+            } else if (runnerUp == NO_SLOT || isBetter(slot, runnerUp)) {
+                runnerUp = slot;
+            }
+        }
+    }
+
+    private double meanRssi(int slot) {
+        return (double) rssiSums[slot] / counts[slot];
+    }
+
+    /** Sample variance of the slot's RSSI readings (needs count >= 2) */
+    private double rssiVariance(int slot) {
+        int n = counts[slot];
+        double mean = meanRssi(slot);
+        return Math.max(0.0, (rssiSquares[slot] - n * mean * mean) / (n - 1));
+    }
+
+    private boolean isBetter(int slot, int otherSlot) {
+        return isBetter(counts[slot], avgRssiAt(slot), counts[otherSlot], avgRssiAt(otherSlot));
+    }
+
+    // --- Slot table ---
+
+    private EpcKey keyAt(int slot) {
+        return EpcKey.of(keyWords, slot * EpcKey.MAX_WORDS, keyNibbles[slot]);
+    }
+
+    private int findOrInsert(long[] words, int offset, int nibbles) {
+        int hash = EpcKey.hash(words, offset, nibbles);
+        int pos = mix(hash) & mask;
+        while (true) {
+            int entry = index[pos];
+            if (entry == 0) {
+                break;
+            }
+            int slot = entry - 1;
+            if (keyHashes[slot] == hash && EpcKey.equals(keyWords, slot * EpcKey.MAX_WORDS,
+                    keyNibbles[slot], words, offset, nibbles)) {
+                return slot;
+            }
+            pos = (pos + 1) & mask;
+        }
+
+        if (size == counts.length) {
+            grow();
+            return findOrInsert(words, offset, nibbles);
+        }
+
+        int slot = size++;
+        System.arraycopy(words, offset, keyWords, slot * EpcKey.MAX_WORDS, EpcKey.wordCount(nibbles));
+        keyNibbles[slot] = nibbles;
+        keyHashes[slot] = hash;
+        counts[slot] = 0;
+        rssiSums[slot] = 0;
+        rssiSquares[slot] = 0;
+        rssiPeaks[slot] = Integer.MIN_VALUE;
+        index[pos] = slot + 1;
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        keyWords = new long[capacity * EpcKey.MAX_WORDS];
+        keyNibbles = new int[capacity];
+        keyHashes = new int[capacity];
+        counts = new int[capacity];
+        rssiSums = new long[capacity];
+        rssiSquares = new long[capacity];
+        rssiPeaks = new int[capacity];
+        // Keep the index at most half full so probe chains stay short
+        index = new int[capacity * 2];
+        mask = index.length - 1;
+    }
+
+    private void grow() {
+        long[] oldWords = keyWords;
+        int[] oldNibbles = keyNibbles;
+        int[] oldHashes = keyHashes;
+        int[] oldCounts = counts;
+        long[] oldSums = rssiSums;
+        long[] oldSquares = rssiSquares;
+        int[] oldPeaks = rssiPeaks;
+        int oldSize = size;
+
+        allocate(counts.length * 2);
+        System.arraycopy(oldWords, 0, keyWords, 0, oldSize * EpcKey.MAX_WORDS);
+        System.arraycopy(oldNibbles, 0, keyNibbles, 0, oldSize);
+        System.arraycopy(oldHashes, 0, keyHashes, 0, oldSize);
+        System.arraycopy(oldCounts, 0, counts, 0, oldSize);
+        System.arraycopy(oldSums, 0, rssiSums, 0, oldSize);
+        System.arraycopy(oldSquares, 0, rssiSquares, 0, oldSize);
+        System.arraycopy(oldPeaks, 0, rssiPeaks, 0, oldSize);
+
+        for (int slot = 0; slot < oldSize; slot++) {
+            int pos = mix(keyHashes[slot]) & mask;
+            while (index[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            index[pos] = slot + 1;
+        }
+    }
+
+    private static int mix(int h) {
+        // Spread low-entropy EPC hashes across the table
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,185 @@
+package com.mason.bricktracking.scan;
+
+import java.util.Arrays;
+
+/**
+ * EPC packed into primitive longs, used as the map / set key on the scan path instead of
+ * a normalized String.
+ *
+ * Hex digits are packed big-endian, 16 per long, so a standard 96-bit EPC takes two words
+ * and the longest EPC the Gen2 air protocol allows (496 bits) takes eight. The hot path
+ * parses into a caller-owned scratch array with {@link #parseHex(CharSequence, long[])} and
+ * only creates an EpcKey once a candidate has won its window; {@link #toHexString()} is
+ * reserved for the point where a placement is persisted.
+ */
+public final class EpcKey {
+
+    public static final int MAX_BITS = 496;
+    public static final int MAX_NIBBLES = MAX_BITS / 4;
+    public static final int NIBBLES_PER_WORD = 16;
+    public static final int MAX_WORDS = (MAX_NIBBLES + NIBBLES_PER_WORD - 1) / NIBBLES_PER_WORD;
+
+    /** Returned by parseHex for input that is not a hex EPC (or longer than MAX_BITS) */
+    public static final int INVALID = -1;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final long[] words;
+    private final int nibbles;
+    private final int hash;
+
+    private EpcKey(long[] words, int nibbles) {
+        this.words = words;
+        this.nibbles = nibbles;
+        this.hash = hash(words, nibbles);
+    }
+
+    /** Copy a packed EPC (e.g. a window slot or parse scratch) into an immutable key. */
+    public static EpcKey of(long[] words, int nibbles) {
+        return of(words, 0, nibbles);
+    }
+
+    public static EpcKey of(long[] words, int offset, int nibbles) {
+        return new EpcKey(Arrays.copyOfRange(words, offset, offset + wordCount(nibbles)), nibbles);
+    }
+
+    /** Convenience for non-hot paths; returns null when the text is empty or not hex. */
+    public static EpcKey parse(CharSequence text) {
+        long[] scratch = new long[MAX_WORDS];
+        int n = parseHex(text, scratch);
+        return n > 0 ? of(scratch, n) : null;
+    }
+
+    /**
+     * Parse a hex EPC into dst in a single pass, without creating intermediate Strings.
+     * Surrounding whitespace is skipped and lower-case digits are folded, matching the
+     * old trim().toUpperCase() normalization.
+     *
+     * @param dst at least {@link #MAX_WORDS} long; words past the EPC are left untouched
+     * @return number of hex digits parsed, 0 for null / blank input, or {@link #INVALID}
+     */
+    public static int parseHex(CharSequence text, long[] dst) {
+        if (text == null) {
+            return 0;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int nibbles = end - start;
+        if (nibbles > MAX_NIBBLES) {
+            return INVALID;
+        }
+
+        long word = 0;
+        for (int i = 0; i < nibbles; i++) {
+            int digit = hexValue(text.charAt(start + i));
+            if (digit < 0) {
+                return INVALID;
+            }
+            word = (word << 4) | digit;
+            if ((i & (NIBBLES_PER_WORD - 1)) == NIBBLES_PER_WORD - 1) {
+                dst[i / NIBBLES_PER_WORD] = word;
+                word = 0;
+            }
+        }
+        int tail = nibbles & (NIBBLES_PER_WORD - 1);
+        if (tail != 0) {
+            // Left-align the partial last word so comparisons stay big-endian
+            dst[nibbles / NIBBLES_PER_WORD] = word << (4 * (NIBBLES_PER_WORD - tail));
+        }
+        return nibbles;
+    }
+
+    public static int wordCount(int nibbles) {
+        return (nibbles + NIBBLES_PER_WORD - 1) / NIBBLES_PER_WORD;
+    }
+
+    public static int hash(long[] words, int nibbles) {
+        return hash(words, 0, nibbles);
+    }
+
+    public static int hash(long[] words, int offset, int nibbles) {
+        long h = nibbles;
+        int count = wordCount(nibbles);
+        for (int i = 0; i < count; i++) {
+            h = h * 0x9E3779B97F4A7C15L + words[offset + i];
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /** Compare against a packed EPC held in an array, starting at offset */
+    public static boolean equals(long[] a, int aOffset, int aNibbles, long[] b, int bOffset, int bNibbles) {
+        if (aNibbles != bNibbles) {
+            return false;
+        }
+        int count = wordCount(aNibbles);
+        for (int i = 0; i < count; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean matches(long[] other, int offset, int otherNibbles) {
+        return equals(words, 0, nibbles, other, offset, otherNibbles);
+    }
+
+    public int nibbles() {
+        return nibbles;
+    }
+
+    public int wordCount() {
+        return words.length;
+    }
+
+    public long word(int i) {
+        return words[i];
+    }
+
+    public void copyTo(long[] dst, int offset) {
+        System.arraycopy(words, 0, dst, offset, words.length);
+    }
+
+    /** Upper-case hex form, as stored in BrickPlacement.brickNumber */
+    public String toHexString() {
+        char[] out = new char[nibbles];
+        for (int i = 0; i < nibbles; i++) {
+            long word = words[i / NIBBLES_PER_WORD];
+            int shift = 4 * (NIBBLES_PER_WORD - 1 - (i & (NIBBLES_PER_WORD - 1)));
+            out[i] = HEX[(int) (word >>> shift) & 0xF];
+        }
+        return new String(out);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EpcKey)) return false;
+        EpcKey other = (EpcKey) o;
+        return hash == other.hash && equals(words, 0, nibbles, other.words, 0, other.nibbles);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return toHexString();
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        return -1;
+    }
+}
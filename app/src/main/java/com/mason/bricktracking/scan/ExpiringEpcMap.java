@@ -0,0 +1,219 @@
+package com.mason.bricktracking.scan;
+
+import java.util.Arrays;
+
+/**
+ * Bounded EPC -> (timestamp, primitive payload) map whose entries expire a fixed TTL
+ * after they were written. Used for the per-tag cooldown and the recent-placement
+ * duplicate check, which only care about the last few seconds / minutes.
+ *
+ * Entries live in a ring in write order. With a single TTL, write order is expiry order,
+ * so expiry just advances the ring head past stale entries on each access - amortised
+ * O(1), no periodic full scans. Re-writing a key tombstones its old ring entry and
+ * appends a new one. When the ring is full, the oldest entry is evicted early, so memory
+ * is fixed at construction no matter how long the shift runs. Lookups go through an
+ * open-addressed index with backward-shift deletion.
+ *
+ * Timestamps are whatever clock the caller uses consistently; they are expected to be
+ * non-decreasing. Not thread-safe - confine to the scan pipeline thread.
+ */
+public final class ExpiringEpcMap {
+
+    /** Returned by {@link #find} when the key is absent or expired */
+    public static final int NOT_FOUND = -1;
+
+    private final long ttl;
+    private final int payloadWidth;
+
+    // Ring of entries in write order; head = oldest
+    private final int capacity;
+    private final int ringMask;
+    private final long[] keyWords;
+    private final int[] keyNibbles;
+    private final int[] keyHashes;
+    private final long[] stamps;
+    private final double[] payloads;
+    private final boolean[] alive;
+    private final int[] indexPositions; // Where each live entry sits in the index
+    private int head = 0;
+    private int count = 0; // Ring entries, including tombstones
+    private int liveCount = 0;
+
+    // Open-addressed key -> ring entry (stores entry + 1, 0 = empty)
+    private final int[] index;
+    private final int indexMask;
+
+    private long evictedEarly = 0;
+
+    /**
+     * @param ttl          lifetime of an entry, in the caller's clock units
+     * @param capacity     ring size, i.e. most writes held at once including superseded
+     *                     ones (rounded up to a power of two)
+     * @param payloadWidth primitive values stored per entry (0 for a pure timestamp map)
+     */
+    public ExpiringEpcMap(long ttl, int capacity, int payloadWidth) {
+        this.ttl = ttl;
+        this.payloadWidth = payloadWidth;
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ringMask = this.capacity - 1;
+        keyWords = new long[this.capacity * EpcKey.MAX_WORDS];
+        keyNibbles = new int[this.capacity];
+        keyHashes = new int[this.capacity];
+        stamps = new long[this.capacity];
+        payloads = new double[this.capacity * Math.max(1, payloadWidth)];
+        alive = new boolean[this.capacity];
+        indexPositions = new int[this.capacity];
+        // Keep the index at most half full so probe chains stay short
+        index = new int[this.capacity * 2];
+        indexMask = index.length - 1;
+    }
+
+    /**
+     * @return entry handle for payload / stamp access (valid until the next put), or
+     *         {@link #NOT_FOUND} if the key has no unexpired entry at time now
+     */
+    public int find(EpcKey key, long now) {
+        expire(now);
+        int pos = locate(key);
+        return pos < 0 ? NOT_FOUND : index[pos] - 1;
+    }
+
+    /**
+     * Write (or refresh) the key with timestamp now; the entry expires at now + ttl.
+     *
+     * @return entry handle for {@link #setPayload}
+     */
+    public int put(EpcKey key, long now) {
+        expire(now);
+        int pos = locate(key);
+        if (pos >= 0) {
+            // Refresh: tombstone the old entry so ring order stays expiry order
+            int old = index[pos] - 1;
+            alive[old] = false;
+            liveCount--;
+            removeIndex(pos);
+        }
+        if (count == capacity) {
+            if (alive[head]) {
+                evictedEarly++;
+            }
+            evictHead();
+        }
+
+        int entry = (head + count) & ringMask;
+        count++;
+        key.copyTo(keyWords, entry * EpcKey.MAX_WORDS);
+        keyNibbles[entry] = key.nibbles();
+        keyHashes[entry] = key.hashCode();
+        stamps[entry] = now;
+        alive[entry] = true;
+        liveCount++;
+        insertIndex(entry);
+        return entry;
+    }
+
+    public long stampAt(int entry) {
+        return stamps[entry];
+    }
+
+    public double payloadAt(int entry, int i) {
+        return payloads[entry * payloadWidth + i];
+    }
+
+    public void setPayload(int entry, int i, double value) {
+        payloads[entry * payloadWidth + i] = value;
+    }
+
+    /** Drop expired entries without a lookup (e.g. before taking a snapshot) */
+    public void expire(long now) {
+        while (count > 0 && (!alive[head] || now - stamps[head] >= ttl)) {
+            evictHead();
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(index, 0);
+        Arrays.fill(alive, false);
+        head = 0;
+        count = 0;
+        liveCount = 0;
+    }
+
+    /** Unexpired entries as of the last access */
+    public int size() {
+        return liveCount;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Entries pushed out by the capacity cap before their TTL ran out */
+    public long evictedEarly() {
+        return evictedEarly;
+    }
+
+    // --- Ring ---
+
+    private void evictHead() {
+        if (alive[head]) {
+            alive[head] = false;
+            liveCount--;
+            removeIndex(indexPositions[head]);
+        }
+        head = (head + 1) & ringMask;
+        count--;
+    }
+
+    // --- Index ---
+
+    /** @return index position holding key, or -1 */
+    private int locate(EpcKey key) {
+        int hash = key.hashCode();
+        int pos = mix(hash) & indexMask;
+        while (true) {
+            int slot = index[pos];
+            if (slot == 0) {
+                return -1;
+            }
+            int entry = slot - 1;
+            if (keyHashes[entry] == hash && key.matches(keyWords, entry * EpcKey.MAX_WORDS, keyNibbles[entry])) {
+                return pos;
+            }
+            pos = (pos + 1) & indexMask;
+        }
+    }
+
+    private void insertIndex(int entry) {
+        int pos = mix(keyHashes[entry]) & indexMask;
+        while (index[pos] != 0) {
+            pos = (pos + 1) & indexMask;
+        }
+        index[pos] = entry + 1;
+        indexPositions[entry] = pos;
+    }
+
+    /** Backward-shift deletion keeps linear probe chains intact without tombstones */
+    private void removeIndex(int pos) {
+        int hole = pos;
+        int next = (hole + 1) & indexMask;
+        while (index[next] != 0) {
+            int entry = index[next] - 1;
+            int home = mix(keyHashes[entry]) & indexMask;
+            // Move the entry back if its home is not cyclically within (hole, next]
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                index[hole] = index[next];
+                indexPositions[entry] = hole;
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+        index[hole] = 0;
+    }
+
+    private static int mix(int h) {
+        // Spread low-entropy EPC hashes across the table
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,136 @@
+package com.mason.bricktracking.scan;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer / single-consumer ring of primitive tag-read records
+ * (packed EPC, RSSI, elapsed-realtime nanos).
+ *
+ * The RFID SDK callback thread is the only producer and the window-processing thread is
+ * the only consumer, so neither side ever takes a lock: the producer publishes with an
+ * ordered store of the tail, the consumer releases slots with an ordered store of the head.
+ * When the consumer falls behind, new reads are dropped (never blocking the SDK thread)
+ * and counted, so overflow shows up in the stats instead of as a stalled reader.
+ */
+public final class ReadRingBuffer {
+
+    /** Receives records in {@link #drain}; the EPC words are only valid during the call. */
+    public interface Consumer {
+        void onRead(long[] epcWords, int offset, int nibbles, int rssi, long elapsedNanos);
+    }
+
+    private final int capacity;
+    private final int mask;
+
+    // Record columns, one entry per slot
+    private final long[] epcWords;
+    private final int[] epcNibbles;
+    private final int[] rssi;
+    private final long[] elapsedNanos;
+
+    // head = next slot to consume, tail = next slot to publish
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead = 0; // producer-local view of head
+
+    // Producer-written counters
+    private final AtomicLong offeredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong highWaterMark = new AtomicLong();
+    private boolean overflowing = false;
+
+    public ReadRingBuffer(int requestedCapacity) {
+        capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        mask = capacity - 1;
+        epcWords = new long[capacity * EpcKey.MAX_WORDS];
+        epcNibbles = new int[capacity];
+        rssi = new int[capacity];
+        elapsedNanos = new long[capacity];
+    }
+
+    /**
+     * Producer side. Copies the record into the ring.
+     *
+     * @return false if the ring was full and the read was dropped
+     */
+    public boolean offer(long[] words, int nibbles, int rssiDbm, long nanos) {
+        offeredCount.lazySet(offeredCount.get() + 1);
+
+        long t = tail.get();
+        if (t - cachedHead >= capacity) {
+            cachedHead = head.get();
+            if (t - cachedHead >= capacity) {
+                droppedCount.lazySet(droppedCount.get() + 1);
+                if (!overflowing) {
+                    overflowing = true;
+                    overflowCount.lazySet(overflowCount.get() + 1);
+                }
+                return false;
+            }
+        }
+        overflowing = false;
+
+        int slot = (int) (t & mask);
+        System.arraycopy(words, 0, epcWords, slot * EpcKey.MAX_WORDS, EpcKey.wordCount(nibbles));
+        epcNibbles[slot] = nibbles;
+        rssi[slot] = rssiDbm;
+        elapsedNanos[slot] = nanos;
+        tail.lazySet(t + 1);
+
+        long depth = t + 1 - head.get();
+        if (depth > highWaterMark.get()) {
+            highWaterMark.lazySet(depth);
+        }
+        return true;
+    }
+
+    /**
+     * Consumer side. Hands every published record to the consumer in arrival order.
+     *
+     * @return number of records drained
+     */
+    public int drain(Consumer consumer) {
+        long h = head.get();
+        long t = tail.get();
+        for (long i = h; i < t; i++) {
+            int slot = (int) (i & mask);
+            consumer.onRead(epcWords, slot * EpcKey.MAX_WORDS, epcNibbles[slot], rssi[slot], elapsedNanos[slot]);
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+
+    /** Consumer side. Discard everything published so far (e.g. when scanning stops). */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Records currently waiting for the consumer (approximate from other threads) */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public long offeredCount() {
+        return offeredCount.get();
+    }
+
+    /** Reads discarded because the ring was full */
+    public long droppedCount() {
+        return droppedCount.get();
+    }
+
+    /** Number of separate episodes in which the ring filled up */
+    public long overflowCount() {
+        return overflowCount.get();
+    }
+
+    /** Deepest backlog the consumer has had to catch up on */
+    public long highWaterMark() {
+        return highWaterMark.get();
+    }
+}
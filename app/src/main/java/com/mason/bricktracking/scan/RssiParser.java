@@ -0,0 +1,87 @@
+package com.mason.bricktracking.scan;
+
+/**
+ * Allocation-free parser for the SDK's decimal RSSI strings (e.g. "-75.80").
+ *
+ * Produces the same integer dBm the scan screen used to get from
+ * Math.round(Float.parseFloat(s.trim())), without trimming or boxing.
+ */
+public final class RssiParser {
+
+    /** Sentinel for an RSSI string that could not be parsed */
+    public static final int INVALID = -999;
+
+    // Digits beyond this are ignored - RSSI never carries that much precision
+    private static final int MAX_FRACTION_DIGITS = 6;
+    private static final int MAX_INTEGER_DIGITS = 6;
+
+    private RssiParser() {
+    }
+
+    /**
+     * @return RSSI rounded half-up to whole dBm, 0 for null / blank input (no reading),
+     *         or {@link #INVALID} for malformed input
+     */
+    public static int parseRounded(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int pos = 0;
+        int end = text.length();
+        while (pos < end && text.charAt(pos) <= ' ') {
+            pos++;
+        }
+        while (end > pos && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (pos == end) {
+            return 0;
+        }
+
+        boolean negative = false;
+        char first = text.charAt(pos);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            pos++;
+        }
+
+        long integerPart = 0;
+        int integerDigits = 0;
+        while (pos < end && isDigit(text.charAt(pos))) {
+            if (++integerDigits > MAX_INTEGER_DIGITS) {
+                return INVALID;
+            }
+            integerPart = integerPart * 10 + (text.charAt(pos++) - '0');
+        }
+
+        long fraction = 0;
+        long scale = 1;
+        int fractionDigits = 0;
+        if (pos < end && text.charAt(pos) == '.') {
+            pos++;
+            while (pos < end && isDigit(text.charAt(pos))) {
+                if (fractionDigits < MAX_FRACTION_DIGITS) {
+                    fraction = fraction * 10 + (text.charAt(pos) - '0');
+                    scale *= 10;
+                }
+                fractionDigits++;
+                pos++;
+            }
+        }
+
+        if (pos != end || (integerDigits == 0 && fractionDigits == 0)) {
+            return INVALID;
+        }
+
+        // floor(value + 0.5) in fixed point: value = +/-(integerPart + fraction / scale)
+        long scaled = integerPart * scale + fraction;
+        if (negative) {
+            scaled = -scaled;
+        }
+        return (int) Math.floorDiv(2 * scaled + scale, 2 * scale);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
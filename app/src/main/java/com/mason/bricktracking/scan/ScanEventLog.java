@@ -0,0 +1,267 @@
+package com.mason.bricktracking.scan;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Structured, allocation-free event log for the scan hot path (SDK callback and scan
+ * pipeline threads), replacing per-read android.util.Log calls.
+ *
+ * Each record is a fixed set of primitive columns in a preallocated ring: timestamp,
+ * event type, packed EPC, up to {@link #ARG_COUNT} long arguments (doubles as raw bits)
+ * and one object reference for values that already exist as objects (e.g. a raw SDK
+ * string). Nothing is formatted until an admin dumps the ring, and a record below the
+ * current level returns before touching the ring, so disabled events cost one
+ * comparison. Writers claim slots with a single atomic increment; when the ring wraps
+ * the oldest records are overwritten.
+ *
+ * The dump runs concurrently with writers and skips records that are overwritten while
+ * they are being read; it is a diagnostic view, not an exact transcript.
+ */
+public final class ScanEventLog {
+
+    public enum Level { VERBOSE, DEBUG, INFO, WARN }
+
+    /**
+     * Event catalogue. The argument kinds string maps the format's placeholders to record
+     * columns: 'e' = EPC, 'r' = reference, and for the long columns in order
+     * 'l' = long, 'd' = double bits, 'b' = boolean (non-zero).
+     */
+    public enum Event {
+        // SCAN_CALLBACK
+        CALLBACK_NOT_SCANNING(Level.WARN, "SCAN_CALLBACK", "Tag detected but scanning session not active", ""),
+        CALLBACK_INVALID_EPC(Level.WARN, "SCAN_CALLBACK", "Ignoring non-hex EPC: %s", "r"),
+        CALLBACK_INVALID_RSSI(Level.WARN, "SCAN_CALLBACK", "Failed to parse RSSI: %s", "r"),
+        CALLBACK_NO_GPS(Level.DEBUG, "SCAN_CALLBACK", "No GPS location - accepting reads anyway (GPS optional)", ""),
+        CALLBACK_GPS_RESTORED(Level.DEBUG, "SCAN_CALLBACK", "GPS location available again", ""),
+        CALLBACK_READ(Level.VERBOSE, "SCAN_CALLBACK", "Read: EPC=%s RSSI=%d dBm", "el"),
+        CALLBACK_BUFFER_FULL(Level.WARN, "SCAN_CALLBACK", "Read buffer full - dropping reads (dropped so far: %d)", "l"),
+        // CAPTURE_WINDOW
+        WINDOW_STARTED(Level.DEBUG, "CAPTURE_WINDOW", "Started capture window (%dms, adaptive=%b @ %.1f reads/s)", "lbd"),
+        WINDOW_CLOSED(Level.DEBUG, "CAPTURE_WINDOW", "Window closed (early=%b) after %dms (limit %dms, %d reads)", "blll"),
+        WINDOW_EMPTY(Level.DEBUG, "CAPTURE_WINDOW", "Window empty - no tags in range", ""),
+        WINDOW_CANDIDATE(Level.VERBOSE, "CAPTURE_WINDOW", "Candidate: %s | Count=%d | AvgRSSI=%d | MaxRSSI=%d", "elll"),
+        WINDOW_AMBIGUOUS(Level.WARN, "CAPTURE_WINDOW",
+            "AMBIGUOUS - Winner: %s (count=%d, rssi=%d) vs Runner-up: %s (count=%d, rssi=%d) | Thresholds: %ddB/%dcount", "ellrllll"),
+        WINDOW_WINNER(Level.DEBUG, "CAPTURE_WINDOW", "WINNER - EPC: %s | Count=%d | AvgRSSI=%d | MaxRSSI=%d", "elll"),
+        SLIDING_WINNER(Level.DEBUG, "CAPTURE_WINDOW", "SLIDING WINNER - EPC: %s | Count=%d | AvgRSSI=%d | MaxRSSI=%d | Span=%dms", "ellll"),
+        COOLDOWN(Level.DEBUG, "CAPTURE_WINDOW", "COOLDOWN - EPC: %s", "e"),
+        // BRICK_SCANNED
+        BRICK_GPS_MISSING(Level.WARN, "BRICK_SCANNED", "GPS missing - using sentinel values (0.0, 0.0, 999.0)", ""),
+        BRICK_SCANNED(Level.INFO, "BRICK_SCANNED",
+            "Session: %s | Seq: %d | EPC: %s | RSSI: %d/%d | Reads: %d | Window: %dms | GPS: %b | Power: %d dBm", "rlellllbl"),
+        // DUPLICATE_CHECK
+        DUPLICATE_REJECTED(Level.INFO, "DUPLICATE_CHECK", "DUPLICATE REJECTED - EPC: %s | Time: %ds | Distance: %.1fm | Threshold: %.1fm", "eldd"),
+        NEW_PLACEMENT(Level.DEBUG, "DUPLICATE_CHECK", "NEW PLACEMENT - EPC: %s | GPS: %.6f, %.6f ±%.1fm", "eddd");
+
+        public final Level level;
+        public final String tag;
+        final String format;
+        final String argKinds;
+
+        Event(Level level, String tag, String format, String argKinds) {
+            this.level = level;
+            this.tag = tag;
+            this.format = format;
+            this.argKinds = argKinds;
+        }
+    }
+
+    public static final int ARG_COUNT = 8;
+    private static final int CAPACITY = 2048;
+    private static final int MASK = CAPACITY - 1;
+    private static final Event[] EVENTS = Event.values();
+
+    private static final ScanEventLog INSTANCE = new ScanEventLog();
+
+    private volatile int minLevel = Level.DEBUG.ordinal();
+
+    // Record columns, one entry per slot
+    private final long[] nanos = new long[CAPACITY];
+    private final int[] events = new int[CAPACITY];
+    private final int[] epcNibbles = new int[CAPACITY];
+    private final long[] epcWords = new long[CAPACITY * EpcKey.MAX_WORDS];
+    private final long[] args = new long[CAPACITY * ARG_COUNT];
+    private final Object[] refs = new Object[CAPACITY];
+
+    // Sequence number of the record each slot holds once complete, -1 while being written
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private final AtomicLong nextSeq = new AtomicLong();
+
+    private ScanEventLog() {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    public static ScanEventLog getInstance() {
+        return INSTANCE;
+    }
+
+    public void setLevel(Level level) {
+        minLevel = level.ordinal();
+    }
+
+    public Level getLevel() {
+        return Level.values()[minLevel];
+    }
+
+    /** For call sites that need work (e.g. building EPC keys) only to feed a record */
+    public boolean isEnabled(Event event) {
+        return event.level.ordinal() >= minLevel;
+    }
+
+    public void log(Event event) {
+        if (isEnabled(event)) {
+            write(event, null, 0, 0, null, null, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+    }
+
+    public void log(Event event, long a0) {
+        if (isEnabled(event)) {
+            write(event, null, 0, 0, null, null, a0, 0, 0, 0, 0, 0, 0, 0);
+        }
+    }
+
+    public void log(Event event, long a0, long a1, long a2, long a3) {
+        if (isEnabled(event)) {
+            write(event, null, 0, 0, null, null, a0, a1, a2, a3, 0, 0, 0, 0);
+        }
+    }
+
+    public void logRef(Event event, Object ref) {
+        if (isEnabled(event)) {
+            write(event, null, 0, 0, null, ref, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+    }
+
+    /** EPC still in packed form, e.g. the callback's parse scratch */
+    public void logEpc(Event event, long[] words, int offset, int nibbles, long a0) {
+        if (isEnabled(event)) {
+            write(event, words, offset, nibbles, null, null, a0, 0, 0, 0, 0, 0, 0, 0);
+        }
+    }
+
+    public void logEpc(Event event, EpcKey epc, long a0, long a1, long a2, long a3) {
+        if (isEnabled(event)) {
+            write(event, null, 0, 0, epc, null, a0, a1, a2, a3, 0, 0, 0, 0);
+        }
+    }
+
+    public void logEpc(Event event, EpcKey epc, Object ref, long a0, long a1, long a2, long a3,
+                       long a4, long a5, long a6, long a7) {
+        if (isEnabled(event)) {
+            write(event, null, 0, 0, epc, ref, a0, a1, a2, a3, a4, a5, a6, a7);
+        }
+    }
+
+    private void write(Event event, long[] words, int offset, int nibbles, EpcKey epc, Object ref,
+                       long a0, long a1, long a2, long a3, long a4, long a5, long a6, long a7) {
+        long seq = nextSeq.getAndIncrement();
+        int slot = (int) (seq & MASK);
+        published.set(slot, -1);
+
+        nanos[slot] = System.nanoTime();
+        events[slot] = event.ordinal();
+        int wordBase = slot * EpcKey.MAX_WORDS;
+        if (epc != null) {
+            epc.copyTo(epcWords, wordBase);
+            epcNibbles[slot] = epc.nibbles();
+        } else if (words != null) {
+            System.arraycopy(words, offset, epcWords, wordBase, EpcKey.wordCount(nibbles));
+            epcNibbles[slot] = nibbles;
+        } else {
+            epcNibbles[slot] = 0;
+        }
+        refs[slot] = ref;
+        int argBase = slot * ARG_COUNT;
+        args[argBase] = a0;
+        args[argBase + 1] = a1;
+        args[argBase + 2] = a2;
+        args[argBase + 3] = a3;
+        args[argBase + 4] = a4;
+        args[argBase + 5] = a5;
+        args[argBase + 6] = a6;
+        args[argBase + 7] = a7;
+
+        published.set(slot, seq);
+    }
+
+    /** Records written since the log was created (including overwritten ones) */
+    public long writtenCount() {
+        return nextSeq.get();
+    }
+
+    /**
+     * Decode the most recent records, oldest first, one line each:
+     * "[wall time] LEVEL/TAG: message". Allocates freely - admin use only.
+     *
+     * @param nowWallMs current wall-clock time, to turn record timestamps into times of day
+     */
+    public String dump(int maxRecords, long nowWallMs) {
+        long nowNanos = System.nanoTime();
+        long end = nextSeq.get();
+        long start = Math.max(0, end - Math.min(maxRecords, CAPACITY));
+        java.text.SimpleDateFormat time = new java.text.SimpleDateFormat("HH:mm:ss.SSS", Locale.US);
+        StringBuilder sb = new StringBuilder();
+        long[] words = new long[EpcKey.MAX_WORDS];
+        long[] recordArgs = new long[ARG_COUNT];
+
+        for (long seq = start; seq < end; seq++) {
+            int slot = (int) (seq & MASK);
+            if (published.get(slot) != seq) {
+                continue; // Still being written, or already overwritten
+            }
+            long recordNanos = nanos[slot];
+            Event event = EVENTS[events[slot]];
+            int nibbles = epcNibbles[slot];
+            System.arraycopy(epcWords, slot * EpcKey.MAX_WORDS, words, 0, EpcKey.MAX_WORDS);
+            System.arraycopy(args, slot * ARG_COUNT, recordArgs, 0, ARG_COUNT);
+            Object ref = refs[slot];
+            if (published.get(slot) != seq) {
+                continue; // Overwritten while copying
+            }
+
+            long wallMs = nowWallMs - (nowNanos - recordNanos) / 1_000_000L;
+            sb.append('[').append(time.format(new java.util.Date(wallMs))).append("] ")
+                .append(event.level.name().charAt(0)).append('/').append(event.tag).append(": ")
+                .append(format(event, nibbles > 0 ? EpcKey.of(words, nibbles).toHexString() : "-", ref, recordArgs))
+                .append('\n');
+        }
+        return sb.toString();
+    }
+
+    public void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+            refs[i] = null;
+        }
+    }
+
+    private static String format(Event event, String epc, Object ref, long[] recordArgs) {
+        String kinds = event.argKinds;
+        Object[] values = new Object[kinds.length()];
+        int next = 0;
+        for (int i = 0; i < kinds.length(); i++) {
+            switch (kinds.charAt(i)) {
+                case 'e':
+                    values[i] = epc;
+                    break;
+                case 'r':
+                    values[i] = String.valueOf(ref);
+                    break;
+                case 'd':
+                    values[i] = Double.longBitsToDouble(recordArgs[next++]);
+                    break;
+                case 'b':
+                    values[i] = recordArgs[next++] != 0;
+                    break;
+                default:
+                    values[i] = recordArgs[next++];
+                    break;
+            }
+        }
+        return String.format(Locale.US, event.format, values);
+    }
+}
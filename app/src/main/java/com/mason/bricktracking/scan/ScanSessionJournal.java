@@ -0,0 +1,343 @@
+package com.mason.bricktracking.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-disk journal of the scan session's dedupe state, so an activity
+ * recreation, OOM kill or crash can resume with the same buildSessionId, the next
+ * eventSeq and the recent-placement / cooldown entries instead of starting blank.
+ *
+ * Layout: a 4-byte magic followed by records of
+ * [type u8][payload length u16][payload][CRC32 of type + length + payload].
+ * Records are written with one positional write each and not fsynced, so they survive
+ * process death (the kernel owns the bytes once write returns) at the cost of a few
+ * tens of microseconds per placement; endSession() forces the file to storage. A torn
+ * or corrupt tail is detected by length / CRC on restore and cut off.
+ *
+ * A session start record carries the mason who started it, so a restore can tell whether
+ * the open session is theirs to resume, and its wall time.
+ *
+ * The file is compacted on restore and whenever it outgrows {@link #COMPACT_THRESHOLD_BYTES}
+ * at a session start: only the open session and placements inside the retention window
+ * are rewritten, via a temp file and an atomic rename. The rewritten start record keeps
+ * the session's last activity as its time, so its age survives compaction. Not
+ * thread-safe - confine to the scan pipeline thread.
+ */
+public final class ScanSessionJournal {
+
+    public static final long COMPACT_THRESHOLD_BYTES = 256 * 1024;
+
+    private static final int MAGIC = 0x4D424A31; // "MBJ1"
+    private static final int HEADER_BYTES = 4;
+    private static final byte TYPE_SESSION_START = 1;
+    private static final byte TYPE_PLACEMENT = 2;
+    private static final byte TYPE_SESSION_END = 3;
+    private static final int RECORD_OVERHEAD = 1 + 2 + 4;
+    private static final int MAX_PAYLOAD = 512;
+
+    /** State recovered by {@link #restore}; placements are oldest first */
+    public static final class Snapshot {
+        /** Session that was still open when the journal was last written, or null */
+        public final String openSessionId;
+        /** Mason who started the open session (null for journals written before it was recorded) */
+        public final String openSessionMasonId;
+        /** Wall time of the open session's start or latest placement, whichever is later */
+        public final long openSessionLastActiveMs;
+        /** Highest eventSeq journaled for the open session (0 if none) */
+        public final int lastEventSeq;
+        public final int placementCount;
+        public final EpcKey[] epcs;
+        public final int[] eventSeqs;
+        public final long[] scanTimestamps;
+        public final long[] elapsedRealtimes;
+        public final double[] latitudes;
+        public final double[] longitudes;
+
+        Snapshot(Replay replay) {
+            PlacementList placements = replay.placements;
+            this.openSessionId = replay.openSessionId;
+            this.openSessionMasonId = replay.openSessionMasonId;
+            this.openSessionLastActiveMs = replay.openSessionLastActiveMs;
+            this.lastEventSeq = replay.lastEventSeq;
+            this.placementCount = placements.size;
+            this.epcs = placements.epcs;
+            this.eventSeqs = placements.eventSeqs;
+            this.scanTimestamps = placements.scanTimestamps;
+            this.elapsedRealtimes = placements.elapsedRealtimes;
+            this.latitudes = placements.latitudes;
+            this.longitudes = placements.longitudes;
+        }
+    }
+
+    private final File file;
+    private final long retentionMs;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + MAX_PAYLOAD);
+    private final CRC32 crc = new CRC32();
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private String openSessionId;
+
+    /**
+     * @param retentionMs how long placements stay relevant for duplicate checks
+     *                    (entries older than this are dropped on compaction)
+     */
+    public ScanSessionJournal(File file, long retentionMs) {
+        this.file = file;
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Read the journal, cut off any torn tail, compact it and open it for appending.
+     * Must be called once before any append.
+     */
+    public Snapshot restore(long nowWallMs) throws IOException {
+        Replay replay = replay(nowWallMs);
+        rewrite(replay);
+        openSessionId = replay.openSessionId;
+        return new Snapshot(replay);
+    }
+
+    /** Start (or, after a restore, re-announce) a build session for masonId. */
+    public void startSession(String sessionId, String masonId, long nowWallMs) throws IOException {
+        if (channel.size() > COMPACT_THRESHOLD_BYTES) {
+            rewrite(replay(nowWallMs));
+        }
+        if (sessionId.equals(openSessionId)) {
+            return; // Resumed - its start record is already in the journal
+        }
+        writeSessionStart(sessionId, masonId, nowWallMs, 0);
+        openSessionId = sessionId;
+    }
+
+    /** Journal an accepted placement (after the duplicate check, before it is queued for sync). */
+    public void appendPlacement(int eventSeq, EpcKey epc, long scanTimestamp, long elapsedRealtime,
+                                double latitude, double longitude) throws IOException {
+        begin(TYPE_PLACEMENT);
+        record.putInt(eventSeq);
+        record.put((byte) epc.nibbles());
+        for (int i = 0; i < epc.wordCount(); i++) {
+            record.putLong(epc.word(i));
+        }
+        record.putLong(scanTimestamp);
+        record.putLong(elapsedRealtime);
+        record.putDouble(latitude);
+        record.putDouble(longitude);
+        commit();
+    }
+
+    /** Close the open session (scanning stopped normally) and force the journal to storage. */
+    public void endSession(long nowWallMs) throws IOException {
+        if (openSessionId == null) {
+            return;
+        }
+        begin(TYPE_SESSION_END);
+        record.putLong(nowWallMs);
+        commit();
+        channel.force(false);
+        openSessionId = null;
+    }
+
+    public void close() throws IOException {
+        if (raf != null) {
+            raf.close();
+            raf = null;
+            channel = null;
+        }
+    }
+
+    // --- Writing ---
+
+    // baseEventSeq carries the session's sequence across compactions that drop its early placements.
+    // The mason goes last: start records written before it was added simply end after baseEventSeq.
+    private void writeSessionStart(String sessionId, String masonId, long wallMs, int baseEventSeq) throws IOException {
+        byte[] id = sessionId.getBytes(StandardCharsets.UTF_8);
+        byte[] mason = masonId != null ? masonId.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        begin(TYPE_SESSION_START);
+        record.putShort((short) id.length);
+        record.put(id);
+        record.putLong(wallMs);
+        record.putInt(baseEventSeq);
+        record.putShort((short) mason.length);
+        record.put(mason);
+        commit();
+    }
+
+    private void begin(byte type) {
+        record.clear();
+        record.put(type);
+        record.putShort((short) 0); // Payload length, patched in commit()
+    }
+
+    private void commit() throws IOException {
+        int payloadLength = record.position() - 3;
+        record.putShort(1, (short) payloadLength);
+        crc.reset();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        long position = channel.size();
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+    }
+
+    /** Replace the file with just the live state of the replay, then reopen it for appending. */
+    private void rewrite(Replay replay) throws IOException {
+        close();
+        File temp = new File(file.getPath() + ".tmp");
+        raf = new RandomAccessFile(temp, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).flip();
+        channel.write(header, 0);
+
+        String sessionId = replay.openSessionId;
+        boolean sessionWritten = false;
+        PlacementList placements = replay.placements;
+        for (int i = 0; i < placements.size; i++) {
+            // Keep the open session's start ahead of its first surviving placement
+            if (sessionId != null && !sessionWritten && sessionId.equals(placements.sessionIds[i])) {
+                writeSessionStart(sessionId, replay.openSessionMasonId, replay.openSessionLastActiveMs, replay.lastEventSeq);
+                sessionWritten = true;
+            }
+            appendPlacement(placements.eventSeqs[i], placements.epcs[i], placements.scanTimestamps[i],
+                placements.elapsedRealtimes[i], placements.latitudes[i], placements.longitudes[i]);
+        }
+        if (sessionId != null && !sessionWritten) {
+            writeSessionStart(sessionId, replay.openSessionMasonId, replay.openSessionLastActiveMs, replay.lastEventSeq);
+        }
+        channel.force(false);
+        close();
+
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        openSessionId = sessionId;
+    }
+
+    // --- Reading ---
+
+    private static final class PlacementList {
+        int size = 0;
+        String[] sessionIds = new String[16];
+        EpcKey[] epcs = new EpcKey[16];
+        int[] eventSeqs = new int[16];
+        long[] scanTimestamps = new long[16];
+        long[] elapsedRealtimes = new long[16];
+        double[] latitudes = new double[16];
+        double[] longitudes = new double[16];
+
+        void add(String sessionId, EpcKey epc, int eventSeq, long scanTimestamp, long elapsed, double lat, double lon) {
+            if (size == epcs.length) {
+                int n = size * 2;
+                sessionIds = Arrays.copyOf(sessionIds, n);
+                epcs = Arrays.copyOf(epcs, n);
+                eventSeqs = Arrays.copyOf(eventSeqs, n);
+                scanTimestamps = Arrays.copyOf(scanTimestamps, n);
+                elapsedRealtimes = Arrays.copyOf(elapsedRealtimes, n);
+                latitudes = Arrays.copyOf(latitudes, n);
+                longitudes = Arrays.copyOf(longitudes, n);
+            }
+            sessionIds[size] = sessionId;
+            epcs[size] = epc;
+            eventSeqs[size] = eventSeq;
+            scanTimestamps[size] = scanTimestamp;
+            elapsedRealtimes[size] = elapsed;
+            latitudes[size] = lat;
+            longitudes[size] = lon;
+            size++;
+        }
+    }
+
+    private static final class Replay {
+        String openSessionId;
+        String openSessionMasonId;
+        long openSessionLastActiveMs;
+        int lastEventSeq;
+        final PlacementList placements = new PlacementList();
+    }
+
+    private Replay replay(long nowWallMs) throws IOException {
+        Replay replay = new Replay();
+        if (!file.exists() || file.length() < HEADER_BYTES) {
+            return replay;
+        }
+        byte[] bytes;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (buf.getInt() != MAGIC) {
+            return replay; // Unknown format - start over
+        }
+
+        String currentSession = null;
+        long cutoff = nowWallMs - retentionMs;
+        long[] words = new long[EpcKey.MAX_WORDS];
+        while (buf.remaining() >= RECORD_OVERHEAD) {
+            int start = buf.position();
+            byte type = buf.get();
+            int length = buf.getShort() & 0xFFFF;
+            if (length > MAX_PAYLOAD || buf.remaining() < length + 4) {
+                break; // Torn tail
+            }
+            crc.reset();
+            crc.update(bytes, start, 3 + length);
+            int expected = buf.getInt(start + 3 + length);
+            if (expected != (int) crc.getValue()) {
+                break; // Corrupt tail
+            }
+
+            if (type == TYPE_SESSION_START) {
+                byte[] id = new byte[buf.getShort() & 0xFFFF];
+                buf.get(id);
+                currentSession = new String(id, StandardCharsets.UTF_8);
+                replay.openSessionId = currentSession;
+                replay.openSessionLastActiveMs = buf.getLong();
+                replay.lastEventSeq = buf.getInt();
+                replay.openSessionMasonId = null;
+                if (buf.position() < start + 3 + length) {
+                    byte[] mason = new byte[buf.getShort() & 0xFFFF];
+                    buf.get(mason);
+                    replay.openSessionMasonId = mason.length > 0 ? new String(mason, StandardCharsets.UTF_8) : null;
+                }
+            } else if (type == TYPE_PLACEMENT) {
+                int eventSeq = buf.getInt();
+                int nibbles = buf.get() & 0xFF;
+                int wordCount = EpcKey.wordCount(nibbles);
+                for (int i = 0; i < wordCount; i++) {
+                    words[i] = buf.getLong();
+                }
+                long scanTimestamp = buf.getLong();
+                long elapsed = buf.getLong();
+                double lat = buf.getDouble();
+                double lon = buf.getDouble();
+                if (currentSession != null && currentSession.equals(replay.openSessionId)) {
+                    replay.lastEventSeq = Math.max(replay.lastEventSeq, eventSeq);
+                    replay.openSessionLastActiveMs = Math.max(replay.openSessionLastActiveMs, scanTimestamp);
+                }
+                if (scanTimestamp >= cutoff) {
+                    replay.placements.add(currentSession, EpcKey.of(words, nibbles), eventSeq, scanTimestamp, elapsed, lat, lon);
+                }
+            } else if (type == TYPE_SESSION_END) {
+                replay.openSessionId = null;
+                replay.openSessionMasonId = null;
+                replay.openSessionLastActiveMs = 0;
+                replay.lastEventSeq = 0;
+            }
+            buf.position(start + 3 + length + 4);
+        }
+        return replay;
+    }
+}
@@ -0,0 +1,445 @@
+package com.mason.bricktracking.scan;
+
+import java.util.Arrays;
+
+/**
+ * Continuous alternative to {@link CaptureWindow}: keeps only the reads of the last
+ * windowNanos and re-evaluates after every read, emitting a decision as soon as one EPC
+ * dominates instead of waiting for a fixed window to close.
+ *
+ * Domination uses the fixed window's rules - at least minReads reads, and not ambiguous
+ * against the runner-up under {@link CaptureWindow#isAmbiguous}. Once an EPC has been
+ * emitted it is suppressed until it has gone unseen for holdoffNanos (the tag has left
+ * the antenna field), so a brick held in front of the reader produces one decision, not
+ * one per window. A suppressed EPC keeps competing in the ranking - while it still leads,
+ * weaker neighbouring tags cannot be emitted in its place.
+ *
+ * Reads are kept in a preallocated event ring and per-EPC statistics in primitive slots,
+ * so steady-state operation does not allocate. The slot table is cleared when the window
+ * goes idle; under continuous reading it never does, so when the table fills, slots with no
+ * read in the window and no live holdoff are evicted before it grows. It stays sized to
+ * the tags recently in the field, not every tag of the session. Not thread-safe - confine
+ * to the scan pipeline thread.
+ */
+public final class SlidingCaptureWindow {
+
+    private static final int DEFAULT_EVENT_CAPACITY = 1024;
+    private static final int DEFAULT_SLOT_CAPACITY = 32;
+    private static final int NO_SLOT = -1;
+
+    // Tunables (see configure)
+    private long windowNanos = 350_000_000L;
+    private long holdoffNanos = 500_000_000L;
+    private int minReads = 3;
+    private int rssiThresholdDb = 5;
+    private int countThreshold = 1;
+
+    // Event ring - one entry per accepted read, oldest at eventHead
+    private final int[] eventSlots;
+    private final int[] eventRssi;
+    private final long[] eventNanos;
+    private final int eventMask;
+    private int eventHead = 0;
+    private int eventCount = 0;
+
+    // Slot columns - one entry per distinct EPC seen since the window was last idle or compacted
+    private long[] keyWords;
+    private int[] keyNibbles;
+    private int[] keyHashes;
+    private int[] counts;
+    private long[] rssiSums;
+    private long[] lastSeenNanos;
+    private boolean[] suppressed;
+    private int[] livePositions; // Position in liveSlots, or NO_SLOT
+    private int[] slotRemap;     // Scratch for compactSlots
+    private int size = 0;
+
+    // Slots with at least one read inside the window
+    private int[] liveSlots;
+    private int liveCount = 0;
+
+    // Open-addressed EPC -> slot index (stores slot + 1, 0 = empty)
+    private int[] index;
+    private int mask;
+
+    // Most recent read of any suppressed EPC - once the holdoff has passed, nothing is pending
+    private boolean anySuppressed = false;
+    private long latestSuppressedSeenNanos = 0;
+
+    // Last decision, valid until the next decision or reset
+    private EpcKey winnerEpc;
+    private int winnerCount;
+    private int winnerAvgRssi;
+    private int winnerPeakRssi;
+    private long winnerSpanNanos;
+    private boolean hasRunnerUp;
+    private int runnerUpCount;
+    private int runnerUpAvgRssi;
+
+    public SlidingCaptureWindow() {
+        this(DEFAULT_EVENT_CAPACITY);
+    }
+
+    /** @param eventCapacity most reads held at once; older reads are expired early when exceeded */
+    public SlidingCaptureWindow(int eventCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, eventCapacity - 1)) << 1;
+        eventSlots = new int[capacity];
+        eventRssi = new int[capacity];
+        eventNanos = new long[capacity];
+        eventMask = capacity - 1;
+        allocate(DEFAULT_SLOT_CAPACITY);
+    }
+
+    /**
+     * @param windowMs      span of reads considered for a decision
+     * @param holdoffMs     how long an emitted EPC must go unseen before it can be emitted again
+     * @param minReads      reads the leader needs inside the span before it can dominate
+     */
+    public void configure(long windowMs, long holdoffMs, int minReads, int rssiThresholdDb, int countThreshold) {
+        this.windowNanos = windowMs * 1_000_000L;
+        this.holdoffNanos = holdoffMs * 1_000_000L;
+        this.minReads = Math.max(1, minReads);
+        this.rssiThresholdDb = rssiThresholdDb;
+        this.countThreshold = countThreshold;
+    }
+
+    /**
+     * Add one read and re-evaluate.
+     *
+     * @param elapsedNanos monotonic read time (e.g. SystemClock.elapsedRealtimeNanos), non-decreasing
+     * @return true when this read made an EPC dominate; its stats are in the winner*() accessors
+     */
+    public boolean addRead(long[] epcWords, int offset, int nibbles, int rssi, long elapsedNanos) {
+        expire(elapsedNanos);
+        if (eventCount == 0 && size > 0
+                && (!anySuppressed || elapsedNanos - latestSuppressedSeenNanos >= holdoffNanos)) {
+            // Idle and every emitted EPC has left the field - forget all of them
+            clearSlots();
+        }
+
+        int slot = findOrInsert(epcWords, offset, nibbles, elapsedNanos);
+        long previousSeen = lastSeenNanos[slot];
+        lastSeenNanos[slot] = elapsedNanos;
+        if (suppressed[slot]) {
+            if (elapsedNanos - previousSeen < holdoffNanos) {
+                latestSuppressedSeenNanos = Math.max(latestSuppressedSeenNanos, elapsedNanos);
+            } else {
+                suppressed[slot] = false; // Back after a gap - eligible again
+            }
+        }
+
+        if (eventCount == eventSlots.length) {
+            removeOldestEvent();
+        }
+        int e = (eventHead + eventCount) & eventMask;
+        eventSlots[e] = slot;
+        eventRssi[e] = rssi;
+        eventNanos[e] = elapsedNanos;
+        eventCount++;
+
+        if (counts[slot]++ == 0) {
+            addLive(slot);
+        }
+        rssiSums[slot] += rssi;
+
+        return evaluate(elapsedNanos);
+    }
+
+    /** Drop all reads and suppression state (e.g. when a scanning session stops) */
+    public void reset() {
+        eventHead = 0;
+        eventCount = 0;
+        clearSlots();
+        winnerEpc = null;
+    }
+
+    /** Reads currently inside the window */
+    public int totalReads() {
+        return eventCount;
+    }
+
+    /** Distinct EPCs currently tracked (in the window, or holding off) plus not yet evicted ones */
+    int trackedEpcs() {
+        return size;
+    }
+
+    // --- Last decision ---
+
+    public EpcKey winnerEpc() {
+        return winnerEpc;
+    }
+
+    public int winnerCount() {
+        return winnerCount;
+    }
+
+    public int winnerAvgRssi() {
+        return winnerAvgRssi;
+    }
+
+    public int winnerPeakRssi() {
+        return winnerPeakRssi;
+    }
+
+    /** Time from the winner's first counted read to the read that decided it */
+    public long winnerSpanMs() {
+        return winnerSpanNanos / 1_000_000L;
+    }
+
+    public boolean hasRunnerUp() {
+        return hasRunnerUp;
+    }
+
+    public int runnerUpCount() {
+        return runnerUpCount;
+    }
+
+    public int runnerUpAvgRssi() {
+        return runnerUpAvgRssi;
+    }
+
+    // --- Decision ---
+
+    private boolean evaluate(long nowNanos) {
+        int leader = NO_SLOT;
+        int runner = NO_SLOT;
+        for (int i = 0; i < liveCount; i++) {
+            int slot = liveSlots[i];
+            if (leader == NO_SLOT || isBetter(slot, leader)) {
+                runner = leader;
+                leader = slot;
+            } else if (runner == NO_SLOT || isBetter(slot, runner)) {
+                runner = slot;
+            }
+        }
+
+        if (leader == NO_SLOT || suppressed[leader] || counts[leader] < minReads) {
+            return false;
+        }
+        if (runner != NO_SLOT && CaptureWindow.isAmbiguous(counts[leader], avgRssi(leader),
+                counts[runner], avgRssi(runner), rssiThresholdDb, countThreshold)) {
+            return false;
+        }
+
+        emit(leader, runner, nowNanos);
+        return true;
+    }
+
+    private void emit(int slot, int runner, long nowNanos) {
+        // Peak and first-read time are only needed here, so take them from the ring
+        int peak = Integer.MIN_VALUE;
+        long first = nowNanos;
+        for (int i = 0; i < eventCount; i++) {
+            int e = (eventHead + i) & eventMask;
+            if (eventSlots[e] == slot) {
+                peak = Math.max(peak, eventRssi[e]);
+                first = Math.min(first, eventNanos[e]);
+            }
+        }
+
+        winnerEpc = EpcKey.of(keyWords, slot * EpcKey.MAX_WORDS, keyNibbles[slot]);
+        winnerCount = counts[slot];
+        winnerAvgRssi = avgRssi(slot);
+        winnerPeakRssi = peak;
+        winnerSpanNanos = nowNanos - first;
+        hasRunnerUp = runner != NO_SLOT;
+        runnerUpCount = hasRunnerUp ? counts[runner] : 0;
+        runnerUpAvgRssi = hasRunnerUp ? avgRssi(runner) : 0;
+
+        // Keeps its reads (and its lead) but can't be emitted again until the holdoff
+        suppressed[slot] = true;
+        anySuppressed = true;
+        latestSuppressedSeenNanos = Math.max(latestSuppressedSeenNanos, nowNanos);
+    }
+
+    private boolean isBetter(int slot, int otherSlot) {
+        return CaptureWindow.isBetter(counts[slot], avgRssi(slot), counts[otherSlot], avgRssi(otherSlot));
+    }
+
+    private int avgRssi(int slot) {
+        return (int) (rssiSums[slot] / counts[slot]);
+    }
+
+    // --- Event ring ---
+
+    private void expire(long nowNanos) {
+        long cutoff = nowNanos - windowNanos;
+        while (eventCount > 0 && eventNanos[eventHead] <= cutoff) {
+            removeOldestEvent();
+        }
+    }
+
+    private void removeOldestEvent() {
+        int e = eventHead;
+        int slot = eventSlots[e];
+        rssiSums[slot] -= eventRssi[e];
+        if (--counts[slot] == 0) {
+            removeLive(slot);
+        }
+        eventHead = (eventHead + 1) & eventMask;
+        eventCount--;
+    }
+
+    // --- Live set ---
+
+    private void addLive(int slot) {
+        livePositions[slot] = liveCount;
+        liveSlots[liveCount++] = slot;
+    }
+
+    private void removeLive(int slot) {
+        int pos = livePositions[slot];
+        if (pos == NO_SLOT) {
+            return;
+        }
+        int last = liveSlots[--liveCount];
+        liveSlots[pos] = last;
+        livePositions[last] = pos;
+        livePositions[slot] = NO_SLOT;
+    }
+
+    // --- Slot table ---
+
+    private void clearSlots() {
+        Arrays.fill(index, 0);
+        size = 0;
+        liveCount = 0;
+        anySuppressed = false;
+    }
+
+    private int findOrInsert(long[] words, int offset, int nibbles, long nowNanos) {
+        int hash = EpcKey.hash(words, offset, nibbles);
+        int pos = mix(hash) & mask;
+        while (true) {
+            int entry = index[pos];
+            if (entry == 0) {
+                break;
+            }
+            int slot = entry - 1;
+            if (keyHashes[slot] == hash && EpcKey.equals(keyWords, slot * EpcKey.MAX_WORDS,
+                    keyNibbles[slot], words, offset, nibbles)) {
+                return slot;
+            }
+            pos = (pos + 1) & mask;
+        }
+
+        if (size == counts.length) {
+            // Grow only if eviction frees less than half, so compaction stays amortised O(1) per insert
+            compactSlots(nowNanos);
+            if (size > counts.length / 2) {
+                grow();
+            }
+            return findOrInsert(words, offset, nibbles, nowNanos);
+        }
+
+        int slot = size++;
+        System.arraycopy(words, offset, keyWords, slot * EpcKey.MAX_WORDS, EpcKey.wordCount(nibbles));
+        keyNibbles[slot] = nibbles;
+        keyHashes[slot] = hash;
+        counts[slot] = 0;
+        rssiSums[slot] = 0;
+        lastSeenNanos[slot] = 0;
+        suppressed[slot] = false;
+        livePositions[slot] = NO_SLOT;
+        index[pos] = slot + 1;
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        keyWords = new long[capacity * EpcKey.MAX_WORDS];
+        keyNibbles = new int[capacity];
+        keyHashes = new int[capacity];
+        counts = new int[capacity];
+        rssiSums = new long[capacity];
+        lastSeenNanos = new long[capacity];
+        suppressed = new boolean[capacity];
+        livePositions = new int[capacity];
+        slotRemap = new int[capacity];
+        liveSlots = new int[capacity];
+        // Keep the index at most half full so probe chains stay short
+        index = new int[capacity * 2];
+        mask = index.length - 1;
+    }
+
+    /**
+     * Evict slots with no read in the window whose holdoff (if any) has run out - a new read
+     * of such an EPC would start from a fresh slot anyway - and renumber the rest.
+     */
+    private void compactSlots(long nowNanos) {
+        int kept = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (counts[slot] == 0 && (!suppressed[slot] || nowNanos - lastSeenNanos[slot] >= holdoffNanos)) {
+                slotRemap[slot] = NO_SLOT;
+                continue;
+            }
+            if (kept != slot) {
+                System.arraycopy(keyWords, slot * EpcKey.MAX_WORDS, keyWords, kept * EpcKey.MAX_WORDS, EpcKey.MAX_WORDS);
+                keyNibbles[kept] = keyNibbles[slot];
+                keyHashes[kept] = keyHashes[slot];
+                counts[kept] = counts[slot];
+                rssiSums[kept] = rssiSums[slot];
+                lastSeenNanos[kept] = lastSeenNanos[slot];
+                suppressed[kept] = suppressed[slot];
+                livePositions[kept] = livePositions[slot];
+            }
+            slotRemap[slot] = kept++;
+        }
+        if (kept == size) {
+            return;
+        }
+        size = kept;
+
+        // Only kept slots have reads, so every reference has a new number
+        for (int i = 0; i < eventCount; i++) {
+            int e = (eventHead + i) & eventMask;
+            eventSlots[e] = slotRemap[eventSlots[e]];
+        }
+        for (int i = 0; i < liveCount; i++) {
+            liveSlots[i] = slotRemap[liveSlots[i]];
+        }
+        Arrays.fill(index, 0);
+        reindex();
+    }
+
+    private void grow() {
+        long[] oldWords = keyWords;
+        int[] oldNibbles = keyNibbles;
+        int[] oldHashes = keyHashes;
+        int[] oldCounts = counts;
+        long[] oldSums = rssiSums;
+        long[] oldSeen = lastSeenNanos;
+        boolean[] oldSuppressed = suppressed;
+        int[] oldPositions = livePositions;
+        int[] oldLive = liveSlots;
+        int oldSize = size;
+
+        allocate(counts.length * 2);
+        System.arraycopy(oldWords, 0, keyWords, 0, oldSize * EpcKey.MAX_WORDS);
+        System.arraycopy(oldNibbles, 0, keyNibbles, 0, oldSize);
+        System.arraycopy(oldHashes, 0, keyHashes, 0, oldSize);
+        System.arraycopy(oldCounts, 0, counts, 0, oldSize);
+        System.arraycopy(oldSums, 0, rssiSums, 0, oldSize);
+        System.arraycopy(oldSeen, 0, lastSeenNanos, 0, oldSize);
+        System.arraycopy(oldSuppressed, 0, suppressed, 0, oldSize);
+        System.arraycopy(oldPositions, 0, livePositions, 0, oldSize);
+        System.arraycopy(oldLive, 0, liveSlots, 0, liveCount);
+        reindex();
+    }
+
+    // index must be empty; slots 0..size-1 are inserted
+    private void reindex() {
+        for (int slot = 0; slot < size; slot++) {
+            int pos = mix(keyHashes[slot]) & mask;
+            while (index[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            index[pos] = slot + 1;
+        }
+    }
+
+    private static int mix(int h) {
+        // Spread low-entropy EPC hashes across the table
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
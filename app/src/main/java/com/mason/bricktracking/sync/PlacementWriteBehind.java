@@ -0,0 +1,230 @@
+package com.mason.bricktracking.sync;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.mason.bricktracking.data.local.AppDatabase;
+import com.mason.bricktracking.data.local.BrickPlacementDao;
+import com.mason.bricktracking.data.model.BrickPlacement;
+import com.mason.bricktracking.data.model.SyncState;
+import com.mason.bricktracking.metrics.ScanLatencyMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit stage in front of the placements table.
+ *
+ * Accepted placements are queued and a dedicated thread commits them with one multi-row
+ * insert (one transaction, one journal sync) as soon as either {@link #MAX_BATCH} rows are
+ * waiting or {@link #COMMIT_WINDOW_MS} has passed since the first of them arrived. Each
+ * placement's callback fires only after its batch has committed, so a confirmation shown
+ * from it never refers to a row that a crash could still lose.
+ *
+ * The commit thread also loads {@link SyncWatermarks} before its first insert, and moves
+ * them once each insert transaction has committed.
+ *
+ * A placement handed over after {@link #shutdown} has no commit thread left to take it, so it
+ * is inserted on the caller's thread instead - a decision made while the activity tears down
+ * is already in the scan journal and must not be lost.
+ */
+final class PlacementWriteBehind {
+    private static final String TAG = "PlacementWriteBehind";
+
+    static final long COMMIT_WINDOW_MS = 10;
+    static final int MAX_BATCH = 32;
+
+    interface BatchListener {
+        /** Commit thread, once, before the first batch */
+        void onWatermarksLoaded();
+
+        /** Commit thread; runs after the batch's placement callbacks */
+        void onBatchCommitted(int rows);
+    }
+
+    private static final class Pending {
+        final BrickPlacement placement;
+        final SyncManager.PlacementCallback callback;
+        final long queuedNanos;
+        final Runnable barrier; // Set for afterPendingCommits() entries only
+
+        Pending(BrickPlacement placement, SyncManager.PlacementCallback callback, long queuedNanos, Runnable barrier) {
+            this.placement = placement;
+            this.callback = callback;
+            this.queuedNanos = queuedNanos;
+            this.barrier = barrier;
+        }
+    }
+
+    // Queued after the last placement by shutdown(); everything ahead of it is still committed
+    private static final Pending SHUTDOWN = new Pending(null, null, 0, null);
+
+    private final Context context;
+    private final SyncWatermarks watermarks;
+    private final BatchListener batchListener;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ScanLatencyMetrics latencyMetrics = ScanLatencyMetrics.getInstance();
+    private final Thread commitThread;
+    private volatile Runnable onTerminated;
+    private boolean closed; // Guarded by this; set once SHUTDOWN is queued
+
+    PlacementWriteBehind(Context context, SyncWatermarks watermarks, BatchListener batchListener) {
+        this.context = context;
+        this.watermarks = watermarks;
+        this.batchListener = batchListener;
+        this.commitThread = new Thread(this::run, "PlacementCommit");
+        commitThread.start();
+    }
+
+    void enqueue(BrickPlacement placement, SyncManager.PlacementCallback callback) {
+        Pending pending = new Pending(placement, callback, SystemClock.elapsedRealtimeNanos(), null);
+        synchronized (this) {
+            if (!closed) {
+                queue.add(pending);
+                return;
+            }
+        }
+        Log.w(TAG, "Placement after shutdown - inserting on " + Thread.currentThread().getName());
+        AppDatabase db = AppDatabase.getInstance(context);
+        List<Pending> batch = new ArrayList<>(1);
+        batch.add(pending);
+        commit(db, db.brickPlacementDao(), batch, new ArrayList<>(1), false);
+    }
+
+    /**
+     * Run action on the commit thread once every placement queued before this call has committed.
+     * After shutdown it is not run: nothing is synced any more.
+     */
+    synchronized void afterPendingCommits(Runnable action) {
+        if (closed) {
+            Log.w(TAG, "Commit barrier after shutdown - dropped");
+            return;
+        }
+        queue.add(new Pending(null, null, 0, action));
+    }
+
+    /** Commit whatever is queued, then stop the thread and run onTerminated on it */
+    synchronized void shutdown(Runnable onTerminated) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        this.onTerminated = onTerminated;
+        queue.add(SHUTDOWN);
+    }
+
+    private void run() {
+        // Opened here rather than by the caller so the database is never first touched on the UI thread
+        AppDatabase db = AppDatabase.getInstance(context);
+        BrickPlacementDao dao = db.brickPlacementDao();
+        recoverWatermarks(db, dao);
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        List<BrickPlacement> rows = new ArrayList<>(MAX_BATCH);
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                Pending first = queue.take();
+                if (first == SHUTDOWN) {
+                    break;
+                }
+                if (first.barrier != null) {
+                    first.barrier.run();
+                    continue;
+                }
+                batch.add(first);
+                Runnable barrier = null;
+
+                // Give the rest of a burst a few ms to join this transaction
+                long deadline = SystemClock.elapsedRealtimeNanos() + TimeUnit.MILLISECONDS.toNanos(COMMIT_WINDOW_MS);
+                while (batch.size() < MAX_BATCH) {
+                    long remaining = deadline - SystemClock.elapsedRealtimeNanos();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        stopping = true;
+                        break;
+                    }
+                    if (next.barrier != null) {
+                        barrier = next.barrier;
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                commit(db, dao, batch, rows, true);
+                batch.clear();
+                rows.clear();
+                if (barrier != null) {
+                    barrier.run();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Runnable terminated = onTerminated;
+        if (terminated != null) {
+            terminated.run();
+        }
+    }
+
+    // The only aggregate queries on the placements table outside of a sync ack
+    private void recoverWatermarks(AppDatabase db, BrickPlacementDao dao) {
+        try {
+            db.runInTransaction(() -> {
+                SyncState state = db.syncStateDao().get();
+                watermarks.load(dao.getUnsyncedCount(), dao.getOldestUnsyncedTimestamp(),
+                    state != null ? state.getLastSyncedId() : 0);
+            });
+            batchListener.onWatermarksLoaded();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to recover sync watermarks", e);
+        }
+    }
+
+    /** @param notify false for an insert after shutdown, when the sync side is already stopped */
+    private void commit(AppDatabase db, BrickPlacementDao dao, List<Pending> batch, List<BrickPlacement> rows,
+                        boolean notify) {
+        long oldestTimestamp = Long.MAX_VALUE;
+        for (int i = 0; i < batch.size(); i++) {
+            BrickPlacement placement = batch.get(i).placement;
+            rows.add(placement);
+            oldestTimestamp = Math.min(oldestTimestamp, placement.getTimestamp());
+        }
+        final long batchOldest = oldestTimestamp;
+        try {
+            synchronized (watermarks.writeLock) {
+                dao.insertAll(rows); // One transaction
+                watermarks.onInserted(rows.size(), batchOldest);
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to commit " + rows.size() + " placements", e);
+            for (int i = 0; i < batch.size(); i++) {
+                Pending pending = batch.get(i);
+                if (pending.callback != null) {
+                    pending.callback.onPlacementFailed(pending.placement, e);
+                }
+            }
+            return;
+        }
+
+        long committedNanos = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            latencyMetrics.record(ScanLatencyMetrics.Stage.ROOM_INSERT, pending.queuedNanos, committedNanos);
+            if (pending.callback != null) {
+                pending.callback.onPlacementStored(pending.placement);
+            }
+        }
+        if (batch.size() > 1) {
+            Log.d(TAG, "Group-committed " + batch.size() + " placements");
+        }
+        if (notify) {
+            batchListener.onBatchCommitted(batch.size());
+        }
+    }
+}
@@ -3,61 +3,207 @@ package com.mason.bricktracking.sync;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.mason.bricktracking.MasonApp;
 import com.mason.bricktracking.data.local.AppDatabase;
 import com.mason.bricktracking.data.local.BrickPlacementDao;
 import com.mason.bricktracking.data.model.BrickPlacement;
+import com.mason.bricktracking.data.model.DeadLetterPlacement;
+import com.mason.bricktracking.data.model.PlacementKey;
+import com.mason.bricktracking.data.model.SessionAck;
+import com.mason.bricktracking.data.model.SessionRange;
+import com.mason.bricktracking.data.model.SyncState;
 import com.mason.bricktracking.data.remote.ApiClient;
 import com.mason.bricktracking.data.remote.ApiService;
-import com.mason.bricktracking.data.remote.SyncRequest;
+import com.mason.bricktracking.data.remote.PlacementJsonBody;
+import com.mason.bricktracking.data.remote.PlacementWireEncoder;
+import com.mason.bricktracking.data.remote.SyncItemResult;
 import com.mason.bricktracking.data.remote.SyncResponse;
+import com.mason.bricktracking.metrics.ScanLatencyMetrics;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
 public class SyncManager {
     private static final String TAG = "SyncManager";
-    private static final int SYNC_THRESHOLD = 1; // Sync immediately after each scan
+    // Coalescing: a round starts once this many new placements are waiting, FLUSH_DELAY after the
+    // oldest of them committed, or when the scan session stops - whichever comes first
+    private static final int SYNC_FLUSH_ROWS = 50;
+    private static final long SYNC_FLUSH_DELAY_MS = 1000;
+    // Placements per POST - keeps each request well inside the 30s OkHttp timeout on a weak link
+    private static final int DEFAULT_SYNC_BATCH_SIZE = 200;
+    private static final int MAX_SYNC_BATCH_SIZE = 1000;
+    // Batch requests on the wire at once; each costs one page of rows in memory
+    private static final int DEFAULT_MAX_IN_FLIGHT = 3;
     
     // Retry configuration
     private static final int MAX_RETRY_ATTEMPTS = 5;
     private static final long INITIAL_RETRY_DELAY_MS = 2000; // 2 seconds
     private static final long MAX_RETRY_DELAY_MS = 60000; // 1 minute max
     
+    // Session ack watermarks outlive their shift by this much, in case its rows are still queued
+    private static final long SESSION_ACK_RETENTION_MS = TimeUnit.DAYS.toMillis(30);
+    
+    private static final MediaType WIRE_MEDIA_TYPE = MediaType.get(PlacementWireEncoder.CONTENT_TYPE);
+    private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+    
     private Context context;
     private BrickPlacementDao dao;
     private ApiService apiService;
-    private ExecutorService executorService;
+    private ScheduledExecutorService executorService;
     private Handler mainHandler;
     private SyncListener syncListener;
-    private int unsyncedCount = 0;
-    private boolean isSyncing = false;
+    // Unsynced count / oldest unsynced / last synced id, maintained without aggregate queries
+    private final SyncWatermarks watermarks = new SyncWatermarks();
+    private volatile boolean isSyncing = false;
+    // Executor thread: the count is 0 until the write-behind has loaded it, so a network restore
+    // or flush before then is held and replayed by onWatermarksLoaded instead of dropped
+    private boolean watermarksLoaded = false;
+    private boolean syncDeferredUntilLoaded = false;
     
     // Retry state
     private int retryAttempts = 0;
     private boolean retryScheduled = false;
     private Runnable retryRunnable;
     
+    // Latency stages (executor thread): oldest insert not yet picked up by a sync request
+    private final ScanLatencyMetrics latencyMetrics = ScanLatencyMetrics.getInstance();
+    private long oldestPendingInsertNanos = 0;
+    
+    // Coalescing state (executor thread): rows committed since the last batch was sent
+    private int rowsSinceLastSend = 0;
+    private ScheduledFuture<?> flushDeadline;
+    
+    private final PlacementWriteBehind writeBehind;
+    
+    // Sync payload format: JSON until the server advertises the binary one, JSON again if it then rejects it
+    private final PlacementWireEncoder wireEncoder = new PlacementWireEncoder(); // Executor thread
+    private volatile boolean binaryWireAccepted = false;
+    private volatile boolean binaryWireRejected = false;
+    
+    // Sync round state (executor thread only)
+    private static final class Partition {
+        final String masonId;
+        final ArrayDeque<InFlightBatch> sentBatches = new ArrayDeque<>(); // Send order, acked prefix trimmed
+        int inFlight = 0;
+        long cursorTimestamp = Long.MIN_VALUE;
+        int cursorId = 0;
+        boolean pagesExhausted = false;
+        long lastReportedSeq = -1;
+        
+        Partition(String masonId) {
+            this.masonId = masonId;
+        }
+    }
+    
+    private static final class InFlightBatch {
+        final Partition partition;
+        final long seq;
+        final List<Integer> ids; // Sorted
+        final List<PlacementKey> keys; // Queue order
+        final int maxId;
+        final List<SessionRange> sessionRanges;
+        // Queue range of the page: after the cursor it was picked from, up to its last key
+        final long afterTimestamp;
+        final int afterId;
+        final long lastTimestamp;
+        final int lastId;
+        boolean acked;
+        
+        InFlightBatch(Partition partition, long seq, List<PlacementKey> keys, List<SessionRange> sessionRanges) {
+            this.partition = partition;
+            this.seq = seq;
+            this.keys = keys;
+            this.sessionRanges = sessionRanges;
+            this.afterTimestamp = partition.cursorTimestamp;
+            this.afterId = partition.cursorId;
+            PlacementKey last = keys.get(keys.size() - 1);
+            this.lastTimestamp = last.getTimestamp();
+            this.lastId = last.getId();
+            this.ids = new ArrayList<>(keys.size());
+            for (PlacementKey key : keys) {
+                ids.add(key.getId());
+            }
+            Collections.sort(ids);
+            this.maxId = ids.get(ids.size() - 1);
+        }
+    }
+    
+    private final Map<String, Partition> partitions = new LinkedHashMap<>(); // By masonId
+    private int roundMaxInFlight; // Per partition; all partitions share MAX_REQUESTS_PER_HOST
+    private int roundBatchSize;
+    private int inFlight = 0;
+    private boolean sentSincePass;
+    private String roundError;
+    private boolean retryAfterRound;
+    private long nextBatchSeq = 0;
+    private long roundStartNanos;
+    private int roundRowsAcked;
+    private volatile int lastDrainRows = 0;
+    private volatile double lastDrainRowsPerSecond = 0;
+    
     public interface SyncListener {
         void onSyncStarted();
-        void onSyncSuccess(int lastPlacementNumber, int palletCount, int placementCount);
+        /** Server totals are per mason; a shared device syncs several masons' placements */
+        void onSyncSuccess(String masonId, int lastPlacementNumber, int palletCount, int placementCount);
         void onSyncFailed(String error);
         void onSyncRetrying(int attempt, long delayMs);
         void onCounterUpdated(int unsyncedCount);
+        /** The server rejected placements of an acked batch; they were moved to the dead-letter table */
+        void onPlacementsRejected(String masonId, int count, String reason);
+    }
+    
+    /** Per-placement outcome of addPlacement; called on the commit thread, not the main thread */
+    public interface PlacementCallback {
+        /** The placement's insert has committed - safe to confirm to the user */
+        void onPlacementStored(BrickPlacement placement);
+        void onPlacementFailed(BrickPlacement placement, Exception error);
     }
     
     public SyncManager(Context context) {
         this.context = context;
         this.apiService = ApiClient.getApiService();
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.executorService = Executors.newSingleThreadScheduledExecutor();
         this.mainHandler = new Handler(Looper.getMainLooper());
         // DAO will be initialized lazily on background thread when first needed
+        this.writeBehind = new PlacementWriteBehind(context, watermarks, new PlacementWriteBehind.BatchListener() {
+            @Override
+            public void onWatermarksLoaded() {
+                notifyCounterUpdated();
+                executorService.execute(SyncManager.this::onWatermarksLoaded);
+            }
+            
+            @Override
+            public void onBatchCommitted(int rows) {
+                SyncManager.this.onBatchCommitted(rows);
+            }
+        });
+        executorService.execute(() -> getDatabase().sessionAckDao()
+            .deleteAckedBefore(System.currentTimeMillis() - SESSION_ACK_RETENTION_MS));
+    }
+    
+    private AppDatabase getDatabase() {
+        return AppDatabase.getInstance(context);
     }
     
     private BrickPlacementDao getDao() {
@@ -72,150 +218,592 @@ public class SyncManager {
     }
     
     public void addPlacement(BrickPlacement placement) {
+        addPlacement(placement, null);
+    }
+    
+    /**
+     * Queue a placement for the next group commit (see {@link PlacementWriteBehind}).
+     * The callback, if any, hears about it once the row is durable.
+     */
+    public void addPlacement(BrickPlacement placement, PlacementCallback callback) {
+        writeBehind.enqueue(placement, callback);
+    }
+    
+    // Commit thread: the local counter updates at once, the sync itself is coalesced
+    private void onBatchCommitted(int rows) {
+        final long committedNanos = SystemClock.elapsedRealtimeNanos();
+        notifyCounterUpdated();
         executorService.execute(() -> {
-            getDao().insert(placement);
-            unsyncedCount = getDao().getUnsyncedCount();
-            
-            mainHandler.post(() -> {
-                if (syncListener != null) {
-                    syncListener.onCounterUpdated(unsyncedCount);
-                }
-            });
+            if (oldestPendingInsertNanos == 0) {
+                oldestPendingInsertNanos = committedNanos;
+            }
+            rowsSinceLastSend += rows;
             
-            // Attempt sync if threshold reached or exceeded
-            if (unsyncedCount >= SYNC_THRESHOLD) {
+            if (rowsSinceLastSend >= SYNC_FLUSH_ROWS) {
                 attemptSync();
+            } else if (flushDeadline == null) {
+                long delayNanos = oldestPendingInsertNanos + TimeUnit.MILLISECONDS.toNanos(SYNC_FLUSH_DELAY_MS)
+                    - SystemClock.elapsedRealtimeNanos();
+                flushDeadline = executorService.schedule(this::onFlushDeadline, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
             }
         });
     }
     
-    public void attemptSync() {
-        if (isSyncing) {
-            Log.d(TAG, "Sync already in progress, skipping");
-            return;
+    // Executor thread: latency budget of the oldest waiting placement is up
+    private void onFlushDeadline() {
+        flushDeadline = null;
+        if (rowsSinceLastSend > 0) {
+            attemptSync();
         }
-        
+    }
+    
+    private void cancelFlushDeadline() {
+        if (flushDeadline != null) {
+            flushDeadline.cancel(false);
+            flushDeadline = null;
+        }
+    }
+    
+    /**
+     * Sync whatever is waiting without waiting for the coalescing budget, e.g. when the
+     * scan session stops. Placements already handed to addPlacement() are included.
+     */
+    public void flush() {
+        writeBehind.afterPendingCommits(() -> executorService.execute(() -> {
+            if (hasUnsyncedOrDefer()) {
+                attemptSync();
+            }
+        }));
+    }
+    
+    // Executor thread
+    private void onWatermarksLoaded() {
+        watermarksLoaded = true;
+        int count = watermarks.unsyncedCount();
+        if (syncDeferredUntilLoaded && count > 0) {
+            Log.d(TAG, "Watermarks loaded with " + count + " unsynced placements, running the deferred sync");
+            attemptSync();
+        }
+        syncDeferredUntilLoaded = false;
+    }
+    
+    /** Executor thread. Whether there is anything to sync; before the count is loaded, remember to check once it is. */
+    private boolean hasUnsyncedOrDefer() {
+        if (!watermarksLoaded) {
+            syncDeferredUntilLoaded = true;
+            return false;
+        }
+        return watermarks.unsyncedCount() > 0;
+    }
+    
+    private void notifyCounterUpdated() {
+        final int count = watermarks.unsyncedCount();
+        mainHandler.post(() -> {
+            if (syncListener != null) {
+                syncListener.onCounterUpdated(count);
+            }
+        });
+    }
+    
+    public void attemptSync() {
         executorService.execute(() -> {
-            List<BrickPlacement> unsyncedPlacements = getDao().getUnsyncedPlacements();
-            
-            if (unsyncedPlacements.isEmpty()) {
-                Log.d(TAG, "No placements to sync");
-                return;
+            if (isSyncing) {
+                joinRound(); // New rows (or a new mason's partition) join the running round
+            } else {
+                startRound();
             }
-            
-            Log.d(TAG, "Starting sync for " + unsyncedPlacements.size() + " placements");
-            
+        });
+    }
+    
+    /**
+     * Executor thread. A sync round drains the queue as one request stream per mason
+     * (partition), each in keyset pages of {@code batchSize} placements with up to
+     * {@code maxInFlight} of them on the wire at once instead of waiting a full round trip
+     * per page. Partitions take turns filling the shared connection budget, so one mason's
+     * offline backlog never holds up another mason's live placements. Each acked batch is
+     * deleted straight away, so a failed batch is retried (next round, from the head of
+     * the queue) without resending anything already acknowledged; lastSyncedId only moves
+     * through the contiguous acked prefix of a partition's batches, in send order.
+     */
+    private void startRound() {
+        MasonApp app = MasonApp.getInstance();
+        roundMaxInFlight = clamp(app != null ? app.getSyncMaxInFlight() : DEFAULT_MAX_IN_FLIGHT, 1, ApiClient.MAX_REQUESTS_PER_HOST);
+        roundBatchSize = clamp(app != null ? app.getSyncBatchSize() : DEFAULT_SYNC_BATCH_SIZE, 1, MAX_SYNC_BATCH_SIZE);
+        partitions.clear();
+        sentSincePass = false;
+        roundError = null;
+        retryAfterRound = false;
+        roundRowsAcked = 0;
+        roundStartNanos = SystemClock.elapsedRealtimeNanos();
+        
+        addPartitions();
+        fillPipeline();
+        if (inFlight == 0 && roundError == null) {
+            Log.d(TAG, "No placements to sync");
+        }
+        finishRoundIfIdle();
+    }
+    
+    private void joinRound() {
+        if (roundError != null) {
+            return; // Round is winding down after a failure; the retry picks these up
+        }
+        addPartitions();
+        fillPipeline();
+    }
+    
+    // New masons get a partition from the head of their queue; drained ones look past their cursor again
+    private void addPartitions() {
+        for (String masonId : getDao().getUnsyncedMasonIds()) {
+            Partition partition = partitions.get(masonId);
+            if (partition == null) {
+                partitions.put(masonId, new Partition(masonId));
+            } else {
+                partition.pagesExhausted = false;
+            }
+        }
+    }
+    
+    /** Executor thread. Round-robin one page per partition until the windows are full or the queue is drained. */
+    private void fillPipeline() {
+        boolean sent = true;
+        while (sent && roundError == null && inFlight < ApiClient.MAX_REQUESTS_PER_HOST) {
+            sent = false;
+            for (Partition partition : partitions.values()) {
+                if (roundError != null || inFlight >= ApiClient.MAX_REQUESTS_PER_HOST) {
+                    return;
+                }
+                if (!partition.pagesExhausted && partition.inFlight < roundMaxInFlight) {
+                    sent |= sendNextPage(partition);
+                }
+            }
+        }
+    }
+    
+    private boolean sendNextPage(Partition partition) {
+        List<PlacementKey> keys = getDao().getUnsyncedKeys(partition.masonId,
+            partition.cursorTimestamp, partition.cursorId, roundBatchSize);
+        if (keys.isEmpty()) {
+            // Short pages are not trusted as the end: rows committed meanwhile still get picked up here
+            partition.pagesExhausted = true;
+            return false;
+        }
+        
+        // Check if API service is available
+        if (apiService == null) {
+            Log.e(TAG, "API service not initialized");
+            roundError = "Backend API not configured";
+            return false;
+        }
+        
+        if (!isSyncing) {
             isSyncing = true;
             mainHandler.post(() -> {
                 if (syncListener != null) {
                     syncListener.onSyncStarted();
                 }
             });
-            
-            // Prepare sync request
-            String masonId = unsyncedPlacements.get(0).getMasonId();
-            SyncRequest.PlacementData[] placementData = new SyncRequest.PlacementData[unsyncedPlacements.size()];
-            
-            for (int i = 0; i < unsyncedPlacements.size(); i++) {
-                BrickPlacement placement = unsyncedPlacements.get(i);
-                placementData[i] = new SyncRequest.PlacementData(
-                    placement.getBrickNumber(),
-                    placement.getTimestamp(),
-                    placement.getLatitude(),
-                    placement.getLongitude(),
-                    placement.getAltitude(),
-                    placement.getAccuracy(),
-                    placement.getBuildSessionId(),
-                    placement.getEventSeq(),
-                    placement.getRssiAvg(),
-                    placement.getRssiPeak(),
-                    placement.getReadsInWindow(),
-                    placement.getPowerLevel(),
-                    placement.getDecisionStatus(),
-                    placement.getScanType() != null ? placement.getScanType() : "placement"
-                );
+        }
+        
+        InFlightBatch sent = new InFlightBatch(partition, nextBatchSeq++, keys, buildSessionRanges(keys));
+        partition.cursorTimestamp = sent.lastTimestamp;
+        partition.cursorId = sent.lastId;
+        sentSincePass = true;
+        sendBatch(partition, sent);
+        return true;
+    }
+    
+    /**
+     * Executor thread. The page's session ranges: per build session, each run of page rows
+     * that is contiguous in the session's queued sequence becomes (seq of the queued row
+     * before the run, last seq of the run]. Anything of the session below its first queued
+     * row has been acked already, so a run starting there claims from 0. The claims hold
+     * however pages interleave or sequences skip, which is what lets the server move its
+     * watermark safely; a session with a repeated sequence gets no ranges at all.
+     */
+    private List<SessionRange> buildSessionRanges(List<PlacementKey> keys) {
+        Set<Integer> pageIds = new HashSet<>();
+        Map<String, int[]> spans = new LinkedHashMap<>(); // Session -> {min, max} seq in the page
+        for (PlacementKey key : keys) {
+            pageIds.add(key.getId());
+            if (key.getBuildSessionId() == null || key.getEventSeq() <= 0) {
+                continue;
             }
-            
-            SyncRequest request = new SyncRequest(masonId, placementData);
-            
-            // Check if API service is available
-            if (apiService == null) {
-                isSyncing = false;
-                Log.e(TAG, "API service not initialized");
-                mainHandler.post(() -> {
-                    if (syncListener != null) {
-                        syncListener.onSyncFailed("Backend API not configured");
-                    }
-                });
-                return;
+            int[] span = spans.get(key.getBuildSessionId());
+            if (span == null) {
+                spans.put(key.getBuildSessionId(), new int[] {key.getEventSeq(), key.getEventSeq()});
+            } else {
+                span[0] = Math.min(span[0], key.getEventSeq());
+                span[1] = Math.max(span[1], key.getEventSeq());
             }
-            
-            // Make API call
-            Call<SyncResponse> call = apiService.syncPlacements(request);
-            call.enqueue(new Callback<SyncResponse>() {
-                @Override
-                public void onResponse(Call<SyncResponse> call, Response<SyncResponse> response) {
-                    isSyncing = false;
-                    
-                    if (response.isSuccessful() && response.body() != null && response.body().isSuccess()) {
-                        SyncResponse syncResponse = response.body();
-                        
-                        // Mark placements as synced
-                        executorService.execute(() -> {
-                            for (BrickPlacement placement : unsyncedPlacements) {
-                                placement.setSynced(true);
-                                getDao().update(placement);
-                            }
-                            
-                            // Clear synced placements from local cache
-                            getDao().deleteSyncedPlacements();
-                            unsyncedCount = getDao().getUnsyncedCount();
-                            
-                            mainHandler.post(() -> {
-                                if (syncListener != null) {
-                                    syncListener.onSyncSuccess(
-                                        syncResponse.getLastPlacementNumber(),
-                                        syncResponse.getPalletCount(),
-                                        syncResponse.getPlacementCount()
-                                    );
-                                    syncListener.onCounterUpdated(unsyncedCount);
-                                }
-                            });
-                        });
-                        
-                        // Reset retry counter on success
-                        retryAttempts = 0;
-                        cancelPendingRetry();
-                        Log.d(TAG, "Sync successful");
-                    } else {
-                        String error = "Sync failed: " + (response.body() != null ? response.body().getMessage() : "Unknown error");
-                        Log.e(TAG, error);
-                        
-                        // Server responded but with error - don't retry (data issue, not network)
-                        mainHandler.post(() -> {
-                            if (syncListener != null) {
-                                syncListener.onSyncFailed(error);
-                            }
-                        });
+        }
+        
+        List<SessionRange> ranges = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : spans.entrySet()) {
+            String sessionId = entry.getKey();
+            int[] span = entry.getValue();
+            int after = getDao().getPrevUnsyncedSeq(sessionId, span[0]);
+            int previousSeq = after;
+            int runLast = 0; // 0 = no run open
+            List<SessionRange> sessionRanges = new ArrayList<>();
+            boolean repeated = false;
+            for (PlacementKey queued : getDao().getUnsyncedSessionKeys(sessionId, span[0], span[1])) {
+                if (queued.getEventSeq() == previousSeq) {
+                    repeated = true;
+                    break;
+                }
+                previousSeq = queued.getEventSeq();
+                if (pageIds.contains(queued.getId())) {
+                    runLast = queued.getEventSeq();
+                } else {
+                    if (runLast != 0) {
+                        sessionRanges.add(new SessionRange(sessionId, after, runLast));
+                        runLast = 0;
                     }
+                    after = queued.getEventSeq();
+                }
+            }
+            if (repeated) {
+                continue;
+            }
+            if (runLast != 0) {
+                sessionRanges.add(new SessionRange(sessionId, after, runLast));
+            }
+            ranges.addAll(sessionRanges);
+        }
+        return ranges;
+    }
+    
+    private void sendBatch(Partition partition, InFlightBatch sent) {
+        partition.sentBatches.addLast(sent);
+        partition.inFlight++;
+        inFlight++;
+        
+        latencyMetrics.record(ScanLatencyMetrics.Stage.SYNC_QUEUE, oldestPendingInsertNanos, SystemClock.elapsedRealtimeNanos());
+        oldestPendingInsertNanos = 0;
+        rowsSinceLastSend = 0;
+        cancelFlushDeadline();
+        post(sent, binaryWireAccepted && !binaryWireRejected);
+    }
+    
+    /**
+     * Executor thread. Encode and send one batch; a 415 to the binary format resends it as JSON.
+     * The JSON body is streamed from a cursor as OkHttp writes it, so no row is held here.
+     */
+    private void post(InFlightBatch sent, boolean binary) {
+        Partition partition = sent.partition;
+        RequestBody body;
+        String encoding;
+        // Row ids in body order, which the per-item results follow; the JSON body knows it once written
+        final List<Integer> binaryOrder;
+        final PlacementJsonBody jsonBody;
+        if (binary) {
+            List<BrickPlacement> rows = getDao().getUnsyncedRange(partition.masonId,
+                sent.afterTimestamp, sent.afterId, sent.lastTimestamp, sent.lastId);
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                if (Collections.binarySearch(sent.ids, rows.get(i).getId()) < 0) {
+                    rows.remove(i); // Committed into the range after the page was picked
+                }
+            }
+            binaryOrder = new ArrayList<>(rows.size());
+            for (BrickPlacement row : rows) {
+                binaryOrder.add(row.getId());
+            }
+            jsonBody = null;
+            byte[] payload = wireEncoder.encode(partition.masonId, rows, sent.sessionRanges);
+            body = RequestBody.create(payload, WIRE_MEDIA_TYPE);
+            encoding = "binary, " + payload.length + " bytes";
+        } else {
+            jsonBody = new PlacementJsonBody(partition.masonId, () -> getDao().getUnsyncedRangeCursor(partition.masonId,
+                sent.afterTimestamp, sent.afterId, sent.lastTimestamp, sent.lastId), sent.ids, sent.sessionRanges);
+            body = jsonBody;
+            encoding = "streamed JSON";
+            binaryOrder = null;
+        }
+        Call<SyncResponse> call = apiService.syncPlacements(body);
+        Log.d(TAG, "Sending batch #" + sent.seq + " of " + sent.ids.size() + " placements for " + partition.masonId
+            + " (" + encoding + "; " + partition.inFlight + "/" + roundMaxInFlight + " in flight, "
+            + watermarks.unsyncedCount() + " unsynced)");
+        
+        // Make API call
+        final long requestStartNanos = SystemClock.elapsedRealtimeNanos();
+        call.enqueue(new Callback<SyncResponse>() {
+            @Override
+            public void onResponse(Call<SyncResponse> call, Response<SyncResponse> response) {
+                latencyMetrics.record(ScanLatencyMetrics.Stage.SYNC_ACK, requestStartNanos, SystemClock.elapsedRealtimeNanos());
+                noteWireFormats(response);
+                
+                if (binary && response.code() == UNSUPPORTED_MEDIA_TYPE) {
+                    binaryWireRejected = true;
+                    Log.w(TAG, "Server rejected the binary sync format - using JSON from now on");
+                    executorService.execute(() -> post(sent, false));
+                    return;
                 }
                 
-                @Override
-                public void onFailure(Call<SyncResponse> call, Throwable t) {
-                    isSyncing = false;
-                    Log.e(TAG, "Sync failed (network)", t);
-                    
-                    // Network failure - schedule retry with exponential backoff
-                    scheduleRetry();
-                    
-                    mainHandler.post(() -> {
-                        if (syncListener != null) {
-                            syncListener.onSyncFailed(t.getMessage());
-                        }
-                    });
+                if (response.isSuccessful() && response.body() != null && response.body().isSuccess()) {
+                    SyncResponse syncResponse = response.body();
+                    List<Integer> order = binary ? binaryOrder : jsonBody.getWrittenIds();
+                    executorService.execute(() -> onBatchAcked(sent, syncResponse, order));
+                } else {
+                    String error = "Sync failed: " + (response.body() != null ? response.body().getMessage() : "Unknown error");
+                    Log.e(TAG, error);
+                    // Server responded but with error - don't retry (data issue, not network)
+                    executorService.execute(() -> onBatchFailed(sent, error, false));
+                }
+            }
+            
+            @Override
+            public void onFailure(Call<SyncResponse> call, Throwable t) {
+                latencyMetrics.record(ScanLatencyMetrics.Stage.SYNC_ACK, requestStartNanos, SystemClock.elapsedRealtimeNanos());
+                Log.e(TAG, "Sync failed (network)", t);
+                // Network failure - retry with exponential backoff once the round has drained
+                executorService.execute(() -> onBatchFailed(sent, t.getMessage(), true));
+            }
+        });
+    }
+    
+    /**
+     * Executor thread. Drop the batch's rows the server stored (or dead-letter the ones it
+     * rejected) and any others under its session ack watermarks, advance the in-order
+     * watermark, refill the windows.
+     *
+     * @param bodyOrder row ids in the order the request body carried them
+     */
+    private void onBatchAcked(InFlightBatch batch, SyncResponse syncResponse, List<Integer> bodyOrder) {
+        Partition partition = batch.partition;
+        partition.inFlight--;
+        inFlight--;
+        batch.acked = true;
+        
+        // lastSyncedId moves through the acked prefix of the partition's batches
+        int ackedPrefix = 0;
+        int newWatermark = watermarks.lastSyncedId();
+        for (InFlightBatch sentBatch : partition.sentBatches) {
+            if (!sentBatch.acked) {
+                break;
+            }
+            newWatermark = Math.max(newWatermark, sentBatch.maxId);
+            ackedPrefix++;
+        }
+        final int watermark = newWatermark;
+        
+        // One transaction for the rows and watermark tables; the in-memory watermarks follow once
+        // it has committed, under the lock the insert path takes too, so they apply in commit order
+        final int[] deleted = new int[2]; // By item results / by session acks
+        final long[] oldest = {SyncWatermarks.UNCHANGED};
+        final List<SyncItemResult> rejected = new ArrayList<>();
+        final List<PlacementKey> unresolved = new ArrayList<>();
+        synchronized (watermarks.writeLock) {
+            // The page is in queue order, so its first row is its oldest; the MIN aggregate only
+            // runs when that row was the oldest queued, or session acks dropped unknown rows
+            final boolean mayDropOldest = batch.keys.get(0).getTimestamp() <= watermarks.oldestUnsyncedTimestamp();
+            getDatabase().runInTransaction(() -> {
+                deleted[0] = applyItemResults(batch, syncResponse.getResults(), bodyOrder, rejected, unresolved);
+                deleted[1] = applySessionAcks(syncResponse.getAcks(), unresolved);
+                if (watermark > watermarks.lastSyncedId()) {
+                    getDatabase().syncStateDao().put(new SyncState(watermark, System.currentTimeMillis()));
+                }
+                if ((deleted[0] > 0 && mayDropOldest) || deleted[1] > 0) {
+                    oldest[0] = getDao().getOldestUnsyncedTimestamp();
                 }
             });
+            watermarks.onAcked(deleted[0] + deleted[1], watermark, oldest[0]);
+        }
+        for (int i = 0; i < ackedPrefix; i++) {
+            partition.sentBatches.pollFirst();
+        }
+        roundRowsAcked += deleted[0] + deleted[1];
+        final int remaining = watermarks.unsyncedCount();
+        
+        // Responses can overtake each other; only the mason's latest-sent batch's server totals are shown
+        final boolean newest = batch.seq > partition.lastReportedSeq;
+        if (newest) {
+            partition.lastReportedSeq = batch.seq;
+        }
+        mainHandler.post(() -> {
+            if (syncListener != null) {
+                if (newest) {
+                    syncListener.onSyncSuccess(
+                        partition.masonId,
+                        syncResponse.getLastPlacementNumber(),
+                        syncResponse.getPalletCount(),
+                        syncResponse.getPlacementCount()
+                    );
+                }
+                syncListener.onCounterUpdated(remaining);
+                if (!rejected.isEmpty()) {
+                    syncListener.onPlacementsRejected(partition.masonId, rejected.size(), rejected.get(0).getReason());
+                }
+            }
         });
+        
+        // Reset retry counter on success
+        retryAttempts = 0;
+        cancelPendingRetry();
+        
+        fillPipeline();
+        finishRoundIfIdle();
+    }
+    
+    /**
+     * Inside the ack transaction. Drop each row the server stored or already had, move each
+     * one it rejected to the dead-letter table; a row with no result (or one this client
+     * doesn't know) stays queued for the next round, and applySessionAcks keeps the session
+     * watermark below it. Without results the whole batch is acked.
+     *
+     * @param rejected   receives the rejected rows' results
+     * @param unresolved receives the keys of the rows left queued
+     * @return rows dropped from the queue
+     */
+    private int applyItemResults(InFlightBatch batch, List<SyncItemResult> results, List<Integer> bodyOrder,
+                                 List<SyncItemResult> rejected, List<PlacementKey> unresolved) {
+        if (results == null || bodyOrder == null) {
+            return getDao().ackPlacements(batch.ids); // Server without per-item results
+        }
+        if (results.size() != bodyOrder.size()) {
+            Log.w(TAG, "Batch #" + batch.seq + ": " + results.size() + " results for " + bodyOrder.size() + " placements");
+        }
+        Map<Integer, PlacementKey> keysById = new HashMap<>();
+        for (PlacementKey key : batch.keys) {
+            keysById.put(key.getId(), key);
+        }
+        List<Integer> done = new ArrayList<>(bodyOrder.size());
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < bodyOrder.size(); i++) {
+            int id = bodyOrder.get(i);
+            SyncItemResult result = i < results.size() ? results.get(i) : null;
+            if (result == null || result.getStatus() == null) {
+                PlacementKey key = keysById.get(id);
+                if (key != null) {
+                    unresolved.add(key);
+                }
+                continue;
+            }
+            if (result.getStatus() == SyncItemResult.Status.REJECTED) {
+                getDatabase().deadLetterDao().copyFromQueue(id, result.getReason(), now);
+                rejected.add(result);
+                Log.w(TAG, "Placement " + id + " rejected by server: " + result.getReason());
+            }
+            done.add(id);
+        }
+        Collections.sort(done);
+        return getDao().ackPlacements(done);
+    }
+    
+    /**
+     * Inside the ack transaction. Keep each session watermark that moved and drop the queued
+     * rows under it - rows of a batch whose response was lost are not resent. A watermark is
+     * held below the lowest row of the batch the server gave no result for (the server holds
+     * those out of its ranges too), so that row is not dropped with the ones under the watermark.
+     *
+     * @param unresolved rows of the batch left queued by applyItemResults
+     * @return rows dropped
+     */
+    private int applySessionAcks(List<SessionAck> acks, List<PlacementKey> unresolved) {
+        if (acks == null) {
+            return 0; // Server without session watermarks
+        }
+        Map<String, Integer> heldFrom = new HashMap<>(); // Session -> lowest unresolved seq
+        for (PlacementKey key : unresolved) {
+            if (key.getBuildSessionId() != null && key.getEventSeq() > 0) {
+                Integer held = heldFrom.get(key.getBuildSessionId());
+                if (held == null || key.getEventSeq() < held) {
+                    heldFrom.put(key.getBuildSessionId(), key.getEventSeq());
+                }
+            }
+        }
+        int dropped = 0;
+        long now = System.currentTimeMillis();
+        for (SessionAck ack : acks) {
+            String sessionId = ack.getBuildSessionId();
+            if (sessionId == null) {
+                continue;
+            }
+            int ackedSeq = ack.getAckedSeq();
+            Integer held = heldFrom.get(sessionId);
+            if (held != null && held <= ackedSeq) {
+                ackedSeq = held - 1;
+            }
+            if (ackedSeq <= 0) {
+                continue;
+            }
+            SessionAck stored = getDatabase().sessionAckDao().get(sessionId);
+            if (stored != null && stored.getAckedSeq() >= ackedSeq) {
+                continue;
+            }
+            getDatabase().sessionAckDao().put(new SessionAck(sessionId, ackedSeq, now));
+            int rows = getDao().deleteSessionThrough(sessionId, ackedSeq);
+            if (rows > 0) {
+                Log.d(TAG, "Session " + sessionId + " acked through " + ackedSeq + ": dropped " + rows + " queued placements");
+            }
+            dropped += rows;
+        }
+        return dropped;
+    }
+    
+    /** Executor thread. Stop sending; batches already in flight still land before the round ends. */
+    private void onBatchFailed(InFlightBatch batch, String error, boolean retry) {
+        batch.partition.inFlight--;
+        inFlight--;
+        if (roundError == null) {
+            roundError = error;
+        }
+        retryAfterRound |= retry;
+        finishRoundIfIdle();
+    }
+    
+    private void finishRoundIfIdle() {
+        if (inFlight > 0) {
+            return;
+        }
+        if (roundError == null && sentSincePass && watermarks.unsyncedCount() > 0) {
+            // Rows committed behind a cursor while this pass was draining - one more pass from the heads
+            partitions.clear();
+            sentSincePass = false;
+            addPartitions();
+            fillPipeline();
+            if (inFlight > 0) {
+                return;
+            }
+        }
+        
+        partitions.clear();
+        boolean wasSyncing = isSyncing;
+        isSyncing = false;
+        if (roundRowsAcked > 0) {
+            long elapsedNanos = Math.max(1, SystemClock.elapsedRealtimeNanos() - roundStartNanos);
+            lastDrainRows = roundRowsAcked;
+            lastDrainRowsPerSecond = roundRowsAcked * 1e9 / elapsedNanos;
+            Log.d(TAG, String.format(Locale.US, "Drained %d placements in %.2fs (%.1f rows/s, batch %d, window %d)",
+                roundRowsAcked, elapsedNanos / 1e9, lastDrainRowsPerSecond, roundBatchSize, roundMaxInFlight));
+        }
+        
+        if (roundError != null) {
+            final String error = roundError;
+            if (retryAfterRound) {
+                scheduleRetry();
+            }
+            mainHandler.post(() -> {
+                if (syncListener != null) {
+                    syncListener.onSyncFailed(error);
+                }
+            });
+        } else if (wasSyncing) {
+            Log.d(TAG, "Sync successful");
+        }
+    }
+    
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+    
+    // Any thread: the server lists the binary format in Accept-Post once it can decode it
+    private void noteWireFormats(Response<SyncResponse> response) {
+        String acceptPost = response.headers() != null ? response.headers().get("Accept-Post") : null;
+        if (!binaryWireAccepted && acceptPost != null && acceptPost.contains(PlacementWireEncoder.CONTENT_TYPE)) {
+            binaryWireAccepted = true;
+            Log.i(TAG, "Server accepts the binary sync format - switching from JSON");
+        }
     }
     
     /**
@@ -272,9 +860,8 @@ public class SyncManager {
         
         // Check if we have unsynced placements and attempt sync
         executorService.execute(() -> {
-            int count = getDao().getUnsyncedCount();
-            if (count > 0) {
-                Log.d(TAG, "Network restored with " + count + " unsynced placements, attempting sync");
+            if (hasUnsyncedOrDefer()) {
+                Log.d(TAG, "Network restored with " + watermarks.unsyncedCount() + " unsynced placements, attempting sync");
                 attemptSync();
             }
         });
@@ -322,13 +909,52 @@ public class SyncManager {
     }
     
     public int getUnsyncedCount() {
-        return unsyncedCount;
+        return watermarks.unsyncedCount();
+    }
+    
+    /** Client timestamp of the oldest placement still waiting for sync, 0 if none */
+    public long getOldestUnsyncedTimestamp() {
+        return watermarks.oldestUnsyncedTimestamp();
+    }
+    
+    /** Highest placement id the server has acknowledged */
+    public int getLastSyncedId() {
+        return watermarks.lastSyncedId();
+    }
+    
+    /** Placements acknowledged by the last sync round that sent anything */
+    public int getLastDrainRows() {
+        return lastDrainRows;
+    }
+    
+    /** Drain rate of that round, start to last ack, in rows/s */
+    public double getLastDrainRowsPerSecond() {
+        return lastDrainRowsPerSecond;
+    }
+    
+    /** Placements the server rejected, newest first, with the total; delivered on the main thread */
+    public void loadRejectedPlacements(int limit, RejectedPlacementsListener listener) {
+        executorService.execute(() -> {
+            int total = getDatabase().deadLetterDao().getCount();
+            List<DeadLetterPlacement> recent = getDatabase().deadLetterDao().getRecent(limit);
+            mainHandler.post(() -> listener.onRejectedPlacementsLoaded(total, recent));
+        });
+    }
+    
+    public interface RejectedPlacementsListener {
+        void onRejectedPlacementsLoaded(int total, List<DeadLetterPlacement> recent);
+    }
+    
+    public void clearRejectedPlacements() {
+        executorService.execute(() -> getDatabase().deadLetterDao().deleteAll());
     }
     
     public void clearUnsyncedPlacements() {
         executorService.execute(() -> {
-            getDao().deleteAll();
-            unsyncedCount = 0;
+            synchronized (watermarks.writeLock) {
+                getDao().deleteAll();
+                watermarks.onCleared();
+            }
             
             mainHandler.post(() -> {
                 if (syncListener != null) {
@@ -340,8 +966,12 @@ public class SyncManager {
     
     public void shutdown() {
         cancelPendingRetry();
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-        }
+        // Queued placements still get committed; the executor stops once their follow-up work is queued
+        writeBehind.shutdown(() -> {
+            if (executorService != null && !executorService.isShutdown()) {
+                executorService.execute(this::cancelFlushDeadline);
+                executorService.shutdown();
+            }
+        });
     }
 }
@@ -0,0 +1,81 @@
+package com.mason.bricktracking.sync;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory mirror of the sync queue's aggregates: unsynced row count, oldest unsynced
+ * timestamp and the last id the server acknowledged.
+ *
+ * Loaded from the database once at startup, then moved by the insert, ack and clear paths
+ * right after their write transactions commit - a rolled-back transaction leaves them alone.
+ * Those paths hold {@link #writeLock} across the transaction and the update, so updates land
+ * in commit order and the values never need an aggregate query to stay correct. SQLite
+ * serialises write transactions anyway, so the lock costs no concurrency. Readers on any
+ * thread get a lock-free (individually consistent) view.
+ */
+final class SyncWatermarks {
+
+    /** oldestRemaining for onAcked when the ack cannot have removed the oldest row */
+    static final long UNCHANGED = -1;
+
+    /** Held across each write transaction that moves the watermarks and the update that follows it */
+    final Object writeLock = new Object();
+
+    private final AtomicInteger unsyncedCount = new AtomicInteger();
+    private final AtomicLong oldestUnsyncedTimestamp = new AtomicLong(); // 0 = none
+    private final AtomicInteger lastSyncedId = new AtomicInteger();
+
+    void load(int unsynced, long oldestUnsynced, int lastSynced) {
+        unsyncedCount.set(unsynced);
+        oldestUnsyncedTimestamp.set(oldestUnsynced);
+        lastSyncedId.set(lastSynced);
+    }
+
+    /** After the insert transaction committed: rows were added unsynced */
+    void onInserted(int rows, long oldestTimestamp) {
+        unsyncedCount.addAndGet(rows);
+        long current;
+        do {
+            current = oldestUnsyncedTimestamp.get();
+            if (current != 0 && current <= oldestTimestamp) {
+                return;
+            }
+        } while (!oldestUnsyncedTimestamp.compareAndSet(current, oldestTimestamp));
+    }
+
+    /**
+     * After the ack transaction committed.
+     *
+     * @param rows            rows the ack actually deleted (an admin clear may have got there first)
+     * @param oldestRemaining oldest timestamp still unsynced after the ack (0 = none), or
+     *                        {@link #UNCHANGED}
+     */
+    void onAcked(int rows, int maxAckedId, long oldestRemaining) {
+        unsyncedCount.addAndGet(-rows);
+        if (oldestRemaining != UNCHANGED) {
+            oldestUnsyncedTimestamp.set(oldestRemaining);
+        }
+        if (maxAckedId > lastSyncedId.get()) {
+            lastSyncedId.set(maxAckedId);
+        }
+    }
+
+    /** After every placement was deleted */
+    void onCleared() {
+        unsyncedCount.set(0);
+        oldestUnsyncedTimestamp.set(0);
+    }
+
+    int unsyncedCount() {
+        return unsyncedCount.get();
+    }
+
+    long oldestUnsyncedTimestamp() {
+        return oldestUnsyncedTimestamp.get();
+    }
+
+    int lastSyncedId() {
+        return lastSyncedId.get();
+    }
+}
@@ -23,6 +23,7 @@ import com.mason.bricktracking.data.local.AppDatabase;
 import com.mason.bricktracking.data.remote.ApiClient;
 import com.mason.bricktracking.data.remote.ApiService;
 import com.mason.bricktracking.data.remote.ResetResponse;
+import com.mason.bricktracking.scan.CaptureMode;
 import com.mason.bricktracking.service.BatteryTestService;
 
 import retrofit2.Call;
@@ -31,12 +32,16 @@ import retrofit2.Response;
 
 public class AccountActivity extends AppCompatActivity {
     
-    private TextView tvMasonId, tvUsername, tvDeviceName, tvDeviceAddress;
-    private CheckBox cbSaveLogin, cbSaveDevice;
+    private TextView tvMasonId, tvUsername, tvDeviceName, tvDeviceAddress, tvSyncInFlight, tvSyncBatchSize;
+    private CheckBox cbSaveLogin, cbSaveDevice, cbSlidingCapture, cbAdaptiveWindow;
     private Button btnResetProfile, btnLogout, btnBack, btnBatteryTest;
     private LinearLayout devToolsSection;
     private ApiService apiService;
     
+    // Choices offered for the sync pipelining settings (SyncManager clamps whatever is stored)
+    private static final int[] SYNC_IN_FLIGHT_CHOICES = {1, 2, 3, 4, 6, 8};
+    private static final int[] SYNC_BATCH_SIZE_CHOICES = {50, 100, 200, 500, 1000};
+    
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -67,6 +72,10 @@ public class AccountActivity extends AppCompatActivity {
         tvDeviceAddress = findViewById(R.id.tv_account_device_address);
         cbSaveLogin = findViewById(R.id.cb_save_login);
         cbSaveDevice = findViewById(R.id.cb_save_device);
+        cbSlidingCapture = findViewById(R.id.cb_sliding_capture);
+        cbAdaptiveWindow = findViewById(R.id.cb_adaptive_window);
+        tvSyncInFlight = findViewById(R.id.tv_sync_in_flight);
+        tvSyncBatchSize = findViewById(R.id.tv_sync_batch_size);
         btnResetProfile = findViewById(R.id.btn_reset_profile);
         btnLogout = findViewById(R.id.btn_account_logout);
         btnBack = findViewById(R.id.btn_account_back);
@@ -102,6 +111,16 @@ public class AccountActivity extends AppCompatActivity {
         // Load preferences
         cbSaveLogin.setChecked(app.isSaveLoginEnabled());
         cbSaveDevice.setChecked(app.isSaveDeviceEnabled());
+        cbSlidingCapture.setChecked(app.getCaptureMode() == CaptureMode.SLIDING);
+        cbAdaptiveWindow.setChecked(app.isAdaptiveCaptureWindowEnabled());
+        
+        // Sync tuning is for admins diagnosing slow uploads
+        if (isAdmin) {
+            tvSyncInFlight.setVisibility(View.VISIBLE);
+            tvSyncBatchSize.setVisibility(View.VISIBLE);
+        }
+        tvSyncInFlight.setText("Sync requests in flight: " + app.getSyncMaxInFlight());
+        tvSyncBatchSize.setText("Sync batch size: " + app.getSyncBatchSize() + " placements");
     }
     
     private void setupListeners() {
@@ -122,6 +141,22 @@ public class AccountActivity extends AppCompatActivity {
             }
         });
         
+        // Takes effect from the next SCAN press
+        cbSlidingCapture.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            MasonApp.getInstance().setCaptureMode(isChecked ? CaptureMode.SLIDING : CaptureMode.FIXED);
+        });
+        cbAdaptiveWindow.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            MasonApp.getInstance().setAdaptiveCaptureWindowEnabled(isChecked);
+        });
+        
+        // Take effect from the next sync round
+        tvSyncInFlight.setOnClickListener(v -> showSyncChoice("Sync requests in flight",
+            SYNC_IN_FLIGHT_CHOICES, MasonApp.getInstance().getSyncMaxInFlight(),
+            value -> MasonApp.getInstance().setSyncMaxInFlight(value)));
+        tvSyncBatchSize.setOnClickListener(v -> showSyncChoice("Sync batch size",
+            SYNC_BATCH_SIZE_CHOICES, MasonApp.getInstance().getSyncBatchSize(),
+            value -> MasonApp.getInstance().setSyncBatchSize(value)));
+        
         btnResetProfile.setOnClickListener(v -> showResetConfirmation());
         btnLogout.setOnClickListener(v -> showLogoutConfirmation());
         btnBack.setOnClickListener(v -> finish());
@@ -133,6 +168,30 @@ public class AccountActivity extends AppCompatActivity {
         }
     }
     
+    private interface IntSetting {
+        void set(int value);
+    }
+    
+    private void showSyncChoice(String title, int[] choices, int current, IntSetting setting) {
+        String[] labels = new String[choices.length];
+        int checked = -1;
+        for (int i = 0; i < choices.length; i++) {
+            labels[i] = String.valueOf(choices[i]);
+            if (choices[i] == current) {
+                checked = i;
+            }
+        }
+        new AlertDialog.Builder(this)
+            .setTitle(title)
+            .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                setting.set(choices[which]);
+                loadAccountData(); // Refresh display
+                dialog.dismiss();
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
+    }
+    
     private void syncBatteryTestButton() {
         if (btnBatteryTest == null) return;
         if (BatteryTestService.isRunning()) {
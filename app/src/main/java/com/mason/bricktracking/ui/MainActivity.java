@@ -16,7 +16,10 @@ import android.os.Vibrator;
 import android.os.VibratorManager;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
@@ -50,6 +53,21 @@ import com.google.android.gms.location.Priority;
 import com.mason.bricktracking.MasonApp;
 import com.mason.bricktracking.R;
 import com.mason.bricktracking.data.model.BrickPlacement;
+import com.mason.bricktracking.data.model.DeadLetterPlacement;
+import com.mason.bricktracking.data.model.DecisionStatus;
+import com.mason.bricktracking.data.model.ScanType;
+import com.mason.bricktracking.metrics.NetworkTimingMetrics;
+import com.mason.bricktracking.metrics.ScanLatencyMetrics;
+import com.mason.bricktracking.scan.AdaptiveWindowSizer;
+import com.mason.bricktracking.scan.CaptureMode;
+import com.mason.bricktracking.scan.CaptureWindow;
+import com.mason.bricktracking.scan.EpcKey;
+import com.mason.bricktracking.scan.ExpiringEpcMap;
+import com.mason.bricktracking.scan.ReadRingBuffer;
+import com.mason.bricktracking.scan.RssiParser;
+import com.mason.bricktracking.scan.ScanEventLog;
+import com.mason.bricktracking.scan.ScanSessionJournal;
+import com.mason.bricktracking.scan.SlidingCaptureWindow;
 import com.mason.bricktracking.sync.SyncManager;
 import com.mason.bricktracking.service.BatteryTestService;
 import com.mason.bricktracking.util.NetworkMonitor;
@@ -58,14 +76,11 @@ import com.rscja.deviceapi.entity.UHFTAGInfo;
 import com.rscja.deviceapi.interfaces.ConnectionStatus;
 import com.rscja.deviceapi.interfaces.IUHFInventoryCallback;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.List;
-import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -94,7 +109,7 @@ public class MainActivity extends AppCompatActivity {
     private ImageView ivModePallet, ivModePlacement;
     private TextView tvModePallet, tvModePlacement;
     private View modeHighlight;
-    private ScanMode currentScanMode = ScanMode.PLACEMENT; // Default to placement mode
+    private volatile ScanMode currentScanMode = ScanMode.PLACEMENT; // Default to placement mode
     
     private RFIDWithUHFBLE uhf;
     private SyncManager syncManager;
@@ -103,9 +118,9 @@ public class MainActivity extends AppCompatActivity {
     private Vibrator vibrator;
     private PowerManager.WakeLock wakeLock;
     
-    private boolean isScanning = false;
+    private volatile boolean isScanning = false; // Written on UI thread, read by SDK callback and window threads
     private int placementCounter = 0;
-    private String masonId;
+    private volatile String masonId;
     private Handler mainHandler;
     private Handler scanTimeoutHandler;
     
@@ -114,51 +129,86 @@ public class MainActivity extends AppCompatActivity {
     private ValueAnimator bannerSweepAnimator;
     private Runnable scanTimeoutRunnable;
     
-    // Build session tracking
+    // Build session tracking (owned by the scan pipeline thread)
     private String currentBuildSessionId;
     private int currentEventSeq = 0;
     
+    // On-disk journal of session + dedupe state, so a crash or recreation resumes the same session
+    private static final String SCAN_JOURNAL_FILE = "scan_session.journal";
+    private ScanSessionJournal scanJournal; // null if it could not be opened
+    
+    // Per-stage latency (elapsedRealtimeNanos stamps, scan pipeline thread)
+    private final ScanLatencyMetrics latencyMetrics = ScanLatencyMetrics.getInstance();
+    
+    // Hot-path event log (SDK callback + scan pipeline threads) - decoded only when an admin dumps it
+    private final ScanEventLog eventLog = ScanEventLog.getInstance();
+    private static final int SCAN_EVENT_DUMP_RECORDS = 500;
+    private static final int REJECTED_PLACEMENTS_SHOWN = 200;
+    private long drainStartNanos;
+    private long decisionOpenNanos;
+    private long decisionCloseNanos;
+    private String resumableSessionId; // Open session found on restore, resumed by the next SCAN
+    private int resumableEventSeq = 0;
+    private String resumableMasonId;
+    private long resumableLastActiveMs;
+    
     // Track tags scanned in this session - each tag only counted once
-    private Set<String> scannedTagsInSession = new HashSet<>();
+    private Set<EpcKey> scannedTagsInSession = new HashSet<>();
     private boolean isAdmin = false;
     private int currentPowerLevel = 28; // Default 5 feet range (28 dBm), loaded from MasonApp in onCreate
 
-    // Windowed capture for best-candidate selection
-    private Map<String, List<TagRead>> captureWindow = new HashMap<>();
-    private Handler captureWindowHandler;
+    // Windowed capture for best-candidate selection (slots recycled between windows)
+    private final CaptureWindow captureWindow = new CaptureWindow();
+    // Packed-EPC scratch, only touched on the SDK callback thread
+    private final long[] callbackEpcWords = new long[EpcKey.MAX_WORDS];
+    // Lock-free hand-off from the SDK callback thread to the window consumer on the scan pipeline thread
+    private final ReadRingBuffer readBuffer = new ReadRingBuffer(READ_BUFFER_CAPACITY);
+    private final AtomicBoolean readDrainScheduled = new AtomicBoolean(false);
+    private final Runnable drainReadsRunnable = this::drainReads;
+    private final ReadRingBuffer.Consumer windowReadConsumer = this::onWindowRead;
+    private long lastLoggedOverflowCount = 0; // callback thread only
+    private boolean loggedNoGps = false; // callback thread only; set while reads arrive without a fix
+    private static final int READ_BUFFER_CAPACITY = 1024; // ~2s of reads at full reader rate
+    // Window closing, scoring, duplicate checks and placement construction run here, off the UI thread
+    private HandlerThread scanPipelineThread;
+    private Handler scanPipelineHandler;
     private Runnable captureWindowTimeout;
     private boolean isCapturing = false;
-    private long captureStartTime = 0;
+    private int captureWindowId = 0; // Lets a timeout that was already running ignore a newer window
+    private long captureStartNanos = 0; // Elapsed-realtime of the window's first read
+    
+    // Continuous (sliding window) capture - selected per session from Account preferences
+    private final SlidingCaptureWindow slidingWindow = new SlidingCaptureWindow(READ_BUFFER_CAPACITY);
+    private CaptureMode sessionCaptureMode = CaptureMode.FIXED; // scan pipeline thread only
     
     // Field-tunable parameters (adjustable via admin menu)
-    private long captureWindowMs = 350; // Default 350ms, range 250-500ms
+    private long captureWindowMs = 350; // Default 350ms, range 250-500ms (manual override when adaptive sizing is off)
     private int rssiAmbiguityThresholdDb = 5; // Default 5dB (relaxed for field), range 3-7dB
     private int countAmbiguityThreshold = 1; // Count within 1
+    private boolean earlyDecisionEnabled = true; // Close the fixed window as soon as the winner is settled
+    private int adaptiveTargetReads = 8; // Reads per tag the adaptive window should allow for
+    
+    // Adaptive window length from the observed per-tag read rate (scan pipeline thread only)
+    private static final long CAPTURE_WINDOW_MIN_MS = 250;
+    private static final long CAPTURE_WINDOW_MAX_MS = 500;
+    private final AdaptiveWindowSizer windowSizer = new AdaptiveWindowSizer(
+        CAPTURE_WINDOW_MIN_MS, CAPTURE_WINDOW_MAX_MS, captureWindowMs, adaptiveTargetReads);
+    private boolean sessionAdaptiveWindow = true;
+    private int sessionPowerLevel = -1;
+    private long activeWindowMs = 350; // Limit of the window currently open (or of the session, sliding mode)
+    private int slidingMinReads = 3; // Sliding mode: reads the leader needs before it can win
     
     // Track power level per placement
-    private int currentScanPowerLevel = 33; // Full power by default
+    private volatile int currentScanPowerLevel = 33; // Full power by default
     
     // Battery logging
     private boolean isBatteryLoggingEnabled = false;
     private final LinkedList<Integer> batteryReadings = new LinkedList<>();
     private static final int BATTERY_SMOOTHING_WINDOW = 5;
     
-    // Helper class to store individual tag reads
-    private static class TagRead {
-        String epc;
-        int rssi;
-        long timestamp;
-        
-        TagRead(String epc, int rssi, long timestamp) {
-            this.epc = epc;
-            this.rssi = rssi;
-            this.timestamp = timestamp;
-        }
-    }
-    
-    // Per-tag cooldown to prevent rapid-fire re-scanning of the same tag
-    private Map<String, Long> tagCooldowns = new HashMap<>();
+    // Per-tag cooldown to prevent rapid-fire re-scanning of the same tag (elapsed-realtime stamps)
     private static final long SCAN_COOLDOWN_MS = 500; // 0.5 seconds cooldown per tag
+    private final ExpiringEpcMap tagCooldowns = new ExpiringEpcMap(SCAN_COOLDOWN_MS, 1024, 0);
     
     // Simple scan mode - stops automatically after each successful scan
     private boolean isPulsing = false;
@@ -166,31 +216,53 @@ public class MainActivity extends AppCompatActivity {
     // GPS location tracking with Fused Location Provider
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
-    private Location lastKnownLocation;
+    private volatile Location lastKnownLocation; // Written on UI thread, snapshotted by the scan pipeline
     private float lastLocationAccuracy = 999f; // meters
     private static final int LOCATION_PERMISSION_REQUEST = 100;
     private static final long DUPLICATE_TIME_THRESHOLD = 5 * 60 * 1000; // 5 minutes
+    private static final long SESSION_RESUME_MAX_AGE_MS = 30 * 60 * 1000; // Older interrupted sessions start over
     private static final double DUPLICATE_DISTANCE_THRESHOLD = 10.0; // 10 meters
     private static final float MAX_ACCEPTABLE_ACCURACY = 20.0f; // Don't scan if GPS accuracy worse than 20m
     private static final float GOOD_ACCURACY = 10.0f; // Consider GPS "good" if better than 10m
     
-    // Store recent placements for duplicate detection
-    private Map<String, PlacementRecord> recentPlacements = new HashMap<>();
+    // Store recent placements for duplicate detection (scan timestamp + GPS position, expire after 5 min)
+    private static final int RECENT_PLACEMENT_CAPACITY = 4096; // Far above 5 minutes of placements
+    private static final int RECENT_LATITUDE = 0;
+    private static final int RECENT_LONGITUDE = 1;
+    private final ExpiringEpcMap recentPlacements = new ExpiringEpcMap(DUPLICATE_TIME_THRESHOLD, RECENT_PLACEMENT_CAPACITY, 2);
     
-    // Helper class to store placement info for duplicate detection
-    private static class PlacementRecord {
-        long timestamp;
-        double latitude;
-        double longitude;
-        double altitude;
-        float accuracy;
+    // Immutable result of a scan-pipeline decision, posted to the UI thread for feedback only
+    private static final class ScanFeedback {
+        static final ScanFeedback NOT_SCANNING = new ScanFeedback("Press SCAN to Begin", android.R.color.holo_orange_dark, false, 0);
+        static final ScanFeedback CAPTURING = new ScanFeedback("Capturing...", android.R.color.holo_blue_dark, false, 0);
+        static final ScanFeedback READY = new ScanFeedback("Scanning...", android.R.color.holo_blue_dark, false, 0);
+        static final ScanFeedback AMBIGUOUS = new ScanFeedback("Ambiguous - Rescan", android.R.color.holo_orange_dark, false, 0);
+        static final ScanFeedback COOLDOWN = new ScanFeedback("Cooldown - Ready", android.R.color.holo_orange_dark, false, 0);
+        static final ScanFeedback SAVE_FAILED = new ScanFeedback("Save failed", android.R.color.holo_red_dark, false, 0);
+        
+        final String statusText;
+        final int colorRes;
+        final boolean accepted; // Tone + vibrate + last-scan label
+        final long scanTimestamp;
+        final long firstReadNanos; // Latency stamps (elapsedRealtimeNanos), 0 = not measured
+        final long decidedNanos;
+        
+        private ScanFeedback(String statusText, int colorRes, boolean accepted, long scanTimestamp) {
+            this(statusText, colorRes, accepted, scanTimestamp, 0, 0);
+        }
         
-        PlacementRecord(long timestamp, double latitude, double longitude, double altitude, float accuracy) {
-            this.timestamp = timestamp;
-            this.latitude = latitude;
-            this.longitude = longitude;
-            this.altitude = altitude;
-            this.accuracy = accuracy;
+        private ScanFeedback(String statusText, int colorRes, boolean accepted, long scanTimestamp, 
+                             long firstReadNanos, long decidedNanos) {
+            this.statusText = statusText;
+            this.colorRes = colorRes;
+            this.accepted = accepted;
+            this.scanTimestamp = scanTimestamp;
+            this.firstReadNanos = firstReadNanos;
+            this.decidedNanos = decidedNanos;
+        }
+        
+        static ScanFeedback accepted(long scanTimestamp, long firstReadNanos, long decidedNanos) {
+            return new ScanFeedback(READY.statusText, READY.colorRes, true, scanTimestamp, firstReadNanos, decidedNanos);
         }
     }
 
@@ -302,7 +374,12 @@ public class MainActivity extends AppCompatActivity {
         
         mainHandler = new Handler(Looper.getMainLooper());
         scanTimeoutHandler = new Handler(Looper.getMainLooper());
-        captureWindowHandler = new Handler(Looper.getMainLooper());
+        // Above UI-thread priority so layout passes and banner animations can't push a window past its deadline
+        scanPipelineThread = new HandlerThread("ScanPipeline", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        scanPipelineThread.start();
+        scanPipelineHandler = new Handler(scanPipelineThread.getLooper());
+        final File journalFile = new File(getFilesDir(), SCAN_JOURNAL_FILE);
+        scanPipelineHandler.post(() -> restoreScanJournal(journalFile));
         
         // Initialize mode selector UI after layout is fully measured
         FrameLayout modeBanner = findViewById(R.id.mode_selector_banner);
@@ -348,59 +425,53 @@ public class MainActivity extends AppCompatActivity {
         uhf.setInventoryCallback(new IUHFInventoryCallback() {
             @Override
             public void callback(UHFTAGInfo tag) {
-                // Log every callback invocation
-                android.util.Log.d("SCAN_CALLBACK", "✓ Tag detected via continuous scan | isScanning=" + isScanning);
-                
                 // Only process tags if scanning session is active
                 if (!isScanning) {
-                    android.util.Log.w("SCAN_CALLBACK", "⚠ Tag detected but scanning session not active");
-                    mainHandler.post(() -> {
-                        tvSyncStatus.setText("Press SCAN to Begin");
-                        tvSyncStatus.setTextColor(getResources().getColor(android.R.color.holo_orange_dark));
-                    });
+                    eventLog.log(ScanEventLog.Event.CALLBACK_NOT_SCANNING);
+                    postFeedback(ScanFeedback.NOT_SCANNING);
                     return;
                 }
                 
                 if (tag != null && tag.getEPC() != null) {
-                    // Normalize EPC - trim whitespace and convert to uppercase
-                    String epc = tag.getEPC().trim().toUpperCase();
+                    // Pack EPC into longs - trims whitespace and folds case in one pass, no Strings
+                    String rawEpc = tag.getEPC();
+                    int epcNibbles = EpcKey.parseHex(rawEpc, callbackEpcWords);
                     
-                    // Get RSSI value - SDK returns String with decimal (e.g. "-75.80"), parse as Float then convert to int
-                    int rssi = 0;
-                    try {
-                        String rssiStr = tag.getRssi();
-                        if (rssiStr != null && !rssiStr.isEmpty()) {
-                            float rssiFloat = Float.parseFloat(rssiStr.trim());
-                            rssi = Math.round(rssiFloat); // Round to nearest integer
+                    // Skip if empty or not a hex EPC
+                    if (epcNibbles <= 0) {
+                        if (epcNibbles == EpcKey.INVALID) {
+                            eventLog.logRef(ScanEventLog.Event.CALLBACK_INVALID_EPC, rawEpc);
                         }
-                    } catch (NumberFormatException e) {
-                        android.util.Log.w("SCAN_CALLBACK", "Failed to parse RSSI: " + tag.getRssi());
-                        rssi = -999; // Sentinel value for invalid RSSI
-                    }
-                    
-                    // Skip if empty
-                    if (epc.isEmpty()) {
                         return;
                     }
                     
-                    // GPS check: warn but do NOT block scan
-                    if (lastKnownLocation == null) {
-                        android.util.Log.w("SCAN_CALLBACK", "No GPS location - accepting scan anyway (GPS optional)");
+                    // Get RSSI value - SDK returns String with decimal (e.g. "-75.80"), rounded to nearest integer
+                    int rssi = RssiParser.parseRounded(tag.getRssi());
+                    if (rssi == RssiParser.INVALID) {
+                        eventLog.logRef(ScanEventLog.Event.CALLBACK_INVALID_RSSI, tag.getRssi());
                     }
                     
-                    // Start capture window ONLY if not already capturing
-                    // Accumulates all reads in one 350ms window for best-candidate selection
-                    if (!isCapturing) {
-                        startCaptureWindow();
+                    // GPS check: warn but do NOT block scan. Logged on the change only - once per
+                    // read would flush the ring exactly while GPS is down
+                    if (lastKnownLocation == null) {
+                        if (!loggedNoGps) {
+                            loggedNoGps = true;
+                            eventLog.log(ScanEventLog.Event.CALLBACK_NO_GPS);
+                        }
+                    } else if (loggedNoGps) {
+                        loggedNoGps = false;
+                        eventLog.log(ScanEventLog.Event.CALLBACK_GPS_RESTORED);
                     }
                     
-                    // Add read to capture window
-                    synchronized (captureWindow) {
-                        if (!captureWindow.containsKey(epc)) {
-                            captureWindow.put(epc, new ArrayList<>());
+                    // Hand the read to the window consumer - never blocks the SDK thread
+                    if (readBuffer.offer(callbackEpcWords, epcNibbles, rssi, SystemClock.elapsedRealtimeNanos())) {
+                        eventLog.logEpc(ScanEventLog.Event.CALLBACK_READ, callbackEpcWords, 0, epcNibbles, rssi);
+                        if (readDrainScheduled.compareAndSet(false, true)) {
+                            scanPipelineHandler.post(drainReadsRunnable);
                         }
-                        captureWindow.get(epc).add(new TagRead(epc, rssi, System.currentTimeMillis()));
-                        android.util.Log.d("SCAN_CALLBACK", String.format("Read: EPC=%s RSSI=%d dBm", epc, rssi));
+                    } else if (readBuffer.overflowCount() != lastLoggedOverflowCount) {
+                        lastLoggedOverflowCount = readBuffer.overflowCount();
+                        eventLog.log(ScanEventLog.Event.CALLBACK_BUFFER_FULL, readBuffer.droppedCount());
                     }
                 }
             }
@@ -479,10 +550,15 @@ public class MainActivity extends AppCompatActivity {
             }
             
             @Override
-            public void onSyncSuccess(int lastPlacementNumber, int palletCount, int placementCount) {
+            public void onSyncSuccess(String syncedMasonId, int lastPlacementNumber, int palletCount, int placementCount) {
                 tvSyncStatus.setText("Synced");
                 tvSyncStatus.setTextColor(getResources().getColor(android.R.color.holo_green_dark));
                 
+                // Rows left on a shared scanner by a previous mason sync under their own id
+                if (syncedMasonId == null || !syncedMasonId.equals(masonId)) {
+                    return;
+                }
+                
                 // Update counter based on current mode - server is authoritative
                 if (currentScanMode == ScanMode.PALLET) {
                     placementCounter = palletCount;
@@ -518,6 +594,13 @@ public class MainActivity extends AppCompatActivity {
                     tvUnsyncedCount.setTextColor(getResources().getColor(android.R.color.holo_red_dark));
                 }
             }
+            
+            @Override
+            public void onPlacementsRejected(String rejectedMasonId, int count, String reason) {
+                // Rest of the batch synced; the rejected rows wait in the admin's Rejected placements list
+                Toast.makeText(MainActivity.this, count + (count == 1 ? " placement" : " placements")
+                    + " rejected by server: " + reason, Toast.LENGTH_LONG).show();
+            }
         });
         
         // Initialize NetworkMonitor for auto-retry on connection restore
@@ -809,6 +892,10 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public boolean onCreateOptionsMenu(android.view.Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
+        menu.findItem(R.id.action_scan_latency).setVisible(isAdmin);
+        menu.findItem(R.id.action_scan_events).setVisible(isAdmin);
+        menu.findItem(R.id.action_network_timing).setVisible(isAdmin);
+        menu.findItem(R.id.action_rejected_placements).setVisible(isAdmin);
         return true;
     }
     
@@ -818,9 +905,197 @@ public class MainActivity extends AppCompatActivity {
             openAccountSettings();
             return true;
         }
+        if (item.getItemId() == R.id.action_scan_latency) {
+            showScanLatencyDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_scan_events) {
+            showScanEventLogDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_network_timing) {
+            showNetworkTimingDialog();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_rejected_placements) {
+            showRejectedPlacementsDialog();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
     
+    // Admin: per-stage latency percentiles, with JSON export for offline comparison
+    private void showScanLatencyDialog() {
+        TextView table = new TextView(this);
+        table.setTypeface(android.graphics.Typeface.MONOSPACE);
+        table.setTextSize(11);
+        int pad = (int) (16 * getResources().getDisplayMetrics().density);
+        table.setPadding(pad, pad, pad, 0);
+        String drain = syncManager != null && syncManager.getLastDrainRows() > 0
+            ? String.format(Locale.US, "%nLast sync drain: %d rows at %.1f rows/s%n",
+                syncManager.getLastDrainRows(), syncManager.getLastDrainRowsPerSecond())
+            : "";
+        table.setText(latencyMetrics.toDisplayString() + drain);
+        
+        android.widget.HorizontalScrollView scroll = new android.widget.HorizontalScrollView(this);
+        scroll.addView(table);
+        
+        new AlertDialog.Builder(this)
+            .setTitle("Scan Latency")
+            .setView(scroll)
+            .setPositiveButton("Export JSON", (dialog, which) -> exportScanLatency())
+            .setNeutralButton("Reset", (dialog, which) -> {
+                latencyMetrics.reset();
+                Toast.makeText(this, "Latency histograms reset", Toast.LENGTH_SHORT).show();
+            })
+            .setNegativeButton("Close", null)
+            .show();
+    }
+    
+    private void exportScanLatency() {
+        long now = System.currentTimeMillis();
+        shareMetricsFile("scan_latency_" + now + ".json", latencyMetrics.toJson(now), 
+            "application/json", "RFID Scanner Scan Latency");
+    }
+    
+    // Admin: per-endpoint HTTP phase percentiles - slow server (first byte) vs bad link (connect / write)
+    private void showNetworkTimingDialog() {
+        NetworkTimingMetrics networkMetrics = NetworkTimingMetrics.getInstance();
+        TextView table = new TextView(this);
+        table.setTypeface(android.graphics.Typeface.MONOSPACE);
+        table.setTextSize(11);
+        int pad = (int) (16 * getResources().getDisplayMetrics().density);
+        table.setPadding(pad, pad, pad, 0);
+        table.setText(networkMetrics.toDisplayString());
+        
+        android.widget.ScrollView scroll = new android.widget.ScrollView(this);
+        android.widget.HorizontalScrollView wide = new android.widget.HorizontalScrollView(this);
+        wide.addView(table);
+        scroll.addView(wide);
+        
+        new AlertDialog.Builder(this)
+            .setTitle("Network Timing")
+            .setView(scroll)
+            .setPositiveButton("Export JSON", (dialog, which) -> {
+                long now = System.currentTimeMillis();
+                shareMetricsFile("network_timing_" + now + ".json", networkMetrics.toJson(now),
+                    "application/json", "RFID Scanner Network Timing");
+            })
+            .setNeutralButton("Reset", (dialog, which) -> {
+                networkMetrics.reset();
+                Toast.makeText(this, "Network histograms reset", Toast.LENGTH_SHORT).show();
+            })
+            .setNegativeButton("Close", null)
+            .show();
+    }
+    
+    // Admin: placements the server rejected during sync, moved out of the queue with its reason
+    private void showRejectedPlacementsDialog() {
+        syncManager.loadRejectedPlacements(REJECTED_PLACEMENTS_SHOWN, (total, recent) -> {
+            if (isFinishing()) {
+                return;
+            }
+            java.text.SimpleDateFormat timeFormat = new java.text.SimpleDateFormat("MM-dd HH:mm:ss", java.util.Locale.US);
+            StringBuilder sb = new StringBuilder();
+            if (total == 0) {
+                sb.append("No rejected placements\n");
+            } else if (total > recent.size()) {
+                sb.append("Newest ").append(recent.size()).append(" of ").append(total).append("\n\n");
+            }
+            for (DeadLetterPlacement p : recent) {
+                sb.append(timeFormat.format(new java.util.Date(p.getTimestamp())))
+                    .append("  ").append(p.getMasonId())
+                    .append("  ").append(p.getBrickNumber())
+                    .append('\n')
+                    .append("  ").append(p.getRejectReason())
+                    .append('\n');
+            }
+            
+            TextView text = new TextView(this);
+            text.setTypeface(android.graphics.Typeface.MONOSPACE);
+            text.setTextSize(11);
+            int pad = (int) (16 * getResources().getDisplayMetrics().density);
+            text.setPadding(pad, pad, pad, 0);
+            text.setTextIsSelectable(true);
+            text.setText(sb.toString());
+            
+            android.widget.ScrollView scroll = new android.widget.ScrollView(this);
+            scroll.addView(text);
+            
+            new AlertDialog.Builder(this)
+                .setTitle("Rejected Placements")
+                .setView(scroll)
+                .setNeutralButton("Clear", (dialog, which) -> {
+                    syncManager.clearRejectedPlacements();
+                    Toast.makeText(this, "Rejected placements cleared", Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("Close", null)
+                .show();
+        });
+    }
+    
+    // Admin: decode the hot-path event ring (nothing is formatted until now)
+    private void showScanEventLogDialog() {
+        TextView text = new TextView(this);
+        text.setTypeface(android.graphics.Typeface.MONOSPACE);
+        text.setTextSize(10);
+        int pad = (int) (16 * getResources().getDisplayMetrics().density);
+        text.setPadding(pad, pad, pad, 0);
+        text.setTextIsSelectable(true);
+        final String dump = eventLog.dump(SCAN_EVENT_DUMP_RECORDS, System.currentTimeMillis());
+        text.setText(dump.isEmpty() ? "No events recorded" : dump);
+        
+        android.widget.ScrollView scroll = new android.widget.ScrollView(this);
+        scroll.addView(text);
+        scroll.post(() -> scroll.fullScroll(View.FOCUS_DOWN)); // Newest events at the bottom
+        
+        final boolean verbose = eventLog.getLevel() == ScanEventLog.Level.VERBOSE;
+        new AlertDialog.Builder(this)
+            .setTitle("Scan Event Log (" + eventLog.getLevel() + ")")
+            .setView(scroll)
+            .setPositiveButton("Share", (dialog, which) -> shareMetricsFile(
+                "scan_events_" + System.currentTimeMillis() + ".txt", dump, "text/plain", "RFID Scanner Scan Events"))
+            .setNeutralButton(verbose ? "Verbose off" : "Verbose on", (dialog, which) -> {
+                // Verbose adds a record per read and per window candidate
+                eventLog.setLevel(verbose ? ScanEventLog.Level.DEBUG : ScanEventLog.Level.VERBOSE);
+                Toast.makeText(this, "Scan event level: " + eventLog.getLevel(), Toast.LENGTH_SHORT).show();
+            })
+            .setNegativeButton("Close", null)
+            .show();
+    }
+    
+    // Write an admin diagnostics file under Metrics/ and hand it to the share sheet
+    private void shareMetricsFile(String fileName, String content, String mimeType, String subject) {
+        File metricsDir = new File(getExternalFilesDir(null), "Metrics");
+        if (!metricsDir.exists() && !metricsDir.mkdirs()) {
+            Toast.makeText(this, "Failed to create metrics folder", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        File file = new File(metricsDir, fileName);
+        try (java.io.FileWriter writer = new java.io.FileWriter(file)) {
+            writer.write(content);
+        } catch (IOException e) {
+            Toast.makeText(this, "Failed to export: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            return;
+        }
+        
+        try {
+            Uri fileUri = FileProvider.getUriForFile(this, 
+                getApplicationContext().getPackageName() + ".provider", 
+                file);
+            
+            Intent shareIntent = new Intent(Intent.ACTION_SEND);
+            shareIntent.setType(mimeType);
+            shareIntent.putExtra(Intent.EXTRA_STREAM, fileUri);
+            shareIntent.putExtra(Intent.EXTRA_SUBJECT, subject);
+            shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            
+            startActivity(Intent.createChooser(shareIntent, "Share " + fileName));
+        } catch (Exception e) {
+            Toast.makeText(this, "Failed to share: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+    
     private void startScanning() {
         if (uhf.getConnectStatus() != ConnectionStatus.CONNECTED) {
             showConnectionAlert();
@@ -833,7 +1108,6 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private void proceedWithScanning() {
-        isScanning = true;
         isPulsing = false;
         btnStart.setEnabled(false);
         btnStart.setBackgroundResource(R.drawable.button_bg_disabled);
@@ -842,13 +1116,46 @@ public class MainActivity extends AppCompatActivity {
         tvSyncStatus.setText("Scanning...");
         tvSyncStatus.setTextColor(getResources().getColor(android.R.color.holo_blue_dark));
         
-        // Initialize new build session
-        currentBuildSessionId = UUID.randomUUID().toString();
-        currentEventSeq = 0;
-        android.util.Log.d("BUILD_SESSION", "Started new session: " + currentBuildSessionId);
+        // Initialize new build session on the pipeline thread (queued ahead of any reads from this session)
+        final String buildSessionId = UUID.randomUUID().toString();
+        final CaptureMode captureMode = MasonApp.getInstance().getCaptureMode();
+        final boolean adaptiveWindow = MasonApp.getInstance().isAdaptiveCaptureWindowEnabled();
+        final int powerLevel = currentPowerLevel;
+        final String sessionMasonId = masonId;
+        scanPipelineHandler.post(() -> {
+            long age = System.currentTimeMillis() - resumableLastActiveMs;
+            if (resumableSessionId != null && canResumeSession(sessionMasonId, age)) {
+                // Interrupted session (crash / recreation) - continue it rather than starting over
+                currentBuildSessionId = resumableSessionId;
+                currentEventSeq = resumableEventSeq;
+                android.util.Log.d("BUILD_SESSION", "Resuming session " + currentBuildSessionId + " at seq " + (currentEventSeq + 1));
+            } else {
+                if (resumableSessionId != null) {
+                    android.util.Log.d("BUILD_SESSION", String.format("Not resuming session %s (mason %s, idle %ds) - starting fresh",
+                        resumableSessionId, resumableMasonId, age / 1000));
+                }
+                currentBuildSessionId = buildSessionId;
+                currentEventSeq = 0;
+            }
+            resumableSessionId = null;
+            journalSessionStart(currentBuildSessionId, sessionMasonId);
+            sessionCaptureMode = captureMode;
+            sessionAdaptiveWindow = adaptiveWindow;
+            if (powerLevel != sessionPowerLevel) {
+                windowSizer.reset(); // Read rate learned at another power level no longer applies
+                sessionPowerLevel = powerLevel;
+            }
+            activeWindowMs = adaptiveWindow ? windowSizer.windowMs() : captureWindowMs;
+            slidingWindow.configure(activeWindowMs, SCAN_COOLDOWN_MS, slidingMinReads,
+                rssiAmbiguityThresholdDb, countAmbiguityThreshold);
+            slidingWindow.reset();
+            android.util.Log.d("BUILD_SESSION", "Started session: " + currentBuildSessionId + " (" + captureMode + " capture, "
+                + activeWindowMs + "ms window, " + (adaptiveWindow ? "adaptive" : "manual") + ")");
+        });
         
         // Apply power level and track it
         currentScanPowerLevel = currentPowerLevel;
+        isScanning = true;
         boolean powerSet = uhf.setPower(currentPowerLevel);
         if (!powerSet) {
             android.util.Log.w("SCAN", "Failed to set power to " + currentPowerLevel + " dBm");
@@ -880,6 +1187,12 @@ public class MainActivity extends AppCompatActivity {
         
         isScanning = false;
         isPulsing = false;
+        scanPipelineHandler.post(this::journalSessionEnd);
+        // Queued after any decision still in the pipeline, so the session's last placement goes out with it
+        scanPipelineHandler.post(syncManager::flush);
+        android.util.Log.d("SCAN", String.format("Read buffer: offered=%d dropped=%d overflows=%d highWater=%d/%d",
+            readBuffer.offeredCount(), readBuffer.droppedCount(), readBuffer.overflowCount(),
+            readBuffer.highWaterMark(), readBuffer.capacity()));
         btnStart.setEnabled(true);
         btnStart.setBackgroundResource(R.drawable.button_bg_green);
         btnStop.setEnabled(false);
@@ -910,162 +1223,150 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
+    // Drain reads published by the SDK callback into the capture window (scanPipelineHandler thread)
+    private void drainReads() {
+        readDrainScheduled.set(false);
+        drainStartNanos = SystemClock.elapsedRealtimeNanos();
+        readBuffer.drain(windowReadConsumer);
+    }
+    
+    private void onWindowRead(long[] epcWords, int offset, int nibbles, int rssi, long elapsedNanos) {
+        latencyMetrics.record(ScanLatencyMetrics.Stage.CALLBACK_TO_PIPELINE, elapsedNanos, drainStartNanos);
+        if (!isScanning) {
+            return;
+        }
+        
+        if (sessionCaptureMode == CaptureMode.SLIDING) {
+            // Re-evaluated on every read - decides as soon as one EPC dominates the last activeWindowMs
+            if (slidingWindow.addRead(epcWords, offset, nibbles, rssi, elapsedNanos)) {
+                eventLog.logEpc(ScanEventLog.Event.SLIDING_WINNER, slidingWindow.winnerEpc(), slidingWindow.winnerCount(), 
+                    slidingWindow.winnerAvgRssi(), slidingWindow.winnerPeakRssi(), slidingWindow.winnerSpanMs());
+                // Sliding span is fixed per session; the rate still trains the next session's window
+                windowSizer.onWindowDecided(slidingWindow.winnerCount(), slidingWindow.winnerSpanMs());
+                markDecisionWindow(elapsedNanos - slidingWindow.winnerSpanMs() * 1_000_000L, elapsedNanos);
+                acceptWinner(slidingWindow.winnerEpc(), slidingWindow.winnerAvgRssi(), 
+                    slidingWindow.winnerPeakRssi(), slidingWindow.winnerCount(), slidingWindow.winnerSpanMs());
+            }
+            return;
+        }
+        
+        // Start capture window ONLY if not already capturing
+        // Accumulates all reads in one 350ms window for best-candidate selection
+        if (!isCapturing) {
+            startCaptureWindow(elapsedNanos);
+        }
+        captureWindow.addRead(epcWords, offset, nibbles, rssi);
+        
+        // activeWindowMs is only the upper bound - close as soon as waiting can't change the outcome
+        if (earlyDecisionEnabled && captureWindow.canDecideEarly(rssiAmbiguityThresholdDb, countAmbiguityThreshold)) {
+            scanPipelineHandler.removeCallbacks(captureWindowTimeout);
+            closeCaptureWindow(elapsedNanos, true);
+        }
+    }
+    
     // Start capture window for best-candidate selection
-    private void startCaptureWindow() {
+    private void startCaptureWindow(long firstReadNanos) {
         isCapturing = true;
-        captureStartTime = System.currentTimeMillis();
+        captureStartNanos = firstReadNanos;
+        final int windowId = ++captureWindowId;
+        activeWindowMs = sessionAdaptiveWindow ? windowSizer.windowMs() : captureWindowMs;
         
-        mainHandler.post(() -> {
-            tvSyncStatus.setText("Capturing...");
-            tvSyncStatus.setTextColor(getResources().getColor(android.R.color.holo_blue_dark));
-        });
+        postFeedback(ScanFeedback.CAPTURING);
         
-        // Schedule window timeout using field-tunable parameter
-        captureWindowTimeout = () -> processCaptureWindow();
-        captureWindowHandler.postDelayed(captureWindowTimeout, captureWindowMs);
+        // Schedule window timeout - sized from the observed read rate, or the manual captureWindowMs
+        captureWindowTimeout = () -> processCaptureWindow(windowId);
+        scanPipelineHandler.postDelayed(captureWindowTimeout, activeWindowMs);
         
-        android.util.Log.d("CAPTURE_WINDOW", "Started capture window (" + captureWindowMs + "ms)");
+        eventLog.log(ScanEventLog.Event.WINDOW_STARTED, activeWindowMs, sessionAdaptiveWindow ? 1 : 0, 
+            Double.doubleToRawLongBits(windowSizer.readsPerSecond()), 0);
     }
     
-    // Process capture window and select best candidate
-    private void processCaptureWindow() {
+    // Window timeout - the hard upper limit on window length
+    private void processCaptureWindow(int windowId) {
+        // Pick up reads that arrived just before the timeout, then close the window
+        drainReads();
+        if (!isCapturing || windowId != captureWindowId) {
+            return; // Closed early by one of those reads
+        }
+        closeCaptureWindow(SystemClock.elapsedRealtimeNanos(), false);
+    }
+    
+    // Close the capture window and select best candidate
+    private void closeCaptureWindow(long closeNanos, boolean early) {
         isCapturing = false;
+        final long windowMs = (closeNanos - captureStartNanos) / 1_000_000L;
+        markDecisionWindow(captureStartNanos, closeNanos);
+        eventLog.log(ScanEventLog.Event.WINDOW_CLOSED, early ? 1 : 0, windowMs, activeWindowMs, captureWindow.totalReads());
         
-        synchronized (captureWindow) {
-            if (captureWindow.isEmpty()) {
-                android.util.Log.d("CAPTURE_WINDOW", "Window empty - no tags in range");
-                mainHandler.post(() -> {
-                    tvSyncStatus.setText("Scanning...");
-                    tvSyncStatus.setTextColor(getResources().getColor(android.R.color.holo_blue_dark));
-                });
-                return;
-            }
-            
-            // Calculate statistics for each EPC
-            Map<String, CandidateStats> candidates = new HashMap<>();
-            for (Map.Entry<String, List<TagRead>> entry : captureWindow.entrySet()) {
-                String epc = entry.getKey();
-                List<TagRead> reads = entry.getValue();
-                
-                int readCount = reads.size();
-                int rssiSum = 0;
-                int rssiMax = Integer.MIN_VALUE;
-                
-                for (TagRead read : reads) {
-                    rssiSum += read.rssi;
-                    if (read.rssi > rssiMax) {
-                        rssiMax = read.rssi;
-                    }
-                }
-                
-                int rssiAvg = rssiSum / readCount;
-                candidates.put(epc, new CandidateStats(epc, readCount, rssiAvg, rssiMax));
-                
-                android.util.Log.d("CAPTURE_WINDOW", String.format("Candidate: %s | Count=%d | AvgRSSI=%d | MaxRSSI=%d", 
-                    epc, readCount, rssiAvg, rssiMax));
+        if (captureWindow.isEmpty()) {
+            eventLog.log(ScanEventLog.Event.WINDOW_EMPTY);
+            postFeedback(ScanFeedback.READY);
+            return;
+        }
+        
+        // Log statistics for each EPC (accumulated per read in the window slots)
+        if (eventLog.isEnabled(ScanEventLog.Event.WINDOW_CANDIDATE)) {
+            for (int i = 0; i < captureWindow.size(); i++) {
+                eventLog.logEpc(ScanEventLog.Event.WINDOW_CANDIDATE, captureWindow.epcAt(i), 
+                    captureWindow.countAt(i), captureWindow.avgRssiAt(i), captureWindow.peakRssiAt(i), 0);
             }
+        }
+        
+        // Select best candidate and check for ambiguity using field-tunable thresholds
+        CaptureWindow.Outcome outcome = captureWindow.evaluate(rssiAmbiguityThresholdDb, countAmbiguityThreshold);
+        
+        if (outcome == CaptureWindow.Outcome.AMBIGUOUS) {
+            eventLog.logEpc(ScanEventLog.Event.WINDOW_AMBIGUOUS, captureWindow.winnerEpc(), captureWindow.runnerUpEpc(),
+                captureWindow.winnerCount(), captureWindow.winnerAvgRssi(), 
+                captureWindow.runnerUpCount(), captureWindow.runnerUpAvgRssi(),
+                rssiAmbiguityThresholdDb, countAmbiguityThreshold, 0, 0);
             
-            // Select best candidate
-            CandidateStats winner = null;
-            CandidateStats runnerUp = null;
-            
-            for (CandidateStats candidate : candidates.values()) {
-                if (winner == null || candidate.isBetterThan(winner)) {
-                    runnerUp = winner;
-                    winner = candidate;
-                } else if (runnerUp == null || candidate.isBetterThan(runnerUp)) {
-                    runnerUp = candidate;
-                }
-            }
+            postFeedback(ScanFeedback.AMBIGUOUS);
             
-            // Check for ambiguity using field-tunable thresholds
-            if (winner != null && runnerUp != null) {
-                boolean isAmbiguous = winner.isAmbiguousWith(runnerUp, rssiAmbiguityThresholdDb, countAmbiguityThreshold);
-                
-                if (isAmbiguous) {
-                    android.util.Log.w("CAPTURE_WINDOW", String.format("✗ AMBIGUOUS - Winner: %s (count=%d, rssi=%d) vs Runner-up: %s (count=%d, rssi=%d) | Thresholds: %ddB/%dcount", 
-                        winner.epc, winner.count, winner.avgRssi, runnerUp.epc, runnerUp.count, runnerUp.avgRssi, rssiAmbiguityThresholdDb, countAmbiguityThreshold));
-                    
-                    mainHandler.post(() -> {
-                        tvSyncStatus.setText("Ambiguous - Rescan");
-                        tvSyncStatus.setTextColor(getResources().getColor(android.R.color.holo_orange_dark));
-                    });
-                    
-                    captureWindow.clear();
-                    return;
-                }
-            }
-            
-            // Winner is clear
-            if (winner != null) {
-                android.util.Log.d("CAPTURE_WINDOW", String.format("✓ WINNER - EPC: %s | Count=%d | AvgRSSI=%d | MaxRSSI=%d", 
-                    winner.epc, winner.count, winner.avgRssi, winner.peakRssi));
-                
-                // Check cooldown
-                long currentTime = System.currentTimeMillis();
-                synchronized (tagCooldowns) {
-                    Long lastScanTime = tagCooldowns.get(winner.epc);
-                    if (lastScanTime != null && (currentTime - lastScanTime < SCAN_COOLDOWN_MS)) {
-                        android.util.Log.d("CAPTURE_WINDOW", "⏸ COOLDOWN - EPC: " + winner.epc);
-                        mainHandler.post(() -> {
-                            tvSyncStatus.setText("Cooldown - Ready");
-                            tvSyncStatus.setTextColor(getResources().getColor(android.R.color.holo_orange_dark));
-                        });
-                        captureWindow.clear();
-                        return;
-                    }
-                    tagCooldowns.put(winner.epc, currentTime);
-                }
-                
-                // Session duplicate check removed - GPS-based duplicate detection in onBrickScanned handles this
-                // This allows scanning the same physical brick multiple times (different placements in wall)
-                
-                // Process winner
-                final CandidateStats finalWinner = winner;
-                onBrickScanned(finalWinner.epc, finalWinner.avgRssi, finalWinner.peakRssi, finalWinner.count);
-            }
+            captureWindow.reset();
+            return;
+        }
+        
+        // Winner is clear
+        if (outcome == CaptureWindow.Outcome.WINNER) {
+            EpcKey winnerEpc = captureWindow.winnerEpc();
+            eventLog.logEpc(ScanEventLog.Event.WINDOW_WINNER, winnerEpc, 
+                captureWindow.winnerCount(), captureWindow.winnerAvgRssi(), captureWindow.winnerPeakRssi(), 0);
             
-            captureWindow.clear();
+            windowSizer.onWindowDecided(captureWindow.winnerCount(), windowMs);
+            acceptWinner(winnerEpc, captureWindow.winnerAvgRssi(), captureWindow.winnerPeakRssi(), captureWindow.winnerCount(), windowMs);
         }
+        
+        captureWindow.reset();
     }
     
-    // Helper class for candidate statistics
-    private static class CandidateStats {
-        String epc;
-        int count;
-        int avgRssi;
-        int peakRssi;
-        
-        CandidateStats(String epc, int count, int avgRssi, int peakRssi) {
-            this.epc = epc;
-            this.count = count;
-            this.avgRssi = avgRssi;
-            this.peakRssi = peakRssi;
+    // Latency stamps of the window the next decision comes from (SDK callback clock)
+    private void markDecisionWindow(long openNanos, long closeNanos) {
+        decisionOpenNanos = openNanos;
+        decisionCloseNanos = closeNanos;
+        latencyMetrics.record(ScanLatencyMetrics.Stage.WINDOW, openNanos, closeNanos);
+    }
+    
+    // Common tail of both capture modes: per-tag cooldown, then the placement itself
+    private void acceptWinner(EpcKey winnerEpc, int avgRssi, int peakRssi, int readCount, long windowMs) {
+        // Check cooldown (entries drop out of the map once SCAN_COOLDOWN_MS has passed)
+        long currentTime = SystemClock.elapsedRealtime();
+        if (tagCooldowns.find(winnerEpc, currentTime) != ExpiringEpcMap.NOT_FOUND) {
+            eventLog.logEpc(ScanEventLog.Event.COOLDOWN, winnerEpc, 0, 0, 0, 0);
+            postFeedback(ScanFeedback.COOLDOWN);
+            return;
         }
+        tagCooldowns.put(winnerEpc, currentTime);
         
-        boolean isBetterThan(CandidateStats other) {
-            // Primary: higher count
-            if (this.count != other.count) {
-                return this.count > other.count;
-            }
-            // Tie-break: higher avg RSSI
-            return this.avgRssi > other.avgRssi;
-        }
+        // Session duplicate check removed - GPS-based duplicate detection in onBrickScanned handles this
+        // This allows scanning the same physical brick multiple times (different placements in wall)
         
-        boolean isAmbiguousWith(CandidateStats other, int rssiThresholdDb, int countThreshold) {
-            // Check if counts are within threshold
-            int countDiff = Math.abs(this.count - other.count);
-            if (countDiff <= countThreshold) {
-                // Counts similar, check RSSI
-                int rssiDiff = Math.abs(this.avgRssi - other.avgRssi);
-                return rssiDiff <= rssiThresholdDb;
-            }
-            return false;
-        }
+        // Process winner
+        onBrickScanned(winnerEpc, avgRssi, peakRssi, readCount, windowMs);
     }
     
-    
-    private void onBrickScanned(String epc, int avgRssi, int peakRssi, int readCount) {
+    // windowMs: how long the capture window actually ran before this decision
+    private void onBrickScanned(EpcKey epc, int avgRssi, int peakRssi, int readCount, long windowMs) {
         // Capture the scan timestamp immediately
         final long scanTimestamp = System.currentTimeMillis();
         
@@ -1079,28 +1380,22 @@ public class MainActivity extends AppCompatActivity {
         double altitude = 0.0;
         float accuracy = 999.0f; // Sentinel for missing GPS
         boolean gpsAvailable = false;
-        String decisionStatus = "ACCEPTED";
-        
-        if (lastKnownLocation != null) {
-            latitude = lastKnownLocation.getLatitude();
-            longitude = lastKnownLocation.getLongitude();
-            altitude = lastKnownLocation.getAltitude();
-            accuracy = lastLocationAccuracy;
+        DecisionStatus decisionStatus = DecisionStatus.ACCEPTED;
+        
+        Location location = lastKnownLocation; // Single read - the UI thread may replace it mid-scan
+        if (location != null) {
+            latitude = location.getLatitude();
+            longitude = location.getLongitude();
+            altitude = location.getAltitude();
+            accuracy = location.getAccuracy();
             gpsAvailable = true;
         } else {
-            decisionStatus = "ACCEPTED_NO_GPS";
-            android.util.Log.w("BRICK_SCANNED", "GPS missing - using sentinel values (0.0, 0.0, 999.0)");
+            decisionStatus = DecisionStatus.ACCEPTED_NO_GPS;
+            eventLog.log(ScanEventLog.Event.BRICK_GPS_MISSING);
         }
         
-        final double finalLatitude = latitude;
-        final double finalLongitude = longitude;
-        final double finalAltitude = altitude;
-        final float finalAccuracy = accuracy;
-        final boolean finalGpsAvailable = gpsAvailable;
-        final String finalDecisionStatus = decisionStatus;
-        
-        android.util.Log.d("BRICK_SCANNED", String.format("Session: %s | Seq: %d | EPC: %s | RSSI: %d/%d | Reads: %d | GPS: %s | Power: %d dBm", 
-            currentBuildSessionId, eventSeq, epc, avgRssi, peakRssi, readCount, gpsAvailable ? "Yes" : "NO", currentScanPowerLevel));
+        eventLog.logEpc(ScanEventLog.Event.BRICK_SCANNED, epc, currentBuildSessionId, eventSeq, avgRssi, peakRssi, 
+            readCount, windowMs, gpsAvailable ? 1 : 0, currentScanPowerLevel, 0);
         
         // Adjust duplicate distance threshold based on GPS accuracy
         // Use 2x the GPS accuracy or minimum 10 meters, whichever is larger
@@ -1108,27 +1403,87 @@ public class MainActivity extends AppCompatActivity {
         
         // Check for duplicate placement (same RFID + within 5 minutes + same location)
         // Skip GPS-based duplicate check if GPS not available
-        synchronized (recentPlacements) {
-            PlacementRecord recent = recentPlacements.get(epc);
-            if (recent != null && gpsAvailable) {
-                long timeDiff = scanTimestamp - recent.timestamp;
-                double distance = calculateDistance(recent.latitude, recent.longitude, latitude, longitude);
-                
-                if (timeDiff < DUPLICATE_TIME_THRESHOLD && distance < adjustedThreshold) {
-                    // Duplicate detected - discard
-                    android.util.Log.d("DUPLICATE_CHECK", String.format("✗ DUPLICATE REJECTED - EPC: %s | Time: %ds | Distance: %.1fm | Threshold: %.1fm", 
-                        epc, timeDiff/1000, distance, adjustedThreshold));
-                    return;
-                }
-            }
+        // Entries older than DUPLICATE_TIME_THRESHOLD have already expired out of the map
+        int recent = recentPlacements.find(epc, scanTimestamp);
+        if (recent != ExpiringEpcMap.NOT_FOUND && gpsAvailable) {
+            long timeDiff = scanTimestamp - recentPlacements.stampAt(recent);
+            double distance = calculateDistance(recentPlacements.payloadAt(recent, RECENT_LATITUDE), 
+                recentPlacements.payloadAt(recent, RECENT_LONGITUDE), latitude, longitude);
             
-            // Not a duplicate - store this placement
-            recentPlacements.put(epc, new PlacementRecord(scanTimestamp, latitude, longitude, altitude, accuracy));
-            android.util.Log.d("DUPLICATE_CHECK", String.format("✓ NEW PLACEMENT - EPC: %s | GPS: %.6f, %.6f ±%.1fm", 
-                epc, latitude, longitude, accuracy));
+            if (distance < adjustedThreshold) {
+                // Duplicate detected - discard
+                eventLog.logEpc(ScanEventLog.Event.DUPLICATE_REJECTED, epc, timeDiff / 1000, 
+                    Double.doubleToRawLongBits(distance), Double.doubleToRawLongBits(adjustedThreshold), 0);
+                return;
+            }
+        }
+        
+        // Not a duplicate - store this placement
+        int entry = recentPlacements.put(epc, scanTimestamp);
+        recentPlacements.setPayload(entry, RECENT_LATITUDE, latitude);
+        recentPlacements.setPayload(entry, RECENT_LONGITUDE, longitude);
+        eventLog.logEpc(ScanEventLog.Event.NEW_PLACEMENT, epc, Double.doubleToRawLongBits(latitude), 
+            Double.doubleToRawLongBits(longitude), Double.doubleToRawLongBits(accuracy), 0);
+        
+        if (isAdmin) {
+            // Log full details to console for debugging
+            android.util.Log.d("ADMIN_RFID", String.format("Scanned: %s | Seq: %d | Count: %d | Time: %d | RSSI: %d/%d | Reads: %d | GPS: %s | Power: %d dBm | Status: %s", 
+                epc, eventSeq, placementCounter, scanTimestamp, avgRssi, peakRssi, readCount, 
+                gpsAvailable ? String.format("%.6f, %.6f ±%.1fm", latitude, longitude, accuracy) : "MISSING",
+                currentScanPowerLevel, decisionStatus));
+        }
+        
+        // Save to local cache with session, sequence, RSSI data, and decision status
+        // Ensure masonId is loaded - critical for backend sync
+        if (masonId == null || masonId.isEmpty()) {
+            masonId = MasonApp.getInstance().getMasonId();
+            android.util.Log.e("SCAN_ERROR", "masonId was null during scan - reloaded: " + masonId);
         }
         
-        mainHandler.post(() -> {
+        // First and only String form of the EPC - created when the placement is persisted
+        String brickNumber = epc.toHexString();
+        BrickPlacement placement = new BrickPlacement(masonId, brickNumber, scanTimestamp, latitude, longitude, altitude, accuracy,
+            currentBuildSessionId, eventSeq, avgRssi, peakRssi, readCount, decisionStatus);
+        placement.setPowerLevel(currentScanPowerLevel); // Track power level used
+        placement.setScanType(currentScanMode == ScanMode.PALLET ? ScanType.PALLET : ScanType.PLACEMENT); // Track scan mode
+        placement.setCaptureWindowMs((int) windowMs); // How long the window ran - shorter than the limit when decided early
+        
+        android.util.Log.d("PLACEMENT_DEBUG", String.format("Saving %s scan: masonId=%s, EPC=%s, session=%s, seq=%d", 
+            placement.getScanType().wireName, masonId, brickNumber, currentBuildSessionId, eventSeq));
+        
+        // Journal before handing off, so a crash from here on can't let this brick be accepted again
+        journalPlacement(eventSeq, epc, scanTimestamp, latitude, longitude);
+        
+        final long firstReadNanos = decisionOpenNanos;
+        final long decidedNanos = SystemClock.elapsedRealtimeNanos();
+        latencyMetrics.record(ScanLatencyMetrics.Stage.DECISION, decisionCloseNanos, decidedNanos);
+        
+        // Confirm only once the row is durable - the write-behind group-commits bursts of placements
+        syncManager.addPlacement(placement, new SyncManager.PlacementCallback() {
+            @Override
+            public void onPlacementStored(BrickPlacement stored) {
+                postFeedback(ScanFeedback.accepted(scanTimestamp, firstReadNanos, decidedNanos));
+            }
+            
+            @Override
+            public void onPlacementFailed(BrickPlacement failed, Exception error) {
+                android.util.Log.e("PLACEMENT_DEBUG", "Failed to save placement seq " + failed.getEventSeq(), error);
+                postFeedback(ScanFeedback.SAVE_FAILED);
+            }
+        });
+        
+        // Auto-sync happens automatically after the commit when threshold is reached
+        // Counter will be updated by server response after sync
+        // Don't increment locally - server is authoritative
+    }
+    
+    private void postFeedback(ScanFeedback feedback) {
+        mainHandler.post(() -> applyFeedback(feedback));
+    }
+    
+    // UI thread only - everything here must stay cheap, the decision has already been made
+    private void applyFeedback(ScanFeedback feedback) {
+        if (feedback.accepted) {
             // Play sound
             toneGenerator.startTone(ToneGenerator.TONE_CDMA_PIP, 150);
             
@@ -1141,52 +1496,97 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
             
-            // Counter will be updated by server response after sync
-            // Don't increment locally - server is authoritative
-            
             // Format timestamp for display — 12-hour time first, then date
             java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("h:mm:ss a  MM/dd/yyyy", java.util.Locale.US);
-            String formattedTime = sdf.format(new java.util.Date(scanTimestamp));
+            tvLastTimestamp.setText("Last Scan: " + sdf.format(new java.util.Date(feedback.scanTimestamp)));
             
-            // Display last brick with full info in admin mode
-            tvLastTimestamp.setText("Last Scan: " + formattedTime);
-
-            if (isAdmin) {
-                // Log full details to console for debugging
-                String gpsText = finalGpsAvailable ? 
-                    String.format("%.6f, %.6f ±%.1fm", finalLatitude, finalLongitude, finalAccuracy) : 
-                    "NO GPS";
-                android.util.Log.d("ADMIN_RFID", String.format("Scanned: %s | Seq: %d | Count: %d | Time: %d | RSSI: %d/%d | Reads: %d | GPS: %s | Power: %d dBm | Status: %s", 
-                    epc, eventSeq, placementCounter, scanTimestamp, avgRssi, peakRssi, readCount, 
-                    finalGpsAvailable ? String.format("%.6f, %.6f ±%.1fm", finalLatitude, finalLongitude, finalAccuracy) : "MISSING",
-                    currentScanPowerLevel, finalDecisionStatus));
-            }
+            long shownNanos = SystemClock.elapsedRealtimeNanos();
+            latencyMetrics.record(ScanLatencyMetrics.Stage.FEEDBACK, feedback.decidedNanos, shownNanos);
+            latencyMetrics.record(ScanLatencyMetrics.Stage.READ_TO_FEEDBACK, feedback.firstReadNanos, shownNanos);
             
-            // Save to local cache with session, sequence, RSSI data, and decision status
-            // Ensure masonId is loaded - critical for backend sync
-            if (masonId == null || masonId.isEmpty()) {
-                masonId = MasonApp.getInstance().getMasonId();
-                android.util.Log.e("SCAN_ERROR", "masonId was null during scan - reloaded: " + masonId);
+            // Update status - continue scanning
+            if (!isScanning) {
+                return;
             }
+        }
+        tvSyncStatus.setText(feedback.statusText);
+        tvSyncStatus.setTextColor(getResources().getColor(feedback.colorRes));
+    }
+    
+    // --- Scan session journal (scan pipeline thread) ---
+    
+    private void restoreScanJournal(File journalFile) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            scanJournal = new ScanSessionJournal(journalFile, DUPLICATE_TIME_THRESHOLD);
+            ScanSessionJournal.Snapshot snapshot = scanJournal.restore(System.currentTimeMillis());
             
-            BrickPlacement placement = new BrickPlacement(masonId, epc, scanTimestamp, finalLatitude, finalLongitude, finalAltitude, finalAccuracy,
-                currentBuildSessionId, eventSeq, avgRssi, peakRssi, readCount, finalDecisionStatus);
-            placement.setPowerLevel(currentScanPowerLevel); // Track power level used
-            placement.setScanType(currentScanMode == ScanMode.PALLET ? "pallet" : "placement"); // Track scan mode
-            
-            android.util.Log.d("PLACEMENT_DEBUG", String.format("Saving %s scan: masonId=%s, EPC=%s, session=%s, seq=%d", 
-                placement.getScanType(), masonId, epc, currentBuildSessionId, eventSeq));
-            
-            syncManager.addPlacement(placement);
-            
-            // Auto-sync happens automatically in addPlacement() when threshold is reached
-            
-            // Update status - continue scanning
-            if (isScanning) {
-                tvSyncStatus.setText("Scanning...");
-                tvSyncStatus.setTextColor(getResources().getColor(android.R.color.holo_blue_dark));
+            long now = SystemClock.elapsedRealtime();
+            for (int i = 0; i < snapshot.placementCount; i++) {
+                int entry = recentPlacements.put(snapshot.epcs[i], snapshot.scanTimestamps[i]);
+                recentPlacements.setPayload(entry, RECENT_LATITUDE, snapshot.latitudes[i]);
+                recentPlacements.setPayload(entry, RECENT_LONGITUDE, snapshot.longitudes[i]);
+                // Cooldown stamps are elapsed-realtime - only meaningful if still inside the window on this boot
+                long elapsed = snapshot.elapsedRealtimes[i];
+                if (elapsed <= now && now - elapsed < SCAN_COOLDOWN_MS) {
+                    tagCooldowns.put(snapshot.epcs[i], elapsed);
+                }
             }
-        });
+            resumableSessionId = snapshot.openSessionId;
+            resumableEventSeq = snapshot.lastEventSeq;
+            resumableMasonId = snapshot.openSessionMasonId;
+            resumableLastActiveMs = snapshot.openSessionLastActiveMs;
+            
+            android.util.Log.d("SCAN_JOURNAL", String.format("Restored in %.1fms: %d recent placements, open session %s (seq %d)", 
+                (SystemClock.elapsedRealtimeNanos() - start) / 1e6, snapshot.placementCount, 
+                snapshot.openSessionId, snapshot.lastEventSeq));
+        } catch (IOException e) {
+            android.util.Log.e("SCAN_JOURNAL", "Journal unavailable - dedupe state will not survive a restart", e);
+            scanJournal = null;
+        }
+    }
+    
+    // The restored session is only continued by the mason who started it, and only if it went idle recently
+    private boolean canResumeSession(String sessionMasonId, long idleMs) {
+        return resumableMasonId != null && resumableMasonId.equals(sessionMasonId)
+            && idleMs >= 0 && idleMs <= SESSION_RESUME_MAX_AGE_MS;
+    }
+    
+    private void journalSessionStart(String sessionId, String sessionMasonId) {
+        if (scanJournal == null) return;
+        try {
+            scanJournal.startSession(sessionId, sessionMasonId, System.currentTimeMillis());
+        } catch (IOException e) {
+            android.util.Log.e("SCAN_JOURNAL", "Failed to journal session start", e);
+        }
+    }
+    
+    private void journalPlacement(int eventSeq, EpcKey epc, long scanTimestamp, double latitude, double longitude) {
+        if (scanJournal == null) return;
+        try {
+            scanJournal.appendPlacement(eventSeq, epc, scanTimestamp, SystemClock.elapsedRealtime(), latitude, longitude);
+        } catch (IOException e) {
+            android.util.Log.e("SCAN_JOURNAL", "Failed to journal placement " + eventSeq, e);
+        }
+    }
+    
+    private void journalSessionEnd() {
+        if (scanJournal == null) return;
+        try {
+            scanJournal.endSession(System.currentTimeMillis());
+        } catch (IOException e) {
+            android.util.Log.e("SCAN_JOURNAL", "Failed to journal session end", e);
+        }
+    }
+    
+    private void closeScanJournal() {
+        if (scanJournal == null) return;
+        try {
+            scanJournal.close();
+        } catch (IOException e) {
+            android.util.Log.e("SCAN_JOURNAL", "Failed to close journal", e);
+        }
+        scanJournal = null;
     }
     
     private void updateCounterDisplay() {
@@ -1622,7 +2022,17 @@ public class MainActivity extends AppCompatActivity {
         if (networkMonitor != null) {
             networkMonitor.stopMonitoring();
         }
-        if (syncManager != null) {
+        // Queued reads, decisions and a stopScanning() flush still run; only the open window's
+        // timeout is dropped. The journal closes and the write-behind stops behind them, on the
+        // pipeline thread, so a decision already journaled also reaches the placements table.
+        if (scanPipelineThread != null) {
+            scanPipelineHandler.post(() -> scanPipelineHandler.removeCallbacks(captureWindowTimeout));
+            scanPipelineHandler.post(this::closeScanJournal);
+            if (syncManager != null) {
+                scanPipelineHandler.post(syncManager::shutdown);
+            }
+            scanPipelineThread.quitSafely();
+        } else if (syncManager != null) {
             syncManager.shutdown();
         }
         // Stop battery monitoring
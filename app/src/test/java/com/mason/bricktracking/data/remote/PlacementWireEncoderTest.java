@@ -0,0 +1,104 @@
+package com.mason.bricktracking.data.remote;
+
+import com.mason.bricktracking.data.model.BrickPlacement;
+import com.mason.bricktracking.data.model.DecisionStatus;
+import com.mason.bricktracking.data.model.ScanType;
+import com.mason.bricktracking.data.model.SessionRange;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PlacementWireEncoderTest {
+
+    /**
+     * Encoding of {@link #goldenBatch()}. backend/test/placementWire.test.js decodes the same
+     * bytes, so a layout change has to update both sides together.
+     */
+    static final String GOLDEN_V3 =
+            "4d425003084d41534f4e5f37030204732d3104732d3231e28011700000020a1b2c3d4e1050414c4c45"
+            + "542d3707abc080a0abfef962b817b817809fa28403c801c7a0a28403bfade3c105c70188afe3c105be"
+            + "100ac710f404a006000101000202036d8504775f4f77180602343400000203000100d804f403000201"
+            + "0002020504";
+
+    static List<BrickPlacement> goldenBatch() {
+        BrickPlacement packed = new BrickPlacement("MASON_7", "E28011700000020A1B2C3D4E", 1700000000000L,
+                40.7128, -74.006, 10.55, 3.14, "s-1", 1, -55, -48, 12, DecisionStatus.ACCEPTED);
+        packed.setPowerLevel(26);
+        packed.setCaptureWindowMs(300);
+
+        // Not hex - goes out as raw UTF-8. rssiAvg is an average over RssiParser.INVALID reads,
+        // outside a signed byte, and goes out unclamped
+        BrickPlacement pallet = new BrickPlacement("MASON_7", "PALLET-7", 1700000001500L,
+                40.71281, -74.00601, 10.6, 4.0, "s-1", 2, -259, -40, 3, DecisionStatus.AMBIGUOUS);
+        pallet.setPowerLevel(26);
+        pallet.setScanType(ScanType.PALLET);
+        pallet.setCaptureWindowMs(250);
+
+        // Odd digit count and no session
+        BrickPlacement legacy = new BrickPlacement("MASON_7", "ABC", 1700000003000L,
+                0, 0, 0, 0, null, 0, -60, -60, 1, DecisionStatus.REJECTED_NO_GPS);
+        return Arrays.asList(packed, pallet, legacy);
+    }
+
+    static List<SessionRange> goldenRanges() {
+        // s-2 has no rows left in the batch but still needs a dictionary entry
+        return Arrays.asList(new SessionRange("s-1", 0, 2), new SessionRange("s-2", 5, 9));
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void encodesGoldenBatch() {
+        byte[] encoded = new PlacementWireEncoder().encode("MASON_7", goldenBatch(), goldenRanges());
+        assertEquals(GOLDEN_V3, hex(encoded));
+    }
+
+    @Test
+    public void encoderIsReusable() {
+        PlacementWireEncoder encoder = new PlacementWireEncoder();
+        byte[] first = encoder.encode("MASON_7", goldenBatch(), goldenRanges());
+        encoder.encode("MASON_9", bigBatch(2000), Collections.<SessionRange>emptyList());
+        assertArrayEquals(first, encoder.encode("MASON_7", goldenBatch(), goldenRanges()));
+    }
+
+    @Test
+    public void emptyBatchIsHeaderAndEmptySections() {
+        byte[] encoded = new PlacementWireEncoder().encode(null, Collections.<BrickPlacement>emptyList(),
+                Collections.<SessionRange>emptyList());
+        // magic + version, null masonId, 0 rows, 0 sessions, 0 ranges
+        assertEquals("4d42500300000000", hex(encoded));
+    }
+
+    @Test
+    public void growsPastInitialBuffer() {
+        byte[] encoded = new PlacementWireEncoder().encode("MASON_9", bigBatch(2000),
+                Collections.singletonList(new SessionRange("big", 0, 2000)));
+        // Row count right after the masonId: varint 2000 = d0 0f
+        assertEquals("4d425003084d41534f4e5f39d00f", hex(Arrays.copyOf(encoded, 14)));
+        // The range section closes the payload: 1 range, session ref 1, afterSeq 0, lastSeq - afterSeq 2000
+        assertEquals("0101" + "00" + "d00f", hex(Arrays.copyOfRange(encoded, encoded.length - 5, encoded.length)));
+    }
+
+    private static List<BrickPlacement> bigBatch(int rows) {
+        List<BrickPlacement> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new BrickPlacement("MASON_9", String.format("E2801170%016X", i),
+                    1700000000000L + i * 700L, 40.7 + i * 1e-6, -74.0, 10, 3, "big", i + 1, -50, -45, 8,
+                    DecisionStatus.ACCEPTED));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,99 @@
+package com.mason.bricktracking.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long micros = 0; micros < 16; micros++) {
+            assertEquals(micros, LatencyHistogram.midpointOf(LatencyHistogram.bucketOf(micros)));
+        }
+    }
+
+    @Test
+    public void bucketsAreMonotonicAndWithinRelativeError() {
+        int previous = -1;
+        for (long micros = 16; micros < (1L << 36); micros += Math.max(1, micros / 97)) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(bucket >= previous);
+            assertTrue(bucket < LatencyHistogram.BUCKET_COUNT);
+            previous = bucket;
+
+            long midpoint = LatencyHistogram.midpointOf(bucket);
+            assertTrue(micros + " -> " + midpoint, Math.abs(midpoint - micros) <= micros / 8);
+        }
+    }
+
+    @Test
+    public void hugeValuesLandInLastBucket() {
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(1L << 40));
+    }
+
+    @Test
+    public void percentilesFollowRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordNanos(i * 1000L); // 1..1000 us
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(1000, histogram.maxMicros());
+        assertEquals(500, histogram.meanMicros());
+
+        long p50 = histogram.percentileMicros(50);
+        long p99 = histogram.percentileMicros(99);
+        assertTrue("p50 " + p50, Math.abs(p50 - 500) <= 500 / 8);
+        assertTrue("p99 " + p99, Math.abs(p99 - 990) <= 990 / 8);
+        assertTrue(histogram.percentileMicros(100) <= histogram.maxMicros());
+    }
+
+    @Test
+    public void percentileIsCappedAtMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(970_000L); // Bucket [960, 1024) has midpoint 992
+        assertEquals(970, histogram.percentileMicros(50));
+    }
+
+    @Test
+    public void emptyAndNegativeRecordNothing() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-5);
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentileMicros(99));
+        assertEquals(0, histogram.meanMicros());
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(5_000_000L);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.maxMicros());
+        assertEquals(0, histogram.percentileMicros(50));
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.recordNanos((i % 1000 + offset) * 1000L);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200_000, histogram.count());
+        assertEquals(1002, histogram.maxMicros());
+    }
+}
@@ -0,0 +1,70 @@
+package com.mason.bricktracking.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveWindowSizerTest {
+
+    @Test
+    public void usesInitialWindowUntilFirstObservation() {
+        AdaptiveWindowSizer sizer = new AdaptiveWindowSizer(100, 1000, 300, 5);
+        assertEquals(300, sizer.windowMs());
+        assertEquals(0, sizer.observations());
+        assertEquals(0.0, sizer.readsPerSecond(), 0.0);
+    }
+
+    @Test
+    public void initialWindowIsClamped() {
+        assertEquals(1000, new AdaptiveWindowSizer(100, 1000, 5000, 5).windowMs());
+        assertEquals(100, new AdaptiveWindowSizer(100, 1000, 10, 5).windowMs());
+    }
+
+    @Test
+    public void windowIsTimeToReachTargetReads() {
+        AdaptiveWindowSizer sizer = new AdaptiveWindowSizer(100, 1000, 300, 5);
+        // 10 reads in 400 ms = 25 reads/s -> 5 reads take 200 ms
+        sizer.onWindowDecided(10, 400);
+        assertEquals(25.0, sizer.readsPerSecond(), 1e-9);
+        assertEquals(200, sizer.windowMs());
+    }
+
+    @Test
+    public void rateIsSmoothedAcrossWindows() {
+        AdaptiveWindowSizer sizer = new AdaptiveWindowSizer(100, 1000, 300, 5);
+        sizer.onWindowDecided(10, 400); // 25/s
+        sizer.onWindowDecided(20, 400); // 50/s, weighted 0.2
+        assertEquals(30.0, sizer.readsPerSecond(), 1e-9);
+        assertEquals(167, sizer.windowMs()); // ceil(5000 / 30)
+        assertEquals(2, sizer.observations());
+    }
+
+    @Test
+    public void slowAndFastRatesAreClamped() {
+        AdaptiveWindowSizer slow = new AdaptiveWindowSizer(100, 1000, 300, 5);
+        slow.onWindowDecided(1, 1000);
+        assertEquals(1000, slow.windowMs());
+
+        AdaptiveWindowSizer fast = new AdaptiveWindowSizer(100, 1000, 300, 5);
+        fast.onWindowDecided(100, 100);
+        assertEquals(100, fast.windowMs());
+    }
+
+    @Test
+    public void ignoresUnusableObservations() {
+        AdaptiveWindowSizer sizer = new AdaptiveWindowSizer(100, 1000, 300, 5);
+        sizer.onWindowDecided(0, 400);
+        sizer.onWindowDecided(5, 10); // Too short for a stable rate
+        assertEquals(0, sizer.observations());
+        assertEquals(300, sizer.windowMs());
+    }
+
+    @Test
+    public void resetForgetsLearnedRate() {
+        AdaptiveWindowSizer sizer = new AdaptiveWindowSizer(100, 1000, 300, 5);
+        sizer.onWindowDecided(10, 400);
+        sizer.reset();
+        assertEquals(0, sizer.observations());
+        assertEquals(300, sizer.windowMs());
+    }
+}
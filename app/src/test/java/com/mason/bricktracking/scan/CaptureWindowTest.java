@@ -0,0 +1,176 @@
+package com.mason.bricktracking.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureWindowTest {
+
+    private static final String TAG_A = "E28011700000020A1B2C3D4E";
+    private static final String TAG_B = "E28011700000020A1B2C3D4F";
+    private static final String TAG_C = "3000E2801160600002091B3C";
+
+    private final long[] scratch = new long[EpcKey.MAX_WORDS];
+
+    private void read(CaptureWindow window, String epc, int rssi, int times) {
+        int nibbles = EpcKey.parseHex(epc, scratch);
+        for (int i = 0; i < times; i++) {
+            window.addRead(scratch, nibbles, rssi);
+        }
+    }
+
+    @Test
+    public void emptyWindowHasNoOutcome() {
+        CaptureWindow window = new CaptureWindow();
+        assertTrue(window.isEmpty());
+        assertEquals(CaptureWindow.Outcome.EMPTY, window.evaluate(5, 1));
+    }
+
+    @Test
+    public void highestReadCountWins() {
+        CaptureWindow window = new CaptureWindow();
+        read(window, TAG_A, -60, 5);
+        read(window, TAG_B, -50, 2);
+
+        assertEquals(CaptureWindow.Outcome.WINNER, window.evaluate(5, 1));
+        assertEquals(EpcKey.parse(TAG_A), window.winnerEpc());
+        assertEquals(5, window.winnerCount());
+        assertEquals(-60, window.winnerAvgRssi());
+        assertTrue(window.hasRunnerUp());
+        assertEquals(EpcKey.parse(TAG_B), window.runnerUpEpc());
+        assertEquals(7, window.totalReads());
+        assertEquals(2, window.size());
+    }
+
+    @Test
+    public void averageRssiBreaksCountTies() {
+        CaptureWindow window = new CaptureWindow();
+        read(window, TAG_A, -70, 4);
+        read(window, TAG_B, -55, 4);
+
+        assertEquals(CaptureWindow.Outcome.WINNER, window.evaluate(5, 1));
+        assertEquals(EpcKey.parse(TAG_B), window.winnerEpc());
+    }
+
+    @Test
+    public void closeCountsAndRssiAreAmbiguous() {
+        CaptureWindow window = new CaptureWindow();
+        read(window, TAG_A, -60, 4);
+        read(window, TAG_B, -62, 3);
+
+        assertEquals(CaptureWindow.Outcome.AMBIGUOUS, window.evaluate(5, 1));
+        // A wider RSSI gap than the threshold settles it
+        assertEquals(CaptureWindow.Outcome.WINNER, window.evaluate(1, 1));
+    }
+
+    @Test
+    public void peakRssiTracksStrongestRead() {
+        CaptureWindow window = new CaptureWindow();
+        read(window, TAG_A, -70, 1);
+        read(window, TAG_A, -52, 1);
+        read(window, TAG_A, -64, 1);
+
+        assertEquals(CaptureWindow.Outcome.WINNER, window.evaluate(5, 1));
+        assertEquals(-52, window.winnerPeakRssi());
+        assertEquals(-62, window.winnerAvgRssi());
+        assertFalse(window.hasRunnerUp());
+    }
+
+    @Test
+    public void growsPastInitialCapacityKeepingStats() {
+        CaptureWindow window = new CaptureWindow(4);
+        for (int tag = 0; tag < 100; tag++) {
+            read(window, String.format("E2801170%016X", tag), -60 - tag % 10, 1 + tag % 3);
+        }
+        read(window, String.format("E2801170%016X", 42), -40, 10);
+
+        assertEquals(100, window.size());
+        assertEquals(CaptureWindow.Outcome.WINNER, window.evaluate(5, 1));
+        assertEquals(String.format("E2801170%016X", 42), window.winnerEpc().toHexString());
+        assertEquals(10 + 1 + 42 % 3, window.winnerCount());
+    }
+
+    @Test
+    public void resetForgetsReads() {
+        CaptureWindow window = new CaptureWindow();
+        read(window, TAG_A, -60, 3);
+        window.reset();
+
+        assertTrue(window.isEmpty());
+        assertEquals(0, window.totalReads());
+        read(window, TAG_C, -58, 2);
+        assertEquals(CaptureWindow.Outcome.WINNER, window.evaluate(5, 1));
+        assertEquals(EpcKey.parse(TAG_C), window.winnerEpc());
+        assertEquals(2, window.winnerCount());
+    }
+
+    @Test
+    public void earlyDecisionNeedsMinimumReads() {
+        CaptureWindow window = new CaptureWindow();
+        assertFalse(window.canDecideEarly(5, 1));
+        read(window, TAG_A, -50, 2);
+        assertFalse(window.canDecideEarly(5, 1));
+    }
+
+    @Test
+    public void loneTagDecidesOnceLeadClearsNoiseAndThreshold() {
+        CaptureWindow window = new CaptureWindow();
+        // Lead n over an absent runner-up must beat countThreshold + 2 * sqrt(n)
+        read(window, TAG_A, -50, 5);
+        assertFalse(window.canDecideEarly(5, 1));
+        read(window, TAG_A, -50, 1);
+        assertTrue(window.canDecideEarly(5, 1));
+    }
+
+    @Test
+    public void earlyDecisionWaitsWhileLeadershipCanFlip() {
+        CaptureWindow window = new CaptureWindow();
+        read(window, TAG_A, -50, 10);
+        read(window, TAG_B, -50, 4);
+        // Lead 6 against counting noise 2 * sqrt(14) = 7.5
+        assertFalse(window.canDecideEarly(5, 1));
+
+        window.reset();
+        read(window, TAG_A, -50, 10);
+        read(window, TAG_B, -50, 2);
+        // Lead 8 against noise 6.9 plus countThreshold 1
+        assertTrue(window.canDecideEarly(5, 1));
+        assertEquals(CaptureWindow.Outcome.WINNER, window.evaluate(5, 1));
+    }
+
+    @Test
+    public void rssiGapSettlesWindowWhenCountLeadIsInsideThreshold() {
+        CaptureWindow window = new CaptureWindow();
+        for (int i = 0; i < 10; i++) {
+            read(window, TAG_A, i % 2 == 0 ? -49 : -51, 2);
+            read(window, TAG_B, i % 2 == 0 ? -69 : -71, 1);
+        }
+        read(window, TAG_A, -50, 4);
+        // 24 vs 10 reads: lead 14 clears the noise (11.7) but not countThreshold 10 + noise,
+        // so the ~20 dB gap with a tight spread has to decide
+        assertTrue(window.canDecideEarly(5, 10));
+        // A gap inside the RSSI threshold has to wait for the deadline
+        assertFalse(window.canDecideEarly(25, 10));
+    }
+
+    @Test
+    public void noisyRssiDoesNotSettleEarly() {
+        CaptureWindow window = new CaptureWindow();
+        for (int i = 0; i < 10; i++) {
+            read(window, TAG_A, i % 2 == 0 ? -35 : -65, 2);
+            read(window, TAG_B, i % 2 == 0 ? -45 : -75, 1);
+        }
+        read(window, TAG_A, -50, 4);
+        // Means differ by 10 dB but the spread is 15 dB either side
+        assertFalse(window.canDecideEarly(5, 10));
+    }
+
+    @Test
+    public void ambiguityRuleNeedsBothCountAndRssiClose() {
+        assertTrue(CaptureWindow.isAmbiguous(5, -60, 4, -63, 5, 1));
+        assertFalse(CaptureWindow.isAmbiguous(5, -60, 3, -60, 5, 1));
+        assertFalse(CaptureWindow.isAmbiguous(5, -60, 5, -66, 5, 1));
+    }
+}
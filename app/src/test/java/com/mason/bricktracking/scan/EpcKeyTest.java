@@ -0,0 +1,84 @@
+package com.mason.bricktracking.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EpcKeyTest {
+
+    private static String hexDigits(int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append("0123456789ABCDEF".charAt((i * 7) & 0xF));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void standardEpcRoundTrips() {
+        EpcKey key = EpcKey.parse("E28011700000020A1B2C3D4E");
+        assertEquals(24, key.nibbles());
+        assertEquals(2, key.wordCount());
+        assertEquals("E28011700000020A1B2C3D4E", key.toHexString());
+    }
+
+    @Test
+    public void partialWordIsLeftAligned() {
+        EpcKey key = EpcKey.parse("ABC");
+        assertEquals(1, key.wordCount());
+        assertEquals(0xABC0000000000000L, key.word(0));
+        assertEquals("ABC", key.toHexString());
+    }
+
+    @Test
+    public void trimsWhitespaceAndFoldsCase() {
+        EpcKey key = EpcKey.parse("  e280117000000a1b2c3d4e5f \t");
+        assertEquals("E280117000000A1B2C3D4E5F", key.toHexString());
+        assertEquals(EpcKey.parse("E280117000000A1B2C3D4E5F"), key);
+    }
+
+    @Test
+    public void rejectsNonHexAndOverlongInput() {
+        long[] scratch = new long[EpcKey.MAX_WORDS];
+        assertEquals(EpcKey.INVALID, EpcKey.parseHex("E280-1170", scratch));
+        assertEquals(EpcKey.INVALID, EpcKey.parseHex(hexDigits(EpcKey.MAX_NIBBLES + 1), scratch));
+        assertEquals(0, EpcKey.parseHex(null, scratch));
+        assertEquals(0, EpcKey.parseHex("   ", scratch));
+        assertNull(EpcKey.parse(""));
+        assertNull(EpcKey.parse("XYZ"));
+    }
+
+    @Test
+    public void longestGen2EpcFits() {
+        String hex = hexDigits(EpcKey.MAX_NIBBLES);
+        EpcKey key = EpcKey.parse(hex);
+        assertEquals(EpcKey.MAX_NIBBLES, key.nibbles());
+        assertEquals(EpcKey.MAX_WORDS, key.wordCount());
+        assertEquals(hex, key.toHexString());
+    }
+
+    @Test
+    public void lengthIsPartOfIdentity() {
+        // Same leading digits and zero padding, different length
+        EpcKey shorter = EpcKey.parse("AB");
+        EpcKey longer = EpcKey.parse("AB0");
+        assertEquals(shorter.word(0), longer.word(0));
+        assertNotEquals(shorter, longer);
+    }
+
+    @Test
+    public void arrayComparisonsMatchKeyEquality() {
+        long[] slots = new long[3 * EpcKey.MAX_WORDS];
+        EpcKey key = EpcKey.parse("3000E2801160600002091B3C");
+        key.copyTo(slots, 2 * EpcKey.MAX_WORDS);
+
+        assertTrue(key.matches(slots, 2 * EpcKey.MAX_WORDS, key.nibbles()));
+        assertFalse(key.matches(slots, 0, key.nibbles()));
+        assertEquals(key.hashCode(), EpcKey.hash(slots, 2 * EpcKey.MAX_WORDS, key.nibbles()));
+        assertEquals(key, EpcKey.of(slots, 2 * EpcKey.MAX_WORDS, key.nibbles()));
+    }
+}
@@ -0,0 +1,156 @@
+package com.mason.bricktracking.scan;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ExpiringEpcMapTest {
+
+    private static EpcKey tag(int n) {
+        return EpcKey.parse(String.format("E2801170%016X", n));
+    }
+
+    @Test
+    public void entriesExpireAfterTtl() {
+        ExpiringEpcMap map = new ExpiringEpcMap(1000, 16, 0);
+        map.put(tag(1), 0);
+        map.put(tag(2), 500);
+
+        assertNotEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(1), 999));
+        assertEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(1), 1000));
+        assertNotEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(2), 1000));
+        assertEquals(1, map.size());
+        assertEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(3), 0));
+    }
+
+    @Test
+    public void refreshRestartsTtl() {
+        ExpiringEpcMap map = new ExpiringEpcMap(1000, 16, 0);
+        map.put(tag(1), 0);
+        map.put(tag(1), 800);
+
+        int entry = map.find(tag(1), 1500);
+        assertNotEquals(ExpiringEpcMap.NOT_FOUND, entry);
+        assertEquals(800, map.stampAt(entry));
+        assertEquals(1, map.size());
+        assertEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(1), 1800));
+    }
+
+    @Test
+    public void payloadsAreKeptPerEntry() {
+        ExpiringEpcMap map = new ExpiringEpcMap(1000, 16, 2);
+        int a = map.put(tag(1), 0);
+        map.setPayload(a, 0, 52.1);
+        map.setPayload(a, 1, -1.3);
+        int b = map.put(tag(2), 10);
+        map.setPayload(b, 0, 40.7);
+        map.setPayload(b, 1, -74.0);
+
+        int found = map.find(tag(1), 20);
+        assertEquals(52.1, map.payloadAt(found, 0), 0.0);
+        assertEquals(-1.3, map.payloadAt(found, 1), 0.0);
+        found = map.find(tag(2), 20);
+        assertEquals(-74.0, map.payloadAt(found, 1), 0.0);
+    }
+
+    @Test
+    public void fullRingEvictsOldestEarly() {
+        ExpiringEpcMap map = new ExpiringEpcMap(1_000_000, 4, 0);
+        for (int n = 0; n < 6; n++) {
+            map.put(tag(n), n);
+        }
+        assertEquals(4, map.size());
+        assertEquals(2, map.evictedEarly());
+        assertEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(0), 10));
+        assertEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(1), 10));
+        assertNotEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(5), 10));
+    }
+
+    @Test
+    public void supersededEntriesAreNotCountedAsEarlyEvictions() {
+        ExpiringEpcMap map = new ExpiringEpcMap(1_000_000, 4, 0);
+        // Refreshing one key fills the ring with tombstones, which are reclaimed silently
+        for (int t = 0; t < 10; t++) {
+            map.put(tag(1), t);
+        }
+        assertEquals(1, map.size());
+        assertEquals(0, map.evictedEarly());
+    }
+
+    @Test
+    public void clearDropsEverything() {
+        ExpiringEpcMap map = new ExpiringEpcMap(1000, 8, 0);
+        map.put(tag(1), 0);
+        map.put(tag(2), 0);
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(ExpiringEpcMap.NOT_FOUND, map.find(tag(1), 0));
+        map.put(tag(1), 5);
+        assertEquals(5, map.stampAt(map.find(tag(1), 5)));
+    }
+
+    /** Ring entry of the reference model; superseded writes stay in the ring until they reach the head */
+    private static final class Write {
+        final int key;
+        final long stamp;
+        boolean alive = true;
+
+        Write(int key, long stamp) {
+            this.key = key;
+            this.stamp = stamp;
+        }
+    }
+
+    @Test
+    public void matchesReferenceModelUnderRandomTraffic() {
+        long ttl = 200;
+        ExpiringEpcMap map = new ExpiringEpcMap(ttl, 64, 0);
+        Map<Integer, Write> live = new HashMap<>();
+        Deque<Write> ring = new ArrayDeque<>();
+        Random random = new Random(42);
+
+        long now = 0;
+        for (int step = 0; step < 100_000; step++) {
+            now += random.nextInt(3);
+            int key = random.nextInt(150);
+            while (!ring.isEmpty() && (!ring.peekFirst().alive || now - ring.peekFirst().stamp >= ttl)) {
+                Write oldest = ring.pollFirst();
+                if (oldest.alive) {
+                    live.remove(oldest.key);
+                }
+            }
+
+            if (random.nextBoolean()) {
+                int entry = map.find(tag(key), now);
+                Write expected = live.get(key);
+                assertEquals(expected == null, entry == ExpiringEpcMap.NOT_FOUND);
+                if (expected != null) {
+                    assertEquals(expected.stamp, map.stampAt(entry));
+                }
+            } else {
+                map.put(tag(key), now);
+                Write previous = live.remove(key);
+                if (previous != null) {
+                    previous.alive = false;
+                }
+                if (ring.size() == map.capacity()) {
+                    Write oldest = ring.pollFirst();
+                    if (oldest.alive) {
+                        live.remove(oldest.key);
+                    }
+                }
+                Write write = new Write(key, now);
+                ring.addLast(write);
+                live.put(key, write);
+            }
+            assertEquals(live.size(), map.size());
+        }
+    }
+}
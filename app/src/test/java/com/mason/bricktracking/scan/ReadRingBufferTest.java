@@ -0,0 +1,140 @@
+package com.mason.bricktracking.scan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReadRingBufferTest {
+
+    private final long[] scratch = new long[EpcKey.MAX_WORDS];
+
+    /** Collects drained records as "EPC/rssi/nanos" */
+    private static final class Recorder implements ReadRingBuffer.Consumer {
+        final List<String> reads = new ArrayList<>();
+
+        @Override
+        public void onRead(long[] epcWords, int offset, int nibbles, int rssi, long elapsedNanos) {
+            reads.add(EpcKey.of(epcWords, offset, nibbles) + "/" + rssi + "/" + elapsedNanos);
+        }
+    }
+
+    private boolean offer(ReadRingBuffer ring, int tag, long nanos) {
+        int nibbles = EpcKey.parseHex(String.format("E2801170%016X", tag), scratch);
+        return ring.offer(scratch, nibbles, -40 - tag, nanos);
+    }
+
+    private static String expected(int tag, long nanos) {
+        return String.format("E2801170%016X", tag) + "/" + (-40 - tag) + "/" + nanos;
+    }
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(8, new ReadRingBuffer(5).capacity());
+        assertEquals(8, new ReadRingBuffer(8).capacity());
+        assertEquals(1024, new ReadRingBuffer(1000).capacity());
+    }
+
+    @Test
+    public void drainsInArrivalOrderAcrossWraparound() {
+        ReadRingBuffer ring = new ReadRingBuffer(4);
+        Recorder recorder = new Recorder();
+        List<String> expected = new ArrayList<>();
+        int tag = 0;
+        // 3 per round against capacity 4 moves head and tail through every slot offset
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++, tag++) {
+                assertTrue(offer(ring, tag, tag * 1000L));
+                expected.add(expected(tag, tag * 1000L));
+            }
+            assertEquals(3, ring.size());
+            assertEquals(3, ring.drain(recorder));
+            assertEquals(0, ring.size());
+        }
+        assertEquals(expected, recorder.reads);
+        assertEquals(0, ring.droppedCount());
+        assertEquals(30, ring.offeredCount());
+        assertEquals(3, ring.highWaterMark());
+    }
+
+    @Test
+    public void dropsNewReadsWhenFullAndCountsEpisodes() {
+        ReadRingBuffer ring = new ReadRingBuffer(4);
+        for (int tag = 0; tag < 4; tag++) {
+            assertTrue(offer(ring, tag, tag));
+        }
+        assertFalse(offer(ring, 4, 4));
+        assertFalse(offer(ring, 5, 5));
+        assertEquals(2, ring.droppedCount());
+        assertEquals(1, ring.overflowCount());
+
+        // The oldest reads survive, the dropped ones never appear
+        Recorder recorder = new Recorder();
+        ring.drain(recorder);
+        assertEquals(expected(0, 0), recorder.reads.get(0));
+        assertEquals(expected(3, 3), recorder.reads.get(3));
+        assertEquals(4, recorder.reads.size());
+
+        // Accepting a read ends the episode; filling up again starts a second one
+        for (int tag = 6; tag < 10; tag++) {
+            assertTrue(offer(ring, tag, tag));
+        }
+        assertFalse(offer(ring, 10, 10));
+        assertEquals(2, ring.overflowCount());
+        assertEquals(4, ring.highWaterMark());
+    }
+
+    @Test
+    public void clearDiscardsPublishedReads() {
+        ReadRingBuffer ring = new ReadRingBuffer(8);
+        offer(ring, 1, 1);
+        offer(ring, 2, 2);
+        ring.clear();
+        assertEquals(0, ring.size());
+
+        offer(ring, 3, 3);
+        Recorder recorder = new Recorder();
+        assertEquals(1, ring.drain(recorder));
+        assertEquals(expected(3, 3), recorder.reads.get(0));
+    }
+
+    @Test
+    public void concurrentProducerAndConsumerKeepOrder() throws InterruptedException {
+        final ReadRingBuffer ring = new ReadRingBuffer(64);
+        final int total = 200_000;
+        Thread producer = new Thread(() -> {
+            long[] words = new long[EpcKey.MAX_WORDS];
+            for (int i = 0; i < total; i++) {
+                words[0] = i;
+                ring.offer(words, 16, -50, i);
+            }
+        });
+
+        final long[] last = {-1};
+        final int[] received = {0};
+        final boolean[] inOrder = {true};
+        ReadRingBuffer.Consumer consumer = (epcWords, offset, nibbles, rssi, elapsedNanos) -> {
+            // EPC and timestamp were written together - a torn record would disagree
+            if (epcWords[offset] != elapsedNanos || elapsedNanos <= last[0]) {
+                inOrder[0] = false;
+            }
+            last[0] = elapsedNanos;
+            received[0]++;
+        };
+
+        producer.start();
+        while (producer.isAlive()) {
+            ring.drain(consumer);
+        }
+        producer.join();
+        ring.drain(consumer);
+
+        assertTrue(inOrder[0]);
+        assertEquals(total, ring.offeredCount());
+        assertEquals(total, received[0] + ring.droppedCount());
+    }
+}
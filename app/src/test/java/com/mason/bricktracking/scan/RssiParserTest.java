@@ -0,0 +1,43 @@
+package com.mason.bricktracking.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RssiParserTest {
+
+    @Test
+    public void matchesFloatParseAndRound() {
+        String[] samples = {"-75.80", "-75.5", "-75.49", "-0.5", "-0.4", "0", "12.5", "+3.2",
+                "-100", "-45.999999", ".5", "-.5", "7.", " -61.25 "};
+        for (String sample : samples) {
+            int expected = Math.round(Float.parseFloat(sample.trim()));
+            assertEquals(sample, expected, RssiParser.parseRounded(sample));
+        }
+    }
+
+    @Test
+    public void blankInputMeansNoReading() {
+        assertEquals(0, RssiParser.parseRounded(null));
+        assertEquals(0, RssiParser.parseRounded(""));
+        assertEquals(0, RssiParser.parseRounded("  "));
+    }
+
+    @Test
+    public void malformedInputIsInvalid() {
+        assertEquals(RssiParser.INVALID, RssiParser.parseRounded("-"));
+        assertEquals(RssiParser.INVALID, RssiParser.parseRounded("."));
+        assertEquals(RssiParser.INVALID, RssiParser.parseRounded("-75dBm"));
+        assertEquals(RssiParser.INVALID, RssiParser.parseRounded("1e3"));
+        assertEquals(RssiParser.INVALID, RssiParser.parseRounded("--5"));
+        assertEquals(RssiParser.INVALID, RssiParser.parseRounded("1234567"));
+    }
+
+    @Test
+    public void extraFractionDigitsAreIgnored() {
+        // Beyond float precision anyway - same answers as Math.round(Float.parseFloat(s))
+        assertEquals(-75, RssiParser.parseRounded("-75.5000000001"));
+        assertEquals(-75, RssiParser.parseRounded("-75.4999999999"));
+        assertEquals(-76, RssiParser.parseRounded("-75.5100000009"));
+    }
+}
@@ -0,0 +1,224 @@
+package com.mason.bricktracking.scan;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ScanSessionJournalTest {
+
+    private static final long RETENTION_MS = 5 * 60 * 1000;
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private ScanSessionJournal journal;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "scan.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private ScanSessionJournal.Snapshot reopen(long nowWallMs) throws IOException {
+        if (journal != null) {
+            journal.close(); // Like process death: nothing beyond the writes already made
+        }
+        journal = new ScanSessionJournal(file, RETENTION_MS);
+        return journal.restore(nowWallMs);
+    }
+
+    private static EpcKey tag(int n) {
+        return EpcKey.parse(String.format("E2801170%016X", n));
+    }
+
+    private void place(int eventSeq, long wallMs) throws IOException {
+        journal.appendPlacement(eventSeq, tag(eventSeq), wallMs, 1000L + eventSeq, 52.0 + eventSeq, -1.5);
+    }
+
+    @Test
+    public void freshJournalRestoresEmpty() throws IOException {
+        ScanSessionJournal.Snapshot snapshot = reopen(T0);
+        assertNull(snapshot.openSessionId);
+        assertEquals(0, snapshot.lastEventSeq);
+        assertEquals(0, snapshot.placementCount);
+    }
+
+    @Test
+    public void openSessionSurvivesRestart() throws IOException {
+        reopen(T0);
+        journal.startSession("session-1", "MASON_7", T0);
+        place(1, T0 + 1000);
+        place(2, T0 + 2000);
+
+        ScanSessionJournal.Snapshot snapshot = reopen(T0 + 3000);
+        assertEquals("session-1", snapshot.openSessionId);
+        assertEquals("MASON_7", snapshot.openSessionMasonId);
+        assertEquals(T0 + 2000, snapshot.openSessionLastActiveMs);
+        assertEquals(2, snapshot.lastEventSeq);
+        assertEquals(2, snapshot.placementCount);
+        assertEquals(tag(1), snapshot.epcs[0]);
+        assertEquals(T0 + 2000, snapshot.scanTimestamps[1]);
+        assertEquals(1002L, snapshot.elapsedRealtimes[1]);
+        assertEquals(54.0, snapshot.latitudes[1], 0.0);
+        assertEquals(-1.5, snapshot.longitudes[1], 0.0);
+    }
+
+    @Test
+    public void truncatedTailIsCutOff() throws IOException {
+        reopen(T0);
+        journal.startSession("session-1", "MASON_7", T0);
+        place(1, T0 + 1000);
+        place(2, T0 + 2000);
+        place(3, T0 + 3000);
+        journal.close();
+        journal = null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5); // Torn write of the last record
+        }
+
+        ScanSessionJournal.Snapshot snapshot = reopen(T0 + 4000);
+        assertEquals("session-1", snapshot.openSessionId);
+        assertEquals(2, snapshot.lastEventSeq);
+        assertEquals(2, snapshot.placementCount);
+
+        // The torn bytes are gone, so appends after the restore replay cleanly
+        place(3, T0 + 5000);
+        snapshot = reopen(T0 + 6000);
+        assertEquals(3, snapshot.lastEventSeq);
+        assertEquals(3, snapshot.placementCount);
+        assertEquals(T0 + 5000, snapshot.scanTimestamps[2]);
+    }
+
+    @Test
+    public void corruptRecordEndsReplay() throws IOException {
+        reopen(T0);
+        journal.startSession("session-1", "MASON_7", T0);
+        place(1, T0 + 1000);
+        place(2, T0 + 2000);
+        journal.close();
+        journal = null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = raf.length() - 10; // Inside the last record's payload
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+
+        ScanSessionJournal.Snapshot snapshot = reopen(T0 + 3000);
+        assertEquals(1, snapshot.lastEventSeq);
+        assertEquals(1, snapshot.placementCount);
+    }
+
+    @Test
+    public void endedSessionKeepsDedupeStateOnly() throws IOException {
+        reopen(T0);
+        journal.startSession("session-1", "MASON_7", T0);
+        place(1, T0 + 1000);
+        journal.endSession(T0 + 2000);
+
+        ScanSessionJournal.Snapshot snapshot = reopen(T0 + 3000);
+        assertNull(snapshot.openSessionId);
+        assertNull(snapshot.openSessionMasonId);
+        assertEquals(0, snapshot.lastEventSeq);
+        assertEquals(1, snapshot.placementCount);
+    }
+
+    @Test
+    public void compactionDropsOldPlacementsButKeepsSequenceAndAge() throws IOException {
+        reopen(T0);
+        journal.startSession("session-1", "MASON_7", T0);
+        place(1, T0 + 1000);
+        place(2, T0 + 2000);
+
+        // Restore well past the retention window: placements go, the session's position stays
+        ScanSessionJournal.Snapshot snapshot = reopen(T0 + RETENTION_MS + 10_000);
+        assertEquals(0, snapshot.placementCount);
+        assertEquals("session-1", snapshot.openSessionId);
+        assertEquals(2, snapshot.lastEventSeq);
+        assertEquals(T0 + 2000, snapshot.openSessionLastActiveMs);
+
+        // And again from the compacted file
+        snapshot = reopen(T0 + 2 * RETENTION_MS);
+        assertEquals("MASON_7", snapshot.openSessionMasonId);
+        assertEquals(2, snapshot.lastEventSeq);
+        assertEquals(T0 + 2000, snapshot.openSessionLastActiveMs);
+    }
+
+    @Test
+    public void resumingSessionKeepsItsStartRecord() throws IOException {
+        reopen(T0);
+        journal.startSession("session-1", "MASON_7", T0);
+        place(1, T0 + 1000);
+
+        reopen(T0 + 2000);
+        journal.startSession("session-1", "MASON_7", T0 + 2000);
+        place(2, T0 + 3000);
+
+        ScanSessionJournal.Snapshot snapshot = reopen(T0 + 4000);
+        assertEquals("session-1", snapshot.openSessionId);
+        assertEquals(2, snapshot.lastEventSeq);
+        assertEquals(2, snapshot.placementCount);
+    }
+
+    @Test
+    public void newSessionReplacesAbandonedOne() throws IOException {
+        reopen(T0);
+        journal.startSession("session-1", "MASON_7", T0);
+        place(1, T0 + 1000);
+
+        reopen(T0 + 2000);
+        journal.startSession("session-2", "MASON_9", T0 + 2000);
+
+        ScanSessionJournal.Snapshot snapshot = reopen(T0 + 3000);
+        assertEquals("session-2", snapshot.openSessionId);
+        assertEquals("MASON_9", snapshot.openSessionMasonId);
+        assertEquals(0, snapshot.lastEventSeq);
+        assertEquals(T0 + 2000, snapshot.openSessionLastActiveMs);
+        // session-1's placement still counts for duplicate checks
+        assertEquals(1, snapshot.placementCount);
+    }
+
+    @Test
+    public void startRecordWithoutMasonReadsAsUnknownMason() throws IOException {
+        // Start record as written before the mason was journaled: id, start time, base seq
+        byte[] id = "legacy-session".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(2 + id.length + 8 + 4);
+        payload.putShort((short) id.length).put(id).putLong(T0).putInt(7);
+        ByteBuffer out = ByteBuffer.allocate(4 + 3 + payload.capacity() + 4);
+        out.putInt(0x4D424A31);
+        out.put((byte) 1).putShort((short) payload.capacity()).put(payload.array());
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 4, 3 + payload.capacity());
+        out.putInt((int) crc.getValue());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(out.array());
+        }
+
+        ScanSessionJournal.Snapshot snapshot = reopen(T0 + 1000);
+        assertEquals("legacy-session", snapshot.openSessionId);
+        assertNull(snapshot.openSessionMasonId);
+        assertEquals(7, snapshot.lastEventSeq);
+        assertEquals(T0, snapshot.openSessionLastActiveMs);
+    }
+}
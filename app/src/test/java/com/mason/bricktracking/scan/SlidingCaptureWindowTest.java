@@ -0,0 +1,122 @@
+package com.mason.bricktracking.scan;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlidingCaptureWindowTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final long[] scratch = new long[EpcKey.MAX_WORDS];
+    private SlidingCaptureWindow window;
+
+    @Before
+    public void setUp() {
+        window = new SlidingCaptureWindow();
+        window.configure(350, 500, 3, 5, 1);
+    }
+
+    private static String tag(int n) {
+        return String.format("E2801170%016X", n);
+    }
+
+    private boolean read(int tag, int rssi, long ms) {
+        int nibbles = EpcKey.parseHex(tag(tag), scratch);
+        return window.addRead(scratch, 0, nibbles, rssi, ms * MS);
+    }
+
+    @Test
+    public void emitsOnceLeaderHasMinReads() {
+        assertFalse(read(1, -50, 0));
+        assertFalse(read(1, -54, 20));
+        assertTrue(read(1, -52, 40));
+
+        assertEquals(tag(1), window.winnerEpc().toHexString());
+        assertEquals(3, window.winnerCount());
+        assertEquals(-52, window.winnerAvgRssi());
+        assertEquals(-50, window.winnerPeakRssi());
+        assertEquals(40, window.winnerSpanMs());
+        assertFalse(window.hasRunnerUp());
+    }
+
+    @Test
+    public void emittedTagIsHeldOffWhileInField() {
+        int decisions = 0;
+        for (long t = 0; t <= 2000; t += 20) {
+            if (read(1, -50, t)) decisions++;
+        }
+        assertEquals(1, decisions);
+
+        // Gone for longer than the holdoff - the next pass is a new placement
+        assertFalse(read(1, -50, 2600));
+        assertFalse(read(1, -50, 2620));
+        assertTrue(read(1, -50, 2640));
+    }
+
+    @Test
+    public void suppressedLeaderBlocksWeakerNeighbour() {
+        for (long t = 0; t <= 2000; t += 20) {
+            boolean decided = read(1, -50, t);
+            if (t % 40 == 0) {
+                decided |= read(2, -65, t);
+            }
+            if (decided) {
+                assertEquals(tag(1), window.winnerEpc().toHexString());
+            }
+        }
+        assertEquals(tag(1), window.winnerEpc().toHexString());
+    }
+
+    @Test
+    public void evenlyMatchedTagsStayAmbiguous() {
+        for (long t = 0; t <= 1000; t += 20) {
+            assertFalse(read(t % 40 == 0 ? 1 : 2, -55, t));
+        }
+    }
+
+    @Test
+    public void readsOlderThanWindowExpire() {
+        assertFalse(read(1, -50, 0));
+        assertFalse(read(1, -50, 10));
+        // 350 ms window: both earlier reads have expired
+        assertFalse(read(1, -50, 400));
+        assertEquals(1, window.totalReads());
+        assertFalse(read(1, -50, 410));
+        assertTrue(read(1, -50, 420));
+    }
+
+    @Test
+    public void continuousReadingKeepsSlotTableBounded() {
+        int tags = 20_000;
+        int decisions = 0;
+        int maxTracked = 0;
+        long t = 0;
+        for (int n = 0; n < tags; n++) {
+            // Each brick is in the field for ~0.5 s, the next one follows straight on
+            for (int i = 0; i < 12; i++, t += 40) {
+                if (read(n, -50, t)) decisions++;
+                maxTracked = Math.max(maxTracked, window.trackedEpcs());
+            }
+        }
+        // The window never goes idle, so only eviction keeps the table small
+        assertEquals(tags, decisions);
+        assertTrue("tracked " + maxTracked, maxTracked <= 64);
+    }
+
+    @Test
+    public void resetDropsReadsAndHoldoff() {
+        read(1, -50, 0);
+        read(1, -50, 20);
+        assertTrue(read(1, -50, 40));
+        window.reset();
+
+        assertEquals(0, window.totalReads());
+        assertFalse(read(1, -50, 60));
+        assertFalse(read(1, -50, 80));
+        assertTrue(read(1, -50, 100));
+    }
+}
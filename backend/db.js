@@ -1,6 +1,7 @@
 const sqlite3 = require('sqlite3').verbose();
 const path = require('path');
 const bcrypt = require('bcryptjs');
+const { emptyState, mergeRanges } = require('./syncAcks');
 
 // Database file location
 const DB_PATH = path.join(__dirname, 'mason_tracking.db');
@@ -38,7 +39,7 @@ function initializeDatabase() {
 // Create database tables
 function createTables(resolve, reject) {
     let tablesCreated = 0;
-    const totalTables = 5;
+    const totalTables = 6;
     
     const checkComplete = () => {
         tablesCreated++;
@@ -196,6 +197,14 @@ function createTables(resolve, reject) {
                         console.log('✓ Migrated placements table: added scan_type column');
                     }
                 });
+                // Migrate: add capture_window_ms column if missing (window length the app chose per decision)
+                db.run(`ALTER TABLE placements ADD COLUMN capture_window_ms INTEGER DEFAULT 0`, (alterErr) => {
+                    if (alterErr && !alterErr.message.includes('duplicate column')) {
+                        console.error('Warning: Could not add capture_window_ms column to placements:', alterErr.message);
+                    } else if (!alterErr) {
+                        console.log('✓ Migrated placements table: added capture_window_ms column');
+                    }
+                });
                 checkComplete();
             }
         });
@@ -274,6 +283,32 @@ function createTables(resolve, reject) {
                         console.log('✓ Migrated placement_history table: added scan_type column');
                     }
                 });
+                db.run(`ALTER TABLE placement_history ADD COLUMN capture_window_ms INTEGER DEFAULT 0`, (alterErr) => {
+                    if (alterErr && !alterErr.message.includes('duplicate column')) {
+                        console.error('Warning: Could not add capture_window_ms column to placement_history:', alterErr.message);
+                    } else if (!alterErr) {
+                        console.log('✓ Migrated placement_history table: added capture_window_ms column');
+                    }
+                });
+                checkComplete();
+            }
+        });
+
+        // Sync ack watermarks - one row per app build session (see syncAcks.js)
+        db.run(`
+            CREATE TABLE IF NOT EXISTS sync_acks (
+                build_session_id TEXT PRIMARY KEY,
+                mason_id TEXT NOT NULL,
+                acked_seq INTEGER NOT NULL DEFAULT 0,
+                pending TEXT NOT NULL DEFAULT '[]',
+                updated_at BIGINT NOT NULL
+            )
+        `, (err) => {
+            if (err) {
+                console.error('Error creating sync_acks table:', err.message);
+                reject(err);
+            } else {
+                console.log('✓ Sync acks table ready');
                 checkComplete();
             }
         });
@@ -548,10 +583,196 @@ const dbUsers = {
     }
 };
 
+// Placement batches run one at a time: an UPDATE's savepoint stays open across callbacks, so
+// a second batch's BEGIN must not land inside it (one process, see ecosystem.config.js)
+let batchWriteChain = Promise.resolve();
+
+function runStatement(sql, params = []) {
+    return new Promise((resolve, reject) => {
+        db.run(sql, params, (err) => {
+            if (err) reject(err);
+            else resolve();
+        });
+    });
+}
+
+async function writeBatch(masonId, toInsert, toUpdate) {
+    await dbReadyPromise; // Ensure DB is ready
+    
+    try {
+        await runStatement('BEGIN TRANSACTION');
+    } catch (err) {
+        console.error(`[${masonId}] Error starting transaction:`, err);
+        throw err;
+    }
+
+    try {
+        const counts = await writeBatchRows(masonId, toInsert, toUpdate);
+        // A row that fails (e.g. a constraint violation) is rejected on its own - its
+        // syncResult says why - and the rest of the batch still commits
+        await runStatement('COMMIT');
+        console.log(`[${masonId}] Transaction committed: ${counts.inserted} inserted, ${counts.updated} updated`);
+        return counts;
+    } catch (err) {
+        console.error(`[${masonId}] Batch write error:`, err);
+        await runStatement('ROLLBACK').catch(() => {}); // Leave no transaction open for the next batch
+        throw err;
+    }
+}
+
+// Inserts and updates of one batch, inside the caller's transaction
+async function writeBatchRows(masonId, toInsert, toUpdate) {
+    let insertCount = 0;
+    let updateCount = 0;
+    const receivedAt = Date.now();
+
+    // Handle INSERTs - queued together, each one atomic on its own
+    if (toInsert.length > 0) {
+        const insertStmt = db.prepare(`
+            INSERT INTO placements (
+                mason_id, brick_number, rfid_tag, timestamp, received_at, 
+                latitude, longitude, altitude, accuracy,
+                build_session_id, event_seq, rssi_avg, rssi_peak, reads_in_window, power_level, decision_status, event_id, scan_type,
+                capture_window_ms
+            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        `);
+
+        toInsert.forEach(placement => {
+            const eventId = placement.eventId || `${placement.buildSessionId}-${placement.eventSeq}`;
+            
+            insertStmt.run(
+                masonId,
+                placement.brickNumber,
+                placement.brickNumber,
+                placement.timestamp,
+                receivedAt,
+                placement.latitude || 0.0,
+                placement.longitude || 0.0,
+                placement.altitude || 0.0,
+                placement.accuracy || 0.0,
+                placement.buildSessionId || '',
+                placement.eventSeq || 0,
+                placement.rssiAvg || 0,
+                placement.rssiPeak || 0,
+                placement.readsInWindow || 0,
+                placement.powerLevel || 0,
+                placement.decisionStatus || 'ACCEPTED',
+                eventId,
+                placement.scanType || 'placement',
+                placement.captureWindowMs || 0,
+                (err) => {
+                    if (err && err.message.includes('placements.event_id')) {
+                        // Same event twice in one batch - the first copy is stored
+                        placement.syncResult = { status: 'duplicate', reason: 'duplicate event_id' };
+                    } else if (err) {
+                        console.error(`[${masonId}] Insert error:`, err);
+                        placement.syncResult = { status: 'rejected', reason: err.message };
+                    } else {
+                        insertCount++;
+                        placement.syncResult = { status: 'inserted' };
+                    }
+                }
+            );
+        });
+
+        // Runs after every queued insert has completed
+        await new Promise(resolve => insertStmt.finalize(() => resolve()));
+    }
+
+    // Handle UPDATEs - archive old data to history first. The archive and the update share a
+    // savepoint, so a rejected update leaves no history row behind.
+    if (toUpdate.length > 0) {
+        const archiveStmt = db.prepare(`
+            INSERT INTO placement_history (
+                placement_id, mason_id, brick_number, rfid_tag, timestamp, received_at,
+                latitude, longitude, altitude, accuracy,
+                build_session_id, event_seq, rssi_avg, rssi_peak, reads_in_window, power_level, 
+                decision_status, event_id, action_type, scan_type, capture_window_ms
+            )
+            SELECT 
+                id, mason_id, brick_number, rfid_tag, timestamp, received_at,
+                latitude, longitude, altitude, accuracy,
+                build_session_id, event_seq, rssi_avg, rssi_peak, reads_in_window, power_level,
+                decision_status, event_id, 'UPDATE', scan_type, capture_window_ms
+            FROM placements
+            WHERE id = ?
+        `);
+
+        const updateStmt = db.prepare(`
+            UPDATE placements SET
+                timestamp = ?,
+                received_at = ?,
+                latitude = ?,
+                longitude = ?,
+                altitude = ?,
+                accuracy = ?,
+                build_session_id = ?,
+                event_seq = ?,
+                rssi_avg = ?,
+                rssi_peak = ?,
+                reads_in_window = ?,
+                power_level = ?,
+                decision_status = ?,
+                event_id = ?,
+                scan_type = ?,
+                capture_window_ms = ?
+            WHERE id = ?
+        `);
+
+        const runPrepared = (stmt, params) => new Promise((resolve, reject) => {
+            stmt.run(params, (err) => {
+                if (err) reject(err);
+                else resolve();
+            });
+        });
+
+        for (const placement of toUpdate) {
+            const eventId = placement.eventId || `${placement.buildSessionId}-${placement.eventSeq}`;
+            
+            await runStatement('SAVEPOINT placement_update');
+            try {
+                await runPrepared(archiveStmt, [placement.existingId]);
+                await runPrepared(updateStmt, [
+                    placement.timestamp,
+                    receivedAt,
+                    placement.latitude || 0.0,
+                    placement.longitude || 0.0,
+                    placement.altitude || 0.0,
+                    placement.accuracy || 0.0,
+                    placement.buildSessionId || '',
+                    placement.eventSeq || 0,
+                    placement.rssiAvg || 0,
+                    placement.rssiPeak || 0,
+                    placement.readsInWindow || 0,
+                    placement.powerLevel || 0,
+                    placement.decisionStatus || 'ACCEPTED',
+                    eventId,
+                    placement.scanType || 'placement',
+                    placement.captureWindowMs || 0,
+                    placement.existingId
+                ]);
+                await runStatement('RELEASE placement_update');
+                updateCount++;
+                placement.syncResult = { status: 'updated' };
+            } catch (err) {
+                console.error(`[${masonId}] Update error for placement ${placement.existingId}:`, err);
+                await runStatement('ROLLBACK TO placement_update');
+                await runStatement('RELEASE placement_update');
+                placement.syncResult = { status: 'rejected', reason: err.message };
+            }
+        }
+
+        archiveStmt.finalize();
+        updateStmt.finalize();
+    }
+
+    return { inserted: insertCount, updated: updateCount };
+}
+
 // Placement functions
 const dbPlacements = {
     // Filter out duplicate placements and mark existing ones for UPDATE
-    // Returns: { toInsert: [], toUpdate: [] }
+    // Returns: { toInsert: [], toUpdate: [] }; skipped placements get syncResult { status: 'duplicate', reason }
     filterDuplicates: async (masonId, placements) => {
         return new Promise(async (resolve, reject) => {
             await dbReadyPromise;
@@ -562,8 +783,8 @@ const dbPlacements = {
                 const DUPLICATE_WINDOW_MS = 5 * 60 * 1000; // 5 minutes for cross-mason check only
                 
                 for (const placement of placements) {
-                    // Generate event_id for this placement
-                    const eventId = `${placement.buildSessionId}-${placement.eventSeq}`;
+                    // event_id as sent by the app, derived for older clients
+                    const eventId = placement.eventId || `${placement.buildSessionId}-${placement.eventSeq}`;
                     placement.eventId = eventId;
                     
                     // Check if this brick already exists for this mason (any timestamp)
@@ -621,17 +842,20 @@ const dbPlacements = {
                         // Reject if scan is older or too recent
                         if (timeDiff < 0) {
                             console.log(`[${masonId}] ✗ Rejected: ${placement.brickNumber} - older scan (${Math.abs(timeDiffSeconds)}s older) - skipping`);
+                            placement.syncResult = { status: 'duplicate', reason: 'older scan' };
                             continue;
                         }
                         
                         if (timeDiff < 30000) {
                             console.log(`[${masonId}] ✗ Rejected: ${placement.brickNumber} - too recent (${timeDiffSeconds}s) - minimum 30s gap required`);
+                            placement.syncResult = { status: 'duplicate', reason: 'too recent' };
                             continue;
                         }
                         
                         // Check if new scan is actually better
                         if (!hasBetterAccuracy && !hasStrongerSignal && !hasValidGPS && !hasBetterDirectionalPosition) {
                             console.log(`[${masonId}] ✗ Rejected: ${placement.brickNumber} - no improvement (accuracy: ${placement.accuracy}m vs ${existingForMason.accuracy}m, RSSI: ${placement.rssiPeak}dB vs ${existingForMason.rssi_peak}dB, confidence: ${newConfidence}% vs ${oldConfidence}%) - skipping`);
+                            placement.syncResult = { status: 'duplicate', reason: 'no improvement' };
                             continue;
                         }
                         
@@ -668,6 +892,7 @@ const dbPlacements = {
                     
                     if (eventExists) {
                         console.log(`[${masonId}] ⚠ Duplicate event_id: ${eventId} - skipping`);
+                        placement.syncResult = { status: 'duplicate', reason: 'duplicate event_id' };
                         continue;
                     }
                     
@@ -690,6 +915,7 @@ const dbPlacements = {
                     if (crossMasonDuplicate) {
                         const timeDiff = Math.abs(placement.timestamp - crossMasonDuplicate.timestamp);
                         console.log(`[${masonId}] ⚠ Cross-mason conflict: ${placement.brickNumber} scanned by ${crossMasonDuplicate.mason_id} ${Math.round(timeDiff/1000)}s ago - skipping`);
+                        placement.syncResult = { status: 'duplicate', reason: `cross-mason conflict with ${crossMasonDuplicate.mason_id}` };
                         continue;
                     }
                     
@@ -705,181 +931,15 @@ const dbPlacements = {
     },
 
     // Add or update multiple placements (batch upsert with GPS data)
+    // Sets syncResult { status: 'inserted' | 'updated' | 'rejected', reason } on each placement
     addBatch: (masonId, result) => {
-        return new Promise(async (resolve, reject) => {
-            await dbReadyPromise; // Ensure DB is ready
-            
-            const { toInsert, toUpdate } = result;
-            const totalOperations = toInsert.length + toUpdate.length;
-            
-            if (totalOperations === 0) {
-                return resolve({ inserted: 0, updated: 0 });
-            }
-            
-            // Use transaction for atomicity (multi-mason safe)
-            db.serialize(() => {
-                db.run('BEGIN TRANSACTION', (err) => {
-                    if (err) {
-                        console.error(`[${masonId}] Error starting transaction:`, err);
-                        return reject(err);
-                    }
-                });
-
-                let insertCount = 0;
-                let updateCount = 0;
-                let hasError = false;
-                const receivedAt = Date.now();
-
-                // Handle INSERTs
-                if (toInsert.length > 0) {
-                    const insertStmt = db.prepare(`
-                        INSERT INTO placements (
-                            mason_id, brick_number, rfid_tag, timestamp, received_at, 
-                            latitude, longitude, altitude, accuracy,
-                            build_session_id, event_seq, rssi_avg, rssi_peak, reads_in_window, power_level, decision_status, event_id, scan_type
-                        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                    `);
-
-                    toInsert.forEach(placement => {
-                        const eventId = placement.eventId || `${placement.buildSessionId}-${placement.eventSeq}`;
-                        
-                        insertStmt.run(
-                            masonId,
-                            placement.brickNumber,
-                            placement.brickNumber,
-                            placement.timestamp,
-                            receivedAt,
-                            placement.latitude || 0.0,
-                            placement.longitude || 0.0,
-                            placement.altitude || 0.0,
-                            placement.accuracy || 0.0,
-                            placement.buildSessionId || '',
-                            placement.eventSeq || 0,
-                            placement.rssiAvg || 0,
-                            placement.rssiPeak || 0,
-                            placement.readsInWindow || 0,
-                            placement.powerLevel || 0,
-                            placement.decisionStatus || 'ACCEPTED',
-                            eventId,
-                            placement.scanType || 'placement',
-                            (err) => {
-                                if (err) {
-                                    console.error(`[${masonId}] Insert error:`, err);
-                                    hasError = true;
-                                } else {
-                                    insertCount++;
-                                }
-                            }
-                        );
-                    });
-
-                    insertStmt.finalize();
-                }
-
-                // Handle UPDATEs - archive old data to history first
-                if (toUpdate.length > 0) {
-                    // First, archive the current state to history
-                    const archiveStmt = db.prepare(`
-                        INSERT INTO placement_history (
-                            placement_id, mason_id, brick_number, rfid_tag, timestamp, received_at,
-                            latitude, longitude, altitude, accuracy,
-                            build_session_id, event_seq, rssi_avg, rssi_peak, reads_in_window, power_level, 
-                            decision_status, event_id, action_type, scan_type
-                        )
-                        SELECT 
-                            id, mason_id, brick_number, rfid_tag, timestamp, received_at,
-                            latitude, longitude, altitude, accuracy,
-                            build_session_id, event_seq, rssi_avg, rssi_peak, reads_in_window, power_level,
-                            decision_status, event_id, 'UPDATE', scan_type
-                        FROM placements
-                        WHERE id = ?
-                    `);
-
-                    toUpdate.forEach(placement => {
-                        archiveStmt.run(placement.existingId, (err) => {
-                            if (err) {
-                                console.error(`[${masonId}] Archive error for placement ${placement.existingId}:`, err);
-                                hasError = true;
-                            }
-                        });
-                    });
-
-                    archiveStmt.finalize();
-
-                    // Then update the current record
-                    const updateStmt = db.prepare(`
-                        UPDATE placements SET
-                            timestamp = ?,
-                            received_at = ?,
-                            latitude = ?,
-                            longitude = ?,
-                            altitude = ?,
-                            accuracy = ?,
-                            build_session_id = ?,
-                            event_seq = ?,
-                            rssi_avg = ?,
-                            rssi_peak = ?,
-                            reads_in_window = ?,
-                            power_level = ?,
-                            decision_status = ?,
-                            event_id = ?,
-                            scan_type = ?
-                        WHERE id = ?
-                    `);
-
-                    toUpdate.forEach(placement => {
-                        const eventId = placement.eventId || `${placement.buildSessionId}-${placement.eventSeq}`;
-                        
-                        updateStmt.run(
-                            placement.timestamp,
-                            receivedAt,
-                            placement.latitude || 0.0,
-                            placement.longitude || 0.0,
-                            placement.altitude || 0.0,
-                            placement.accuracy || 0.0,
-                            placement.buildSessionId || '',
-                            placement.eventSeq || 0,
-                            placement.rssiAvg || 0,
-                            placement.rssiPeak || 0,
-                            placement.readsInWindow || 0,
-                            placement.powerLevel || 0,
-                            placement.decisionStatus || 'ACCEPTED',
-                            eventId,
-                            placement.scanType || 'placement',
-                            placement.existingId,
-                            (err) => {
-                                if (err) {
-                                    console.error(`[${masonId}] Update error:`, err);
-                                    hasError = true;
-                                } else {
-                                    updateCount++;
-                                }
-                            }
-                        );
-                    });
-
-                    updateStmt.finalize();
-                }
-
-                // Commit or rollback transaction
-                if (hasError) {
-                    db.run('ROLLBACK', () => {
-                        console.error(`[${masonId}] Transaction rolled back`);
-                        reject(new Error('Insert/Update failed'));
-                    });
-                } else {
-                    db.run('COMMIT', (commitErr) => {
-                        if (commitErr) {
-                            console.error(`[${masonId}] Commit error:`, commitErr);
-                            reject(commitErr);
-                        } else {
-                            console.log(`[${masonId}] Transaction committed: ${insertCount} inserted, ${updateCount} updated`);
-                            resolve({ inserted: insertCount, updated: updateCount });
-                        }
-                    });
-                }
-            });
-        });
+        const { toInsert, toUpdate } = result;
+        if (toInsert.length + toUpdate.length === 0) {
+            return Promise.resolve({ inserted: 0, updated: 0 });
+        }
+        const write = batchWriteChain.then(() => writeBatch(masonId, toInsert, toUpdate));
+        batchWriteChain = write.catch(() => {});
+        return write;
     },
 
     // Get total count for a mason
@@ -1124,6 +1184,68 @@ const dbPlacements = {
     }
 };
 
+// Sync ack watermark functions
+// Read-modify-write of a session's row; one process (see ecosystem.config.js), so a promise
+// chain is enough to keep two concurrent batches of the same session from losing a range
+let syncAckChain = Promise.resolve();
+
+const dbSyncAcks = {
+    // Returns: Map of buildSessionId -> { ackedSeq, pending } for the sessions that have one
+    getStates: async (sessionIds) => {
+        await dbReadyPromise;
+        if (sessionIds.length === 0) {
+            return new Map();
+        }
+        return new Promise((resolve, reject) => {
+            const placeholders = sessionIds.map(() => '?').join(', ');
+            db.all(
+                `SELECT build_session_id, acked_seq, pending FROM sync_acks WHERE build_session_id IN (${placeholders})`,
+                sessionIds,
+                (err, rows) => {
+                    if (err) return reject(err);
+                    const states = new Map();
+                    rows.forEach(row => {
+                        states.set(row.build_session_id, { ackedSeq: row.acked_seq, pending: JSON.parse(row.pending) });
+                    });
+                    resolve(states);
+                }
+            );
+        });
+    },
+
+    // Fold a stored batch's ranges into the watermarks; resolves to the updated states by session
+    record: (masonId, ranges) => {
+        const run = syncAckChain.then(async () => {
+            const bySession = new Map();
+            ranges.forEach(range => {
+                if (!bySession.has(range.buildSessionId)) bySession.set(range.buildSessionId, []);
+                bySession.get(range.buildSessionId).push(range);
+            });
+            const states = await dbSyncAcks.getStates([...bySession.keys()]);
+            const updated = new Map();
+            const now = Date.now();
+            for (const [sessionId, sessionRanges] of bySession) {
+                const state = mergeRanges(states.get(sessionId) || emptyState(), sessionRanges);
+                await new Promise((resolve, reject) => {
+                    db.run(
+                        `INSERT OR REPLACE INTO sync_acks (build_session_id, mason_id, acked_seq, pending, updated_at)
+                         VALUES (?, ?, ?, ?, ?)`,
+                        [sessionId, masonId, state.ackedSeq, JSON.stringify(state.pending), now],
+                        (err) => {
+                            if (err) reject(err);
+                            else resolve();
+                        }
+                    );
+                });
+                updated.set(sessionId, state);
+            }
+            return updated;
+        });
+        syncAckChain = run.catch(() => {});
+        return run;
+    }
+};
+
 // Company functions
 const dbCompanies = {
     // Get all companies
@@ -1278,6 +1400,7 @@ module.exports = {
     initializeDatabase,
     dbUsers,
     dbPlacements,
+    dbSyncAcks,
     dbCompanies,
     dbSessions,
     closeDatabase,
@@ -0,0 +1,177 @@
+// Decoder for the app's binary placement sync format (PlacementWireEncoder.java).
+// Produces the same { masonId, placements: [...] } object the JSON body parses to,
+// so POST /api/placements/sync handles both encodings with one code path.
+
+const WIRE_CONTENT_TYPE = 'application/x-mason-placements';
+// v2 appends the batch's session ranges (see syncAcks.js); v3 sends RSSI as zigzag instead of
+// a clamped signed byte. Older payloads are still accepted.
+const WIRE_VERSIONS = [1, 2, 3];
+
+// Persisted enum codes on the app side (DecisionStatus / ScanType) -> wire strings
+const DECISION_STATUS = ['ACCEPTED', 'ACCEPTED_NO_GPS', 'AMBIGUOUS', 'REJECTED_NO_GPS'];
+const SCAN_TYPE = ['placement', 'pallet'];
+
+function wireError(status, message) {
+    const err = new Error(message);
+    err.status = status;
+    return err;
+}
+
+class Reader {
+    constructor(buf) {
+        this.buf = buf;
+        this.pos = 0;
+    }
+
+    byte() {
+        if (this.pos >= this.buf.length) {
+            throw wireError(400, 'Truncated placement payload');
+        }
+        return this.buf[this.pos++];
+    }
+
+    signedByte() {
+        const b = this.byte();
+        return b > 127 ? b - 256 : b;
+    }
+
+    // Unsigned LEB128; exact up to 2^53, which covers every value the app sends
+    varint() {
+        let value = 0;
+        let scale = 1;
+        for (;;) {
+            const b = this.byte();
+            value += (b & 0x7f) * scale;
+            if ((b & 0x80) === 0) {
+                return value;
+            }
+            scale *= 128;
+        }
+    }
+
+    zigzag() {
+        const v = this.varint();
+        return v % 2 === 0 ? v / 2 : -(v + 1) / 2;
+    }
+
+    bytes(length) {
+        if (this.pos + length > this.buf.length) {
+            throw wireError(400, 'Truncated placement payload');
+        }
+        const slice = this.buf.subarray(this.pos, this.pos + length);
+        this.pos += length;
+        return slice;
+    }
+
+    string() {
+        const length = this.varint();
+        return length === 0 ? null : this.bytes(length - 1).toString('utf8');
+    }
+}
+
+function decodeBrickNumber(r) {
+    const header = r.varint();
+    const length = Math.floor(header / 2);
+    if (header % 2 === 0) {
+        return r.bytes(length).toString('utf8');
+    }
+    const hex = r.bytes(Math.ceil(length / 2)).toString('hex').toUpperCase();
+    return hex.substring(0, length);
+}
+
+function deltaColumn(r, n, scale) {
+    const values = new Array(n);
+    let previous = 0;
+    for (let i = 0; i < n; i++) {
+        previous += r.zigzag();
+        values[i] = previous / scale;
+    }
+    return values;
+}
+
+function column(r, n, read) {
+    const values = new Array(n);
+    for (let i = 0; i < n; i++) {
+        values[i] = read();
+    }
+    return values;
+}
+
+// Throws an Error with .status 415 (unknown format / version) or 400 (malformed)
+function decodePlacements(buf) {
+    const r = new Reader(buf);
+    if (buf.length < 4 || buf[0] !== 0x4d || buf[1] !== 0x42 || buf[2] !== 0x50) {
+        throw wireError(415, 'Not a placement payload');
+    }
+    r.pos = 3;
+    const version = r.byte();
+    if (!WIRE_VERSIONS.includes(version)) {
+        throw wireError(415, `Unsupported placement payload version ${version}`);
+    }
+
+    const masonId = r.string();
+    const n = r.varint();
+    const sessionCount = r.varint();
+    const sessions = column(r, sessionCount, () => r.string());
+
+    const brickNumbers = column(r, n, () => decodeBrickNumber(r));
+    const timestamps = deltaColumn(r, n, 1);
+    const latitudes = deltaColumn(r, n, 1e7);
+    const longitudes = deltaColumn(r, n, 1e7);
+    const altitudes = deltaColumn(r, n, 100);
+    const accuracies = column(r, n, () => r.zigzag() / 100);
+    const sessionRefs = column(r, n, () => r.varint());
+    const eventSeqs = deltaColumn(r, n, 1);
+    const readRssi = version >= 3 ? () => r.zigzag() : () => r.signedByte();
+    const rssiAvgs = column(r, n, readRssi);
+    const rssiPeaks = column(r, n, readRssi);
+    const reads = column(r, n, () => r.zigzag());
+    const powerLevels = column(r, n, () => r.zigzag());
+    const statuses = column(r, n, () => r.byte());
+    const scanTypes = column(r, n, () => r.byte());
+    const windows = column(r, n, () => r.zigzag());
+    const sessionRanges = version >= 2 ? column(r, r.varint(), () => {
+        const ref = r.varint();
+        const afterSeq = r.varint();
+        const lastSeq = afterSeq + r.varint();
+        if (ref === 0 || ref > sessionCount) {
+            throw wireError(400, 'Session index out of range');
+        }
+        return { buildSessionId: sessions[ref - 1], afterSeq, lastSeq };
+    }) : [];
+    if (r.pos !== buf.length) {
+        throw wireError(400, 'Trailing bytes after placement payload');
+    }
+
+    const placements = new Array(n);
+    for (let i = 0; i < n; i++) {
+        const ref = sessionRefs[i];
+        if (ref > sessionCount) {
+            throw wireError(400, 'Session index out of range');
+        }
+        placements[i] = {
+            brickNumber: brickNumbers[i],
+            timestamp: timestamps[i],
+            latitude: latitudes[i],
+            longitude: longitudes[i],
+            altitude: altitudes[i],
+            accuracy: accuracies[i],
+            buildSessionId: ref === 0 ? null : sessions[ref - 1],
+            eventSeq: eventSeqs[i],
+            eventId: ref === 0 ? undefined : `${sessions[ref - 1]}-${eventSeqs[i]}`,
+            rssiAvg: rssiAvgs[i],
+            rssiPeak: rssiPeaks[i],
+            readsInWindow: reads[i],
+            powerLevel: powerLevels[i],
+            decisionStatus: DECISION_STATUS[statuses[i]] || 'ACCEPTED',
+            scanType: SCAN_TYPE[scanTypes[i]] || 'placement',
+            captureWindowMs: windows[i]
+        };
+    }
+    return { masonId, placements, sessionRanges };
+}
+
+module.exports = {
+    WIRE_CONTENT_TYPE,
+    decodePlacements
+};
@@ -6,7 +6,9 @@ const jwt = require('jsonwebtoken');
 const crypto = require('crypto');
 const rateLimit = require('express-rate-limit');
 const nodemailer = require('nodemailer');
-const { initializeDatabase, dbUsers, dbPlacements, dbCompanies, dbSessions, closeDatabase } = require('./db');
+const { initializeDatabase, dbUsers, dbPlacements, dbSyncAcks, dbCompanies, dbSessions, closeDatabase } = require('./db');
+const { WIRE_CONTENT_TYPE, decodePlacements } = require('./placementWire');
+const { normalizeRanges, excludeSeqs, isAcked } = require('./syncAcks');
 
 const app = express();
 const PORT = 8080;
@@ -16,9 +18,31 @@ app.set('trust proxy', 1);
 
 // Middleware
 app.use(cors());
-app.use(bodyParser.json());
+// Gzip / deflate request bodies are inflated here (the app compresses sync payloads over 1 KB);
+// the limit applies to the inflated JSON, sized for the largest configurable sync batch
+app.use(bodyParser.json({ inflate: true, limit: '1mb' }));
 app.use(bodyParser.urlencoded({ extended: true }));
 
+// Binary columnar sync payloads (see placementWire.js) decode to the same body as the JSON ones.
+// Accept-Post advertises the format; the app switches to it after seeing this header.
+// Mounted on the sync route after requireAuth, so an unauthenticated body is never read or decoded.
+const decodeWireBody = [
+    bodyParser.raw({ type: WIRE_CONTENT_TYPE, inflate: true, limit: '1mb' }),
+    (req, res, next) => {
+        res.set('Accept-Post', `application/json, ${WIRE_CONTENT_TYPE}`);
+        if (Buffer.isBuffer(req.body)) {
+            try {
+                const size = req.body.length;
+                req.body = decodePlacements(req.body);
+                console.log(`[${req.body.masonId}] Binary sync payload: ${size} bytes, ${req.body.placements.length} placements`);
+            } catch (err) {
+                return next(err);
+            }
+        }
+        next();
+    }
+];
+
 // Rate limiting — general API (100 requests per minute per IP)
 const generalLimiter = rateLimit({
     windowMs: 60 * 1000,
@@ -685,8 +709,40 @@ app.delete('/api/tutorial/seed-data/:masonId', requireAuth, async (req, res) =>
 // PLACEMENT ENDPOINTS
 // ============================================
 
+// Why a synced placement can't be stored at all, or null if it looks valid
+function invalidPlacementReason(p) {
+    if (!p || typeof p !== 'object') return 'not an object';
+    if (typeof p.brickNumber !== 'string' || p.brickNumber.length === 0) return 'missing brickNumber';
+    if (!Number.isFinite(p.timestamp) || p.timestamp <= 0) return 'invalid timestamp';
+    if (p.latitude != null && (!Number.isFinite(p.latitude) || Math.abs(p.latitude) > 90)) return 'invalid latitude';
+    if (p.longitude != null && (!Number.isFinite(p.longitude) || Math.abs(p.longitude) > 180)) return 'invalid longitude';
+    if (p.scanType != null && p.scanType !== 'placement' && p.scanType !== 'pallet') return `unknown scanType ${p.scanType}`;
+    return null;
+}
+
+// Fold a stored batch's session ranges into the ack watermarks and list the result per session.
+// Rows rejected or left without a result are held out of the ranges. The batch is already
+// stored: a failure here only costs the watermark, so it isn't an error.
+async function recordSyncAcks(masonId, sessionRanges, ackStates, placements, results) {
+    const unsettled = new Map();
+    placements.forEach((p, i) => {
+        if (results[i] && results[i].status !== 'rejected') return;
+        if (!p || typeof p.buildSessionId !== 'string' || !Number.isInteger(p.eventSeq)) return;
+        if (!unsettled.has(p.buildSessionId)) unsettled.set(p.buildSessionId, []);
+        unsettled.get(p.buildSessionId).push(p.eventSeq);
+    });
+    let states = ackStates;
+    try {
+        const updated = await dbSyncAcks.record(masonId, excludeSeqs(sessionRanges, unsettled));
+        states = new Map([...ackStates, ...updated]);
+    } catch (err) {
+        console.error(`[${masonId}] Failed to record sync acks:`, err);
+    }
+    return [...states].map(([buildSessionId, state]) => ({ buildSessionId, ackedSeq: state.ackedSeq }));
+}
+
 // POST /api/placements/sync
-app.post('/api/placements/sync', requireAuth, async (req, res) => {
+app.post('/api/placements/sync', requireAuth, decodeWireBody, async (req, res) => {
     const { masonId, placements: newPlacements } = req.body;
     
     console.log(`[${masonId}] Sync request received`);
@@ -707,17 +763,50 @@ app.post('/api/placements/sync', requireAuth, async (req, res) => {
     }
     
     try {
+        // Per-item outcome, index-aligned with the request; a bad row is rejected on its own
+        // instead of failing the batch, so the app can dead-letter it and keep draining
+        const results = newPlacements.map(p => {
+            const reason = invalidPlacementReason(p);
+            if (reason) {
+                console.log(`[${masonId}] ✗ Rejected invalid placement: ${reason}`);
+                return { status: 'rejected', reason };
+            }
+            return null;
+        });
+        const valid = newPlacements.filter((p, i) => !results[i]);
+        
+        // Rows at or below their session's ack watermark were stored by an earlier attempt
+        // (typically a resend after a timeout) - skip them without per-row duplicate lookups
+        const sessionRanges = normalizeRanges(req.body.sessionRanges);
+        const sessionIds = [...new Set(valid.map(p => p.buildSessionId).filter(Boolean)
+            .concat(sessionRanges.map(r => r.buildSessionId)))];
+        const ackStates = await dbSyncAcks.getStates(sessionIds);
+        const unacked = valid.filter(p => {
+            if (!isAcked(ackStates.get(p.buildSessionId), p.eventSeq)) return true;
+            p.syncResult = { status: 'duplicate', reason: 'already acked' };
+            return false;
+        });
+        if (unacked.length < valid.length) {
+            console.log(`[${masonId}] ⚠ ${valid.length - unacked.length} placements already acked by session watermark - skipped`);
+        }
+        const syncResults = () => newPlacements.map((p, i) => results[i] || p.syncResult || null);
+        
         // Deduplicate placements and separate into inserts vs updates
-        const result = await dbPlacements.filterDuplicates(masonId, newPlacements);
+        const result = await dbPlacements.filterDuplicates(masonId, unacked);
         
         if (result.toInsert.length === 0 && result.toUpdate.length === 0) {
             console.log(`[${masonId}] ⚠ All ${newPlacements.length} placements were duplicates - skipped`);
             const totalCount = await dbPlacements.getCountByMasonId(masonId);
+            const itemResults = syncResults();
+            const rejected = itemResults.filter(r => r && r.status === 'rejected').length;
             return res.json({
                 success: true,
                 message: 'All placements were duplicates',
                 lastPlacementNumber: totalCount,
-                duplicatesSkipped: newPlacements.length
+                rejected: rejected,
+                duplicatesSkipped: newPlacements.length - rejected,
+                results: itemResults,
+                acks: await recordSyncAcks(masonId, sessionRanges, ackStates, newPlacements, itemResults)
             });
         }
         
@@ -730,10 +819,10 @@ app.post('/api/placements/sync', requireAuth, async (req, res) => {
         const { inserted, updated } = await dbPlacements.addBatch(masonId, result);
         
         // Log each placement with operation type and scan type
-        result.toInsert.forEach(placement => {
+        result.toInsert.filter(p => p.syncResult.status === 'inserted').forEach(placement => {
             console.log(`[${masonId}] + New ${placement.scanType || 'placement'}: ${placement.brickNumber} @ ${new Date(placement.timestamp).toISOString()}`);
         });
-        result.toUpdate.forEach(placement => {
+        result.toUpdate.filter(p => p.syncResult.status === 'updated').forEach(placement => {
             console.log(`[${masonId}] ↻ Updated ${placement.scanType || 'placement'}: ${placement.brickNumber} @ ${new Date(placement.timestamp).toISOString()}`);
         });
         
@@ -744,6 +833,8 @@ app.post('/api/placements/sync', requireAuth, async (req, res) => {
         
         console.log(`[${masonId}] ✓ Synced: ${inserted} new, ${updated} updated. Total: ${totalCount} (${palletCount} pallet, ${placementCount} placement)`);
         
+        const itemResults = syncResults();
+        const rejected = itemResults.filter(r => r && r.status === 'rejected').length;
         res.json({
             success: true,
             message: `Successfully synced ${inserted} new + ${updated} updated placements`,
@@ -752,7 +843,10 @@ app.post('/api/placements/sync', requireAuth, async (req, res) => {
             placementCount: placementCount,
             inserted: inserted,
             updated: updated,
-            duplicatesSkipped: newPlacements.length - inserted - updated
+            rejected: rejected,
+            duplicatesSkipped: newPlacements.length - inserted - updated - rejected,
+            results: itemResults,
+            acks: await recordSyncAcks(masonId, sessionRanges, ackStates, newPlacements, itemResults)
         });
     } catch (err) {
         console.error(`[${masonId}] Sync error:`, err);
@@ -1604,6 +1698,17 @@ app.use((req, res) => {
 
 // Error handler
 app.use((err, req, res, next) => {
+    // Body-parser / wire-format rejections keep their 4xx status; 415 tells the client to fall back
+    if (err.status >= 400 && err.status < 500) {
+        console.warn(`Rejected request body (${err.status}): ${err.message}`);
+        if (err.type === 'encoding.unsupported') {
+            res.set('Accept-Encoding', 'gzip, deflate, identity');
+        }
+        return res.status(err.status).json({
+            success: false,
+            message: err.message
+        });
+    }
     console.error('Error:', err);
     res.status(500).json({
         success: false,
@@ -0,0 +1,94 @@
+// Per-build-session ack watermarks for POST /api/placements/sync.
+//
+// With each batch the app declares, per build session, ranges (afterSeq, lastSeq]: every
+// placement of that session with an eventSeq in the range is in this batch or was already
+// acknowledged. Once the batch is stored its ranges are folded into the session's watermark,
+// the highest eventSeq up to which everything has been processed. Batches can land out of
+// order, so ranges that don't reach the watermark yet wait in `pending` until they do.
+//
+// Rows at or below the watermark (or inside a pending range) are known to be stored or
+// decided, so a resent batch skips them without per-row duplicate lookups, and the app
+// drops them from its queue when it sees the watermark in the response.
+
+// Only lost when a gap never closes (e.g. a batch stored while the ack write failed); the
+// watermark then just stops short and rows fall back to per-row dedupe
+const MAX_PENDING_RANGES = 64;
+
+function emptyState() {
+    return { ackedSeq: 0, pending: [] };
+}
+
+// Keep well-formed ranges only; anything else is ignored rather than rejected
+function normalizeRanges(raw) {
+    if (!Array.isArray(raw)) return [];
+    return raw.filter(r => r
+        && typeof r.buildSessionId === 'string' && r.buildSessionId.length > 0
+        && Number.isInteger(r.afterSeq) && r.afterSeq >= 0
+        && Number.isInteger(r.lastSeq) && r.lastSeq > r.afterSeq);
+}
+
+// Returns the new state; `state` is not modified
+function mergeRanges(state, ranges) {
+    let ackedSeq = state.ackedSeq;
+    let pending = state.pending.concat(ranges.map(r => [r.afterSeq, r.lastSeq]));
+    let advanced = true;
+    while (advanced) {
+        advanced = false;
+        const waiting = [];
+        for (const [afterSeq, lastSeq] of pending) {
+            if (afterSeq <= ackedSeq) {
+                if (lastSeq > ackedSeq) {
+                    ackedSeq = lastSeq;
+                    advanced = true;
+                }
+            } else {
+                waiting.push([afterSeq, lastSeq]);
+            }
+        }
+        pending = waiting;
+    }
+    pending.sort((a, b) => a[0] - b[0]);
+    if (pending.length > MAX_PENDING_RANGES) {
+        pending = pending.slice(pending.length - MAX_PENDING_RANGES);
+    }
+    return { ackedSeq, pending };
+}
+
+// Split ranges around sequences that must not be acknowledged - rows the server rejected or
+// left without a result - so the watermark stops below them. A resend of such a row is judged
+// again instead of being skipped as already acked; once the app has dropped it, its later
+// ranges claim from the queued row before it and the watermark moves past.
+function excludeSeqs(ranges, excluded) {
+    const out = [];
+    for (const r of ranges) {
+        const seqs = (excluded.get(r.buildSessionId) || [])
+            .filter(seq => seq > r.afterSeq && seq <= r.lastSeq)
+            .sort((a, b) => a - b);
+        let afterSeq = r.afterSeq;
+        for (const seq of seqs) {
+            if (seq - 1 > afterSeq) {
+                out.push({ buildSessionId: r.buildSessionId, afterSeq, lastSeq: seq - 1 });
+            }
+            afterSeq = seq;
+        }
+        if (r.lastSeq > afterSeq) {
+            out.push({ buildSessionId: r.buildSessionId, afterSeq, lastSeq: r.lastSeq });
+        }
+    }
+    return out;
+}
+
+function isAcked(state, eventSeq) {
+    // Sequences start at 1; 0 means a placement from before sessions were tracked
+    if (!state || !Number.isInteger(eventSeq) || eventSeq <= 0) return false;
+    if (eventSeq <= state.ackedSeq) return true;
+    return state.pending.some(([afterSeq, lastSeq]) => eventSeq > afterSeq && eventSeq <= lastSeq);
+}
+
+module.exports = {
+    emptyState,
+    normalizeRanges,
+    mergeRanges,
+    excludeSeqs,
+    isAcked
+};
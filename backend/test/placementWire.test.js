@@ -0,0 +1,132 @@
+// Decoder tests for the binary placement format. GOLDEN_V3 is what PlacementWireEncoder
+// produces for PlacementWireEncoderTest.goldenBatch() - keep the two in step.
+
+const test = require('node:test');
+const assert = require('node:assert/strict');
+const { decodePlacements } = require('../placementWire');
+
+const GOLDEN_V3 = Buffer.from(
+    '4d425003084d41534f4e5f37030204732d3104732d3231e28011700000020a1b2c3d4e1050414c4c45' +
+    '542d3707abc080a0abfef962b817b817809fa28403c801c7a0a28403bfade3c105c70188afe3c105be' +
+    '100ac710f404a006000101000202036d8504775f4f77180602343400000203000100d804f403000201' +
+    '0002020504', 'hex');
+
+// The same rows from the v2 encoder, which clamped RSSI to a signed byte (-259 went out as -128)
+const GOLDEN_V2 = Buffer.from(
+    '4d425002084d41534f4e5f37030204732d3104732d3231e28011700000020a1b2c3d4e1050414c4c45' +
+    '542d3707abc080a0abfef962b817b817809fa28403c801c7a0a28403bfade3c105c70188afe3c105be' +
+    '100ac710f404a00600010100020203c980c4d0d8c4180602343400000203000100d804f40300020100' +
+    '02020504', 'hex');
+
+// Trailing session-range section of GOLDEN_V2: 2 ranges of (ref, afterSeq, lastSeq - afterSeq)
+const RANGE_SECTION_BYTES = 7;
+
+function asV1(v2) {
+    const v1 = Buffer.from(v2.subarray(0, v2.length - RANGE_SECTION_BYTES));
+    v1[3] = 1;
+    return v1;
+}
+
+function assertGoldenRows(placements, palletRssiAvg) {
+    assert.equal(placements.length, 3);
+    const [packed, pallet, legacy] = placements;
+
+    assert.equal(packed.brickNumber, 'E28011700000020A1B2C3D4E');
+    assert.equal(packed.timestamp, 1700000000000);
+    assert.equal(packed.latitude, 40.7128);
+    assert.equal(packed.longitude, -74.006);
+    assert.equal(packed.altitude, 10.55);
+    assert.equal(packed.accuracy, 3.14);
+    assert.equal(packed.buildSessionId, 's-1');
+    assert.equal(packed.eventSeq, 1);
+    assert.equal(packed.eventId, 's-1-1');
+    assert.equal(packed.rssiAvg, -55);
+    assert.equal(packed.rssiPeak, -48);
+    assert.equal(packed.readsInWindow, 12);
+    assert.equal(packed.powerLevel, 26);
+    assert.equal(packed.decisionStatus, 'ACCEPTED');
+    assert.equal(packed.scanType, 'placement');
+    assert.equal(packed.captureWindowMs, 300);
+
+    assert.equal(pallet.brickNumber, 'PALLET-7');
+    assert.equal(pallet.timestamp, 1700000001500);
+    assert.equal(pallet.latitude, 40.71281);
+    assert.equal(pallet.longitude, -74.00601);
+    assert.equal(pallet.altitude, 10.6);
+    assert.equal(pallet.eventId, 's-1-2');
+    assert.equal(pallet.rssiAvg, palletRssiAvg);
+    assert.equal(pallet.rssiPeak, -40);
+    assert.equal(pallet.decisionStatus, 'AMBIGUOUS');
+    assert.equal(pallet.scanType, 'pallet');
+    assert.equal(pallet.captureWindowMs, 250);
+
+    assert.equal(legacy.brickNumber, 'ABC');
+    assert.equal(legacy.latitude, 0);
+    assert.equal(legacy.buildSessionId, null);
+    assert.equal(legacy.eventSeq, 0);
+    assert.equal(legacy.eventId, undefined);
+    assert.equal(legacy.decisionStatus, 'REJECTED_NO_GPS');
+}
+
+const GOLDEN_RANGES = [
+    { buildSessionId: 's-1', afterSeq: 0, lastSeq: 2 },
+    { buildSessionId: 's-2', afterSeq: 5, lastSeq: 9 }
+];
+
+test('decodes the encoder golden payload (v3)', () => {
+    const { masonId, placements, sessionRanges } = decodePlacements(GOLDEN_V3);
+    assert.equal(masonId, 'MASON_7');
+    // Out of signed-byte range, and kept as the JSON body would send it
+    assertGoldenRows(placements, -259);
+    assert.deepEqual(sessionRanges, GOLDEN_RANGES);
+});
+
+test('decodes v2 payloads with byte RSSI', () => {
+    const { masonId, placements, sessionRanges } = decodePlacements(GOLDEN_V2);
+    assert.equal(masonId, 'MASON_7');
+    assertGoldenRows(placements, -128);
+    assert.deepEqual(sessionRanges, GOLDEN_RANGES);
+});
+
+test('decodes v1 payloads without session ranges', () => {
+    const { masonId, placements, sessionRanges } = decodePlacements(asV1(GOLDEN_V2));
+    assert.equal(masonId, 'MASON_7');
+    assertGoldenRows(placements, -128);
+    assert.deepEqual(sessionRanges, []);
+});
+
+test('decodes an empty batch', () => {
+    const decoded = decodePlacements(Buffer.from('4d42500300000000', 'hex'));
+    assert.deepEqual(decoded, { masonId: null, placements: [], sessionRanges: [] });
+});
+
+test('rejects other formats and versions with 415', () => {
+    assert.throws(() => decodePlacements(Buffer.from('{"masonId":"x"}')), { status: 415 });
+    assert.throws(() => decodePlacements(Buffer.from('4d4250', 'hex')), { status: 415 });
+    const v4 = Buffer.from(GOLDEN_V3);
+    v4[3] = 4;
+    assert.throws(() => decodePlacements(v4), { status: 415 });
+});
+
+test('rejects truncated payloads with 400', () => {
+    for (let length = 4; length < GOLDEN_V3.length; length++) {
+        assert.throws(() => decodePlacements(GOLDEN_V3.subarray(0, length)), { status: 400 },
+            `truncated to ${length} bytes`);
+    }
+});
+
+test('rejects trailing bytes with 400', () => {
+    const padded = Buffer.concat([GOLDEN_V3, Buffer.from([0])]);
+    assert.throws(() => decodePlacements(padded), { status: 400, message: /Trailing bytes/ });
+    // A v2 body labelled v1 leaves its range section unread
+    const mislabelled = Buffer.from(GOLDEN_V2);
+    mislabelled[3] = 1;
+    assert.throws(() => decodePlacements(mislabelled), { status: 400 });
+});
+
+test('rejects session references outside the dictionary', () => {
+    // Last range points at dictionary entry 3 of 2
+    const badRange = Buffer.from(GOLDEN_V3);
+    badRange[badRange.length - 3] = 3;
+    assert.throws(() => decodePlacements(badRange), { status: 400, message: /Session index/ });
+});
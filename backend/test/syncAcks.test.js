@@ -0,0 +1,126 @@
+// Session ack watermark tests: range normalization, merging (in and out of order), keeping
+// rejected rows out of the watermark, and the isAcked lookups POST /api/placements/sync
+// relies on to skip resent rows.
+
+const test = require('node:test');
+const assert = require('node:assert/strict');
+const { emptyState, normalizeRanges, mergeRanges, excludeSeqs, isAcked } = require('../syncAcks');
+
+function range(afterSeq, lastSeq) {
+    return { buildSessionId: 's-1', afterSeq, lastSeq };
+}
+
+test('normalizeRanges keeps only well-formed ranges', () => {
+    assert.deepEqual(normalizeRanges(undefined), []);
+    assert.deepEqual(normalizeRanges({ buildSessionId: 's-1' }), []);
+    const good = range(0, 5);
+    const raw = [
+        good,
+        null,
+        { afterSeq: 0, lastSeq: 5 },
+        { buildSessionId: '', afterSeq: 0, lastSeq: 5 },
+        { buildSessionId: 's-1', afterSeq: -1, lastSeq: 5 },
+        { buildSessionId: 's-1', afterSeq: 5, lastSeq: 5 },
+        { buildSessionId: 's-1', afterSeq: 0.5, lastSeq: 5 },
+        { buildSessionId: 's-1', afterSeq: 0, lastSeq: '5' }
+    ];
+    assert.deepEqual(normalizeRanges(raw), [good]);
+});
+
+test('in-order ranges advance the watermark', () => {
+    let state = mergeRanges(emptyState(), [range(0, 3)]);
+    assert.deepEqual(state, { ackedSeq: 3, pending: [] });
+    state = mergeRanges(state, [range(3, 7)]);
+    assert.deepEqual(state, { ackedSeq: 7, pending: [] });
+});
+
+test('a range that does not reach the watermark waits until the gap closes', () => {
+    let state = mergeRanges(emptyState(), [range(5, 9)]);
+    assert.deepEqual(state, { ackedSeq: 0, pending: [[5, 9]] });
+    state = mergeRanges(state, [range(0, 5)]);
+    assert.deepEqual(state, { ackedSeq: 9, pending: [] });
+});
+
+test('several pending ranges chain once the first lands', () => {
+    let state = emptyState();
+    state = mergeRanges(state, [range(8, 12)]);
+    state = mergeRanges(state, [range(3, 8)]);
+    assert.deepEqual(state.pending, [[3, 8], [8, 12]]);
+    state = mergeRanges(state, [range(0, 3)]);
+    assert.deepEqual(state, { ackedSeq: 12, pending: [] });
+});
+
+test('overlapping and stale ranges never move the watermark back', () => {
+    let state = mergeRanges(emptyState(), [range(0, 10)]);
+    state = mergeRanges(state, [range(2, 6), range(0, 10), range(9, 11)]);
+    assert.deepEqual(state, { ackedSeq: 11, pending: [] });
+});
+
+test('mergeRanges does not modify its input state', () => {
+    const state = { ackedSeq: 2, pending: [[5, 6]] };
+    mergeRanges(state, [range(2, 5)]);
+    assert.deepEqual(state, { ackedSeq: 2, pending: [[5, 6]] });
+});
+
+test('pending ranges are capped, keeping the newest', () => {
+    const ranges = [];
+    for (let i = 0; i < 70; i++) {
+        ranges.push(range(10 + 2 * i, 11 + 2 * i)); // Gaps everywhere - nothing reaches 0
+    }
+    const state = mergeRanges(emptyState(), ranges);
+    assert.equal(state.ackedSeq, 0);
+    assert.equal(state.pending.length, 64);
+    assert.deepEqual(state.pending[0], [22, 23]);
+    assert.deepEqual(state.pending[63], [148, 149]);
+});
+
+test('isAcked covers the watermark and pending ranges only', () => {
+    const state = { ackedSeq: 4, pending: [[7, 9]] };
+    assert.equal(isAcked(state, 1), true);
+    assert.equal(isAcked(state, 4), true);
+    assert.equal(isAcked(state, 5), false);
+    assert.equal(isAcked(state, 7), false); // afterSeq is exclusive
+    assert.equal(isAcked(state, 8), true);
+    assert.equal(isAcked(state, 9), true);
+    assert.equal(isAcked(state, 10), false);
+});
+
+test('isAcked never acks unsequenced or malformed rows', () => {
+    const state = { ackedSeq: 100, pending: [] };
+    assert.equal(isAcked(state, 0), false);
+    assert.equal(isAcked(state, -1), false);
+    assert.equal(isAcked(state, 1.5), false);
+    assert.equal(isAcked(state, '3'), false);
+    assert.equal(isAcked(state, undefined), false);
+    assert.equal(isAcked(undefined, 3), false);
+    assert.equal(isAcked(emptyState(), 1), false);
+});
+
+test('excludeSeqs splits ranges around rejected rows', () => {
+    const excluded = new Map([['s-1', [7, 4]]]);
+    assert.deepEqual(excludeSeqs([range(0, 10)], excluded), [range(0, 3), range(4, 6), range(7, 10)]);
+});
+
+test('excludeSeqs drops ranges that only held excluded rows', () => {
+    assert.deepEqual(excludeSeqs([range(3, 4)], new Map([['s-1', [4]]])), []);
+    // Excluded first and last rows leave just the middle
+    assert.deepEqual(excludeSeqs([range(0, 3)], new Map([['s-1', [1, 3]]])), [range(1, 2)]);
+});
+
+test('excludeSeqs ignores other sessions and sequences outside the range', () => {
+    const other = { buildSessionId: 's-2', afterSeq: 0, lastSeq: 5 };
+    const excluded = new Map([['s-1', [0, 11, 20]]]);
+    assert.deepEqual(excludeSeqs([range(0, 10), other], excluded), [range(0, 10), other]);
+    assert.deepEqual(excludeSeqs([range(0, 10)], new Map()), [range(0, 10)]);
+});
+
+test('the watermark stops below an excluded row until a later batch claims past it', () => {
+    let state = mergeRanges(emptyState(), excludeSeqs([range(0, 5)], new Map([['s-1', [3]]])));
+    assert.equal(state.ackedSeq, 2);
+    assert.equal(isAcked(state, 3), false);
+    assert.equal(isAcked(state, 4), true);
+
+    // The app dropped row 3 (dead-lettered); its next range starts below it
+    state = mergeRanges(state, [range(2, 8)]);
+    assert.deepEqual(state, { ackedSeq: 8, pending: [] });
+});
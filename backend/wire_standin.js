@@ -0,0 +1,125 @@
+// Offline stand-in for POST /api/placements/sync - no database, no auth, no npm packages.
+// Accepts both the JSON and the binary placement format (gzip or not), prints what it
+// decoded and the payload size per row, keeps session ack watermarks in memory and answers
+// like the real server, so the app's sync loop can be exercised against a laptop on a site
+// without connectivity.
+//
+// Usage: node wire_standin.js [port]   (default 8080, same as server.js)
+// Point BASE_URL in ApiClient.java at this machine.
+
+const http = require('http');
+const zlib = require('zlib');
+const { WIRE_CONTENT_TYPE, decodePlacements } = require('./placementWire');
+const { emptyState, normalizeRanges, mergeRanges, isAcked } = require('./syncAcks');
+
+const PORT = parseInt(process.argv[2], 10) || 8080;
+
+// masonId -> { placements, pallets } received so far
+const totals = new Map();
+// buildSessionId -> ack watermark state, as the real server keeps in sync_acks
+const ackStates = new Map();
+
+function send(res, status, body) {
+    res.writeHead(status, {
+        'Content-Type': 'application/json',
+        'Accept-Post': `application/json, ${WIRE_CONTENT_TYPE}`
+    });
+    res.end(JSON.stringify(body));
+}
+
+function inflate(req, raw) {
+    const encoding = (req.headers['content-encoding'] || 'identity').toLowerCase();
+    if (encoding === 'gzip') return zlib.gunzipSync(raw);
+    if (encoding === 'deflate') return zlib.inflateSync(raw);
+    if (encoding === 'identity') return raw;
+    const err = new Error(`Unsupported content encoding ${encoding}`);
+    err.status = 415;
+    throw err;
+}
+
+function handleSync(req, res, raw) {
+    const wireBytes = raw.length;
+    const payload = inflate(req, raw);
+    const contentType = (req.headers['content-type'] || '').split(';')[0].trim();
+
+    let body;
+    if (contentType === WIRE_CONTENT_TYPE) {
+        body = decodePlacements(payload);
+    } else if (contentType === 'application/json') {
+        body = JSON.parse(payload.toString('utf8'));
+    } else {
+        const err = new Error(`Unsupported content type ${contentType}`);
+        err.status = 415;
+        throw err;
+    }
+
+    const { masonId, placements } = body;
+    if (!masonId || !Array.isArray(placements)) {
+        return send(res, 400, { success: false, message: 'masonId and placements are required' });
+    }
+
+    const count = totals.get(masonId) || { placements: 0, pallets: 0 };
+    let alreadyAcked = 0;
+    const results = placements.map(p => {
+        if (isAcked(ackStates.get(p.buildSessionId), p.eventSeq)) {
+            alreadyAcked++;
+            return { status: 'duplicate', reason: 'already acked' };
+        }
+        if (p.scanType === 'pallet') count.pallets++;
+        else count.placements++;
+        return { status: 'inserted' };
+    });
+    totals.set(masonId, count);
+
+    const touched = new Set(placements.map(p => p.buildSessionId).filter(Boolean));
+    for (const range of normalizeRanges(body.sessionRanges)) {
+        const state = ackStates.get(range.buildSessionId) || emptyState();
+        ackStates.set(range.buildSessionId, mergeRanges(state, [range]));
+        touched.add(range.buildSessionId);
+    }
+    const acks = [...touched].filter(id => ackStates.has(id))
+        .map(id => ({ buildSessionId: id, ackedSeq: ackStates.get(id).ackedSeq }));
+
+    const perRow = placements.length > 0 ? (wireBytes / placements.length).toFixed(1) : '0';
+    console.log(`[${masonId}] ${placements.length} placements, ${contentType}` +
+        `${req.headers['content-encoding'] ? ' + ' + req.headers['content-encoding'] : ''}: ` +
+        `${wireBytes} bytes on the wire (${perRow} B/row), ${payload.length} decoded`);
+    if (placements.length > 0) {
+        console.log('  first:', JSON.stringify(placements[0]));
+    }
+    if (alreadyAcked > 0) {
+        console.log(`  ${alreadyAcked} already acked by session watermark`);
+    }
+    acks.forEach(ack => console.log(`  session ${ack.buildSessionId} acked through ${ack.ackedSeq}`));
+
+    send(res, 200, {
+        success: true,
+        message: `Stand-in accepted ${placements.length} placements`,
+        lastPlacementNumber: count.placements + count.pallets,
+        palletCount: count.pallets,
+        placementCount: count.placements,
+        results,
+        acks
+    });
+}
+
+const server = http.createServer((req, res) => {
+    const chunks = [];
+    req.on('data', (chunk) => chunks.push(chunk));
+    req.on('end', () => {
+        try {
+            if (req.method === 'POST' && req.url.split('?')[0] === '/api/placements/sync') {
+                handleSync(req, res, Buffer.concat(chunks));
+            } else {
+                send(res, 404, { success: false, message: 'Stand-in only serves POST /api/placements/sync' });
+            }
+        } catch (err) {
+            console.warn(`Rejected (${err.status || 400}): ${err.message}`);
+            send(res, err.status || 400, { success: false, message: err.message });
+        }
+    });
+});
+
+server.listen(PORT, () => {
+    console.log(`Placement sync stand-in listening on http://0.0.0.0:${PORT}/api/placements/sync`);
+});